@@ -13,12 +13,17 @@ import edu.bu.chess.game.player.Player;
 import edu.bu.chess.game.player.PlayerType;
 import edu.bu.chess.search.DFSTreeNode;
 import edu.bu.chess.search.DFSTreeNodeType;
-import edu.bu.chess.streaming.Streamer;
 import edu.bu.chess.utils.Pair;
 
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +37,16 @@ import java.util.concurrent.TimeoutException;
 
 
 // JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionHistory;
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.engine.TimeManager;
+import src.pas.chess.engine.TranspositionTable;
 import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.streaming.GameRecordWriter;
 import src.pas.chess.moveorder.CustomMoveOrderer;
 
 
@@ -40,27 +54,175 @@ public class AlphaBetaAgent
     extends ChessAgent
 {
 
-	private class AlphaBetaSearcher
+	public static class AlphaBetaSearcher
         extends Object
         implements Callable<Pair<Move, Long> >  // so this object can be run in a background thread
 	{
 
+		private static final int MEMORY_CHECK_INTERVAL = 64; // nodes between two looks at the heap and the clock
+		private static final MemoryPoolMXBean[] HEAP_POOLS = AlphaBetaSearcher.getCollectedHeapPools();
+
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
+		private final long memoryBudgetInBytes; // 0 for no budget
+		private DFSTreeNode bestNode; // the child picked by the last call()
+		private PositionHistory history; // the game's positions before the root
+		private PositionHistory line; // the history followed by the positions of the tree search's current line
+		private final Position nodePosition; // scratch for the tree search, the position of the node it is at
+		private TimeManager timeManager; // null to search to maxDepth whatever it takes
+		private TranspositionTable transpositionTable; // for searchInPlace, null to search without one
+		private long numNodes;
+		private boolean isOverMemoryBudget;
+		private boolean isPastHardLimit;
+		private boolean isAborted; // the tree search's current iteration ran past the hard limit, its utilities mean nothing
+		private long numDepthReductions;
 
 		public AlphaBetaSearcher(DFSTreeNode rootNode,
                                  int maxDepth)
+		{
+			this(rootNode, maxDepth, AlphaBetaAgent.getMemoryBudgetInBytes());
+		}
+
+		/**
+		 * @param memoryBudgetInBytes how much live heap the tree search may have before it searches shallower
+		 * (see isOverMemoryBudget), 0 for no budget
+		 */
+		public AlphaBetaSearcher(DFSTreeNode rootNode,
+                                 int maxDepth,
+                                 long memoryBudgetInBytes)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
+			this.memoryBudgetInBytes = memoryBudgetInBytes;
+			this.bestNode = null;
+			this.history = null;
+			this.line = new PositionHistory(); // so alphaBetaSearch can be called directly, see setHistory
+			this.nodePosition = new Position();
+			this.timeManager = null;
+			this.transpositionTable = TranspositionTable.getDefault();
+			this.numNodes = 0;
+			this.isOverMemoryBudget = false;
+			this.isPastHardLimit = false;
+			this.isAborted = false;
+			this.numDepthReductions = 0;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
+		public long getMemoryBudgetInBytes() { return this.memoryBudgetInBytes; }
+		public DFSTreeNode getBestNode() { return this.bestNode; }
+		public PositionHistory getHistory() { return this.history; }
+
+		/**
+		 * @param history the game's positions before the root, or null for none. A copy of it is what alphaBetaSearch
+		 * pushes the positions of its line onto, so it can be called without call() (e.g. by DifferentialTester).
+		 */
+		public void setHistory(PositionHistory history)
+		{
+			this.history = history;
+			this.line = history != null ? new PositionHistory(history) : new PositionHistory();
+		}
+
+		public TimeManager getTimeManager() { return this.timeManager; }
+
+		/**
+		 * @param timeManager the budgets of this move (started by the caller when the clock starts), or null
+		 */
+		public void setTimeManager(TimeManager timeManager) { this.timeManager = timeManager; }
+		public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+
+		/**
+		 * @param transpositionTable the table searchInPlace searches with (TranspositionTable.getDefault() unless set),
+		 * or null. A player that keeps one table for all of its moves must not share it with its opponent.
+		 */
+		public void setTranspositionTable(TranspositionTable transpositionTable) { this.transpositionTable = transpositionTable; }
+		public long getNumNodes() { return this.numNodes; }
+
+		/**
+		 * How many nodes the last call() searched shallower than asked, because the heap was over budget.
+		 */
+		public long getNumDepthReductions() { return this.numDepthReductions; }
+
+		/**
+		 * Is the live heap over the budget? Only looked at every MEMORY_CHECK_INTERVAL nodes. The live heap is what
+		 * the heap pools held right after their last collection (see getLiveHeapInBytes), so garbage that has not been
+		 * collected yet does not count against the budget.
+		 */
+		private boolean isOverMemoryBudget()
+		{
+			if(this.getMemoryBudgetInBytes() <= 0)
+			{
+				return false;
+			}
+			if(this.numNodes % MEMORY_CHECK_INTERVAL == 0)
+			{
+				this.isOverMemoryBudget = AlphaBetaSearcher.getLiveHeapInBytes() > this.getMemoryBudgetInBytes();
+			}
+			return this.isOverMemoryBudget;
+		}
+
+		/**
+		 * The heap in use right after the latest collection of each heap pool: memory that was still reachable then.
+		 * 0 until the first collection.
+		 */
+		public static long getLiveHeapInBytes()
+		{
+			long liveHeapInBytes = 0;
+			for(MemoryPoolMXBean pool : HEAP_POOLS)
+			{
+				MemoryUsage usage = pool.getCollectionUsage();
+				if(usage != null)
+				{
+					liveHeapInBytes += usage.getUsed();
+				}
+			}
+			return liveHeapInBytes;
+		}
+
+		private static MemoryPoolMXBean[] getCollectedHeapPools()
+		{
+			List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+			for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			{
+				if(pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null)
+				{
+					pools.add(pool);
+				}
+			}
+			return pools.toArray(new MemoryPoolMXBean[pools.size()]);
+		}
+
+		/**
+		 * Has the time manager's hard limit passed? Only looked at every MEMORY_CHECK_INTERVAL nodes.
+		 */
+		private boolean isPastHardLimit()
+		{
+			if(this.getTimeManager() == null || !this.getTimeManager().isStarted())
+			{
+				return false;
+			}
+			if(this.numNodes % MEMORY_CHECK_INTERVAL == 0)
+			{
+				this.isPastHardLimit = System.nanoTime() - this.getTimeManager().getHardDeadlineInNS() >= 0;
+			}
+			return this.isPastHardLimit;
+		}
 
 		/**
 		 * TODO: implement me!
 		 * This method should perform alpha-beta search from the current node
+		 *
+		 * Memory: each child (and the Game copy it holds) is released as soon as it has been searched, unless it is the
+		 * best so far, so only the principal variation stays reachable. With a memory budget, a node below the root
+		 * reached while the live heap is over budget is searched one ply shallower, so the longer the heap stays over
+		 * budget the more the search tapers off, instead of throwing an OutOfMemoryError.
+		 *
+		 * Time: a node below the root reached past the time manager's hard limit abandons the search, which then unwinds
+		 * without scoring anything, so that searchIteratively can play the best child of its last completed iteration
+		 * instead of running on until the framework's timeout.
+		 *
+		 * Repetitions: a node below the root whose position already occurred, in the game's history or earlier on the
+		 * line, is scored as a draw without being searched, as in the in-place search (see PositionHistory.isRepetition).
 		 * @param node the node to perform the search on (i.e. the root of the subtree)
 		 * @param depth how far in the tree we are rn
 		 * @param alpha
@@ -73,14 +235,35 @@ public class AlphaBetaAgent
                                            double beta)
 		{	// keep track of best child
 			DFSTreeNode bestChild = null;
+			this.numNodes += 1;
+			// out of time: abandon the search; out of memory: search this node a ply shallower (never the root, we need one of its children)
+			if (depth > 0 && node != this.getRootNode()) {
+				if (this.isPastHardLimit()) {
+					this.isAborted = true;
+					return node;
+				} else if (this.isOverMemoryBudget()) {
+					depth -= 1;
+					this.numDepthReductions += 1;
+				}
+			}
+			// a position seen before on this line or in the game is a draw, whatever else it has to offer
+			GameAdapter.toPosition(node.getGame(), this.nodePosition);
+			this.line.fillIn(this.nodePosition);
+			if (node != this.getRootNode() && this.line.isRepetition(this.nodePosition)) {
+				node.setMaxPlayerUtilityValue(Scores.toUtility(Scores.DRAW));
+				return node;
+			}
 			// check if node is terminal or if max depth is reached
 			if (node.isTerminal() || depth == 0) {
 				// if at a terminal node or max depth, evaluate heuristic value
 				node.setMaxPlayerUtilityValue(CustomHeuristics.getMaxPlayerHeuristicValue(node));
 				return node;
 			}
-			// list of child nodes
-			List<DFSTreeNode> children = node.getChildren();
+			// child nodes, best captures first so cutoffs come early, in an array of our own so we can let go of them
+			List<DFSTreeNode> orderedChildren = CustomMoveOrderer.order(node, node.getChildren());
+			DFSTreeNode[] children = orderedChildren.toArray(new DFSTreeNode[orderedChildren.size()]);
+			orderedChildren = null;
+			this.line.push(this.nodePosition);
 			// assign best utility value for this specific node
 			double bestUtilityValue;
 			// check if MAX player's turn
@@ -89,9 +272,14 @@ public class AlphaBetaAgent
 				bestUtilityValue = Double.NEGATIVE_INFINITY;
 
 				// go through child nodes
-				for (DFSTreeNode child : children) {
+				for (int childIdx = 0; childIdx < children.length; ++childIdx) {
+					DFSTreeNode child = children[childIdx];
+					children[childIdx] = null; // release it once searched, unless it becomes bestChild
 					// call alphaBetaSearch recursively reducing depth by 1 each time
 					DFSTreeNode evaluatedChild = alphaBetaSearch(child, depth - 1, alpha, beta);
+					if (this.isAborted) {
+						break; // out of time, nothing below here counts
+					}
 					// get evaluation of child node
 					double childValue = evaluatedChild.getMaxPlayerUtilityValue();
 					// if child has better utility value than current best one, update best value and best child
@@ -112,9 +300,14 @@ public class AlphaBetaAgent
 				// if minimizing node (MIN player's mode)
 				bestUtilityValue = Double.POSITIVE_INFINITY;
 				// loop through child nodes
-				for (DFSTreeNode child : children) {
+				for (int childIdx = 0; childIdx < children.length; ++childIdx) {
+					DFSTreeNode child = children[childIdx];
+					children[childIdx] = null; // release it once searched, unless it becomes bestChild
 					// recursively call alphaBetaSearch reducing depth by 1
 					DFSTreeNode evaluatedChild = alphaBetaSearch(child, depth - 1, alpha, beta);
+					if (this.isAborted) {
+						break; // out of time, nothing below here counts
+					}
 					// get evaluation of child node
 					double childValue = evaluatedChild.getMaxPlayerUtilityValue();
 					// if child has worse value that current best, update best value and best child
@@ -130,6 +323,10 @@ public class AlphaBetaAgent
 					}
 				}
 			}
+			this.line.pop();
+			if (this.isAborted) {
+				return node;
+			}
 			// after checking everything, set utility value for best child
 			if (bestChild != null) {
 				bestChild.setMaxPlayerUtilityValue(bestUtilityValue);
@@ -138,15 +335,115 @@ public class AlphaBetaAgent
 			return bestChild;
 		}
 
+		/**
+		 * Search the root with a PositionSearcher, which plays and takes back moves on a single Position instead of
+		 * building a DFSTreeNode (and a Game copy) per node. DFSTreeNodes are only created for the root's children,
+		 * to hand the chosen move back to the framework. With a history, lines that repeat a position of the game are
+		 * scored as draws.
+		 * @return the root child the search picked, with its utility set, or null if it cannot be matched to a child
+		 */
+		public DFSTreeNode searchInPlace()
+		{
+			Position root = GameAdapter.toPosition(this.getRootNode().getGame());
+			PositionSearcher searcher = new PositionSearcher(this.getMaxDepth());
+			searcher.setTranspositionTable(this.getTranspositionTable());
+			if(this.getHistory() != null)
+			{
+				this.getHistory().fillIn(root);
+				searcher.setHistory(this.getHistory());
+			}
+			searcher.setTimeManager(this.getTimeManager());
+			PositionSearcher.SearchResult result = searcher.search(root);
+			if(result.getBestMove() == Moves.NO_MOVE)
+			{
+				return null;
+			}
+
+			Position after = root.copy();
+			after.applyMove(result.getBestMove());
+			Position childPosition = new Position();
+			for(DFSTreeNode child : this.getRootNode().getChildren())
+			{
+				GameAdapter.toPosition(child.getGame(), childPosition);
+				if(childPosition.hasSameBoard(after))
+				{
+					child.setMaxPlayerUtilityValue(result.getUtility());
+					return child;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Iterative deepening over alphaBetaSearch, for a search with a time manager: the tree is searched from the root
+		 * to depth 1, 2, ... up to maxDepth. An iteration still running at the hard limit is abandoned (see
+		 * alphaBetaSearch) and the best child of the last completed one is played, and no iteration starts once the time
+		 * manager says to stop. The first iteration only evaluates the root's children, so it always completes.
+		 * @return the root child of the deepest completed iteration, with its utility set
+		 */
+		public DFSTreeNode searchIteratively()
+		{
+			Position root = GameAdapter.toPosition(this.getRootNode().getGame());
+			DFSTreeNode bestNode = null;
+			for(int depth = 1; depth <= this.getMaxDepth(); ++depth)
+			{
+				DFSTreeNode iterationBestNode = this.alphaBetaSearch(this.getRootNode(), depth,
+                    Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+				if(this.isAborted)
+				{
+					break;
+				}
+				bestNode = iterationBestNode;
+				this.getTimeManager().update(GameAdapter.findMove(root, bestNode.getGame()),
+                    AlphaBetaSearcher.toScore(bestNode.getMaxPlayerUtilityValue()));
+				if(this.getTimeManager().shouldStop())
+				{
+					break;
+				}
+			}
+			return bestNode;
+		}
+
+		/**
+		 * A tree utility as a score for the time manager, with wins and losses as mates (see Scores).
+		 */
+		private static int toScore(double utility)
+		{
+			if(utility >= Scores.WIN_UTILITY)
+			{
+				return Scores.MATE;
+			} else if(utility <= -Scores.WIN_UTILITY)
+			{
+				return -Scores.MATE;
+			}
+			return Scores.toCentipawns(utility);
+		}
+
 		@Override
 		public Pair<Move, Long> call() throws Exception
 		{
 			Move move = null;
 
 			double startTime = System.nanoTime();
-			move = this.alphaBetaSearch(this.getRootNode(), this.getMaxDepth(),
-					Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).getMove();
+			this.numNodes = 0;
+			this.numDepthReductions = 0;
+			this.isOverMemoryBudget = false;
+			this.isPastHardLimit = false;
+			this.isAborted = false;
+			this.bestNode = AlphaBetaAgent.isInPlace() ? this.searchInPlace() : null;
+			if(this.bestNode == null)
+			{
+				this.line = this.getHistory() != null ? new PositionHistory(this.getHistory()) : new PositionHistory();
+				this.bestNode = this.getTimeManager() != null ? this.searchIteratively()
+                    : this.alphaBetaSearch(this.getRootNode(), this.getMaxDepth(), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+			}
+			move = this.bestNode.getMove();
 			double endTime = System.nanoTime();
+			if(this.getNumDepthReductions() > 0)
+			{
+				System.out.println("AlphaBetaAgent.AlphaBetaSearcher.call [INFO]: over the memory budget, searched "
+                    + this.getNumDepthReductions() + " of " + this.getNumNodes() + " nodes shallower than asked");
+			}
 
 			return new Pair<Move, Long>(move, (long)((endTime-startTime)/1000000));
 		}
@@ -162,11 +459,32 @@ public class AlphaBetaAgent
 
 	private static final int DEFAULTMAXDEPTH = 3;
 
+	/**
+	 * With -Dchess.search.inPlace=true the agent searches on a single mutable Position (see AlphaBetaSearcher.searchInPlace)
+	 * instead of a tree of DFSTreeNodes. Adding -Dchess.search.hashMB=N gives that search an off-heap transposition table
+	 * of N MB, kept from one move to the next (see TranspositionTable). Each agent has a table of its own, so two agents
+	 * playing each other in the same JVM do not read each other's entries.
+	 */
+	public static final String IN_PLACE_PROPERTY = "chess.search.inPlace";
+
+	public static boolean isInPlace() { return Boolean.getBoolean(AlphaBetaAgent.IN_PLACE_PROPERTY); }
+
+	/**
+	 * With -Dchess.search.memoryBudgetMB=N the tree search searches shallower while more than N MB of heap was still
+	 * live after the last collection (see AlphaBetaSearcher.alphaBetaSearch). The in-place search allocates nothing per node and needs no budget.
+	 */
+	public static final String MEMORY_BUDGET_PROPERTY = "chess.search.memoryBudgetMB";
+
+	public static long getMemoryBudgetInBytes() { return Long.getLong(AlphaBetaAgent.MEMORY_BUDGET_PROPERTY, 0L) << 20; }
+
 	private final int maxDepth;
 	private final long maxPlaytimeInMS;
 	private final PlayerType playerType;
 
 	private Player myPlayer;
+	private GameRecordWriter recordWriter;
+	private final PositionHistory history; // every position seen since our first move, see getChessMove
+	private final TranspositionTable transpositionTable; // ours alone, for the in-place search, or null
 
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
@@ -214,6 +532,9 @@ public class AlphaBetaAgent
 		this.maxDepth = maxDepth;
 		this.maxPlaytimeInMS = maxPlaytimeInMS;
 		this.myPlayer = null;
+		this.recordWriter = null;
+		this.history = new PositionHistory();
+		this.transpositionTable = AlphaBetaAgent.isInPlace() ? TranspositionTable.newOfDefaultSize() : null;
 		this.setFilePath(filePath);
 
 		System.out.println("Constructed AlphaBetaAgent(teamColor=" + this.getPlayerType() + ", timeLimit(ms)=" + this.getMaxPlaytimeInMS() + ", maxDepth=" + this.getMaxDepth() + ")");
@@ -231,6 +552,26 @@ public class AlphaBetaAgent
 	@Override
 	protected Player getPlayer() { return this.myPlayer; }
 
+	private GameRecordWriter getRecordWriter() { return this.recordWriter; }
+	private PositionHistory getHistory() { return this.history; }
+	private TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+
+	/**
+	 * Hand a move to the record writer. If its writer thread has failed, report why and stop recording: the game goes on.
+	 */
+	private void recordMove(Position before, Game after)
+	{
+		try
+		{
+			this.getRecordWriter().recordMove(before, after);
+		} catch(IOException e)
+		{
+			System.err.println("AlphaBetaAgent.recordMove [ERROR]: no longer recording the game");
+			e.printStackTrace();
+			this.recordWriter = null;
+		}
+	}
+
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
 	 * There is some setup for this to work, namely making sure the agent doesn't run out of time.
@@ -246,23 +587,39 @@ public class AlphaBetaAgent
 		Move move = null;
 		long durationInMs = 0;
 		DFSTreeNode rootNode = new DFSTreeNode(Planner.getPlanner().getGame(), this.getPlayer());
+		Position positionBeforeMove = GameAdapter.toPosition(Planner.getPlanner().getGame());
+		this.getHistory().fillIn(positionBeforeMove); // a Position read from a Game has no clocks or castling history of its own
 		AlphaBetaSearcher searcherObject = new AlphaBetaSearcher(rootNode, this.getMaxDepth()); // this obj will run in the background
+		searcherObject.setHistory(this.getHistory()); // the positions before this one, so the search can spot repetitions
+		searcherObject.setTranspositionTable(this.getTranspositionTable());
+
+		// budget this move from what is left on our clock, so one hard position cannot use it all up
+		long timeLeftInMS = Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer());
+		TimeManager timeManager = TimeManager.forClock(timeLeftInMS, 0, -1, positionBeforeMove.getFullmoveNumber());
+		searcherObject.setTimeManager(timeManager);
+		timeManager.start();
 
 		// submit the job
 		Future<Pair<Move, Long> > future = backgroundThreadManager.submit(searcherObject);
 
 		try
 		{
-			// set the timeout
-			Pair<Move, Long> moveAndDuration = future.get(Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer()),
-					TimeUnit.MILLISECONDS);
+			// set the timeout: the search stops itself at the time manager's hard limit, this is only the last resort
+			Pair<Move, Long> moveAndDuration = future.get(timeLeftInMS, TimeUnit.MILLISECONDS);
 
 			// if we get here the move was chosen quick enough! :)
 			move = moveAndDuration.getFirst();
 			durationInMs = moveAndDuration.getSecond();
 
-			// convert the move into a text form (algebraic notation) and stream it somewhere
-			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
+			// hand the move to the background writer (this only enqueues, the writing happens off our clock)
+			if(this.getRecordWriter() != null)
+			{
+				this.recordMove(positionBeforeMove, searcherObject.getBestNode().getGame());
+			}
+
+			// the opponent moves from the position our move leads to, so both are part of the game from then on
+			this.getHistory().push(positionBeforeMove);
+			this.getHistory().push(GameAdapter.toPosition(searcherObject.getBestNode().getGame()));
 		} catch(TimeoutException e)
 		{
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
@@ -296,8 +653,8 @@ public class AlphaBetaAgent
 		// remember what player we are
 		this.myPlayer = game.getPlayer(this.getPlayerType());
 
-		// init streamer
-		Streamer.getStreamer(this.getFilePath());
+		// init the game record writer (nothing is recorded if we were not given a file path)
+		this.recordWriter = GameRecordWriter.open(this.getFilePath());
 		return null;
 	}
 
@@ -364,7 +721,18 @@ public class AlphaBetaAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+		// game over: write out whatever is still queued and sync the record to disk
+		if(this.getRecordWriter() != null)
+		{
+			try
+			{
+				this.getRecordWriter().close();
+			} catch(IOException e)
+			{
+				System.err.println("AlphaBetaAgent.terminalStep [ERROR]: the game record is incomplete");
+				e.printStackTrace();
+			}
+		}
 	}
 
 }
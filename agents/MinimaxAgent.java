@@ -13,10 +13,10 @@ import edu.bu.chess.game.player.Player;
 import edu.bu.chess.game.player.PlayerType;
 import edu.bu.chess.search.DFSTreeNode;
 import edu.bu.chess.search.DFSTreeNodeType;
-import edu.bu.chess.streaming.Streamer;
 import edu.bu.chess.utils.Pair;
 
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
@@ -32,29 +32,36 @@ import java.util.concurrent.TimeoutException;
 
 
 // JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionHistory;
 import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.Position;
+import src.pas.chess.streaming.GameRecordWriter;
 
 
 public class MinimaxAgent
     extends ChessAgent
 {
 
-	private class MinimaxSearcher
+	public static class MinimaxSearcher
         extends Object
         implements Callable<Pair<Move, Long> >  // so this object can be run in a background thread
 	{
 
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
+		private DFSTreeNode bestNode; // the child picked by the last call()
 
 		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
+			this.bestNode = null;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
+		public DFSTreeNode getBestNode() { return this.bestNode; }
 
 		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
 		{
@@ -108,7 +115,8 @@ public class MinimaxAgent
 			Move move = null;
 
 			double startTime = System.nanoTime();
-			move = this.minimaxSearch(this.getRootNode(), this.getMaxDepth()).getMove();
+			this.bestNode = this.minimaxSearch(this.getRootNode(), this.getMaxDepth());
+			move = this.bestNode.getMove();
 			double endTime = System.nanoTime();
 
 			return new Pair<Move, Long>(move, (long)((endTime-startTime)/1000000));
@@ -122,6 +130,8 @@ public class MinimaxAgent
 	private final PlayerType playerType;
 
 	private Player myPlayer;
+	private GameRecordWriter recordWriter;
+	private final PositionHistory history; // every position seen since our first move, for the clocks of the records
 
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
@@ -161,6 +171,8 @@ public class MinimaxAgent
 		this.maxDepth = maxDepth;
 		this.maxPlaytimeInMS = maxPlaytimeInMS;
 		this.myPlayer = null;
+		this.recordWriter = null;
+		this.history = new PositionHistory();
 		this.setFilePath(filePath);
 
 		System.out.println("Constructed MinimaxAgent(teamColor=" + this.getPlayerType() + ", timeLimit(ms)=" + this.getMaxPlaytimeInMS() + ", maxDepth=" + this.getMaxDepth() + ")");
@@ -178,6 +190,25 @@ public class MinimaxAgent
 	@Override
 	protected Player getPlayer() { return this.myPlayer; }
 
+	private GameRecordWriter getRecordWriter() { return this.recordWriter; }
+	private PositionHistory getHistory() { return this.history; }
+
+	/**
+	 * Hand a move to the record writer. If its writer thread has failed, report why and stop recording: the game goes on.
+	 */
+	private void recordMove(Position before, Game after)
+	{
+		try
+		{
+			this.getRecordWriter().recordMove(before, after);
+		} catch(IOException e)
+		{
+			System.err.println("MinimaxAgent.recordMove [ERROR]: no longer recording the game");
+			e.printStackTrace();
+			this.recordWriter = null;
+		}
+	}
+
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
 	 * There is some setup for this to work, namely making sure the agent doesn't run out of time.
@@ -195,6 +226,11 @@ public class MinimaxAgent
 		Move move = null;
 		long durationInMs = 0;
 		DFSTreeNode rootNode = new DFSTreeNode(Planner.getPlanner().getGame(), this.getPlayer());
+		Position positionBeforeMove = this.getRecordWriter() != null ? GameAdapter.toPosition(Planner.getPlanner().getGame()) : null;
+		if(positionBeforeMove != null)
+		{
+			this.getHistory().fillIn(positionBeforeMove); // a Position read from a Game has no clocks or castling history of its own
+		}
 		MinimaxSearcher searcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth()); // this obj will run in the background
 
 		// submit the job
@@ -210,8 +246,15 @@ public class MinimaxAgent
 			move = moveAndDuration.getFirst();
 			durationInMs = moveAndDuration.getSecond();
 
-			// convert the move into a text form (algebraic notation) and stream it somewhere
-			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
+			// hand the move to the background writer (this only enqueues, the writing happens off our clock)
+			if(this.getRecordWriter() != null)
+			{
+				this.recordMove(positionBeforeMove, searcherObject.getBestNode().getGame());
+
+				// the opponent moves from the position our move leads to, so both are part of the game from then on
+				this.getHistory().push(positionBeforeMove);
+				this.getHistory().push(GameAdapter.toPosition(searcherObject.getBestNode().getGame()));
+			}
 		} catch(TimeoutException e)
 		{
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
@@ -247,8 +290,8 @@ public class MinimaxAgent
 		// remember what player we are
 		this.myPlayer = game.getPlayer(this.getPlayerType());
 
-		// init streamer
-		Streamer.getStreamer(this.getFilePath());
+		// init the game record writer (nothing is recorded if we were not given a file path)
+		this.recordWriter = GameRecordWriter.open(this.getFilePath());
 		return null;
 	}
 
@@ -317,7 +360,18 @@ public class MinimaxAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+		// game over: write out whatever is still queued and sync the record to disk
+		if(this.getRecordWriter() != null)
+		{
+			try
+			{
+				this.getRecordWriter().close();
+			} catch(IOException e)
+			{
+				System.err.println("MinimaxAgent.terminalStep [ERROR]: the game record is incomplete");
+				e.printStackTrace();
+			}
+		}
 
 	}
 
@@ -0,0 +1,491 @@
+package src.pas.chess.debug;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.agents.MinimaxAgent;
+import src.pas.chess.engine.PositionHistory;
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.engine.TranspositionTable;
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Epd;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Batch differential tester: runs the reference minimax search and the alpha-beta search on many positions
+ * and reports every position where the two disagree on the root utility. Alpha-beta is allowed to pick a different
+ * move (ties), but it must never produce a different value than minimax at the same depth.
+ *
+ * Both searches of every position are submitted as independent jobs to a pool sized to the number of cores, so
+ * the reference and the optimised search run concurrently instead of back to back.
+ *
+ * A DFSTreeNode needs a Game, which only SEPIA's Planner makes, so the tree searches are checked from inside a game
+ * (see MinimaxReflectionAgent). Standalone positions, e.g. from an EPD file (see main), check the in-place search
+ * instead: PositionSearcher against MinimaxPositionSearcher, a plain minimax over the same Position (see runPositions).
+ * With tt, PositionSearcher probes and stores a transposition table of its own for every position.
+ *
+ * usage: java src.pas.chess.debug.DifferentialTester <positionsFile|-> <depth> [tt]
+ */
+public class DifferentialTester
+    extends Object
+{
+
+	public static final double UTILITY_TOLERANCE = 1e-12;
+	public static final int TRANSPOSITION_TABLE_SIZE_IN_MB = 4; // per position searched with a table, see runPositions
+
+	/**
+	 * One disagreement between minimax and alpha-beta, along with enough information to reproduce it. The moves are
+	 * as each search reports them (a framework Move or, for standalone positions, long algebraic notation).
+	 */
+	public static class Mismatch
+        extends Object
+	{
+		private final int positionIdx;
+		private final String position;
+		private final String minimaxMove;
+		private final double minimaxUtility;
+		private final String alphaBetaMove;
+		private final double alphaBetaUtility;
+
+		public Mismatch(int positionIdx,
+                        String position,
+                        String minimaxMove,
+                        double minimaxUtility,
+                        String alphaBetaMove,
+                        double alphaBetaUtility)
+		{
+			this.positionIdx = positionIdx;
+			this.position = position;
+			this.minimaxMove = minimaxMove;
+			this.minimaxUtility = minimaxUtility;
+			this.alphaBetaMove = alphaBetaMove;
+			this.alphaBetaUtility = alphaBetaUtility;
+		}
+
+		public int getPositionIdx() { return this.positionIdx; }
+		public String getPosition() { return this.position; }
+		public String getMinimaxMove() { return this.minimaxMove; }
+		public double getMinimaxUtility() { return this.minimaxUtility; }
+		public String getAlphaBetaMove() { return this.alphaBetaMove; }
+		public double getAlphaBetaUtility() { return this.alphaBetaUtility; }
+
+		@Override
+		public String toString()
+		{
+			return "Mismatch(position#" + this.getPositionIdx() +
+                ", minimax=" + this.getMinimaxUtility() + " (" + this.getMinimaxMove() + ")" +
+                ", alphaBeta=" + this.getAlphaBetaUtility() + " (" + this.getAlphaBetaMove() + ")" +
+                ", position=" + this.getPosition() + ")";
+		}
+	}
+
+	/**
+	 * The two searches of one position, as submitted to the pool (see submit).
+	 */
+	public static class Check
+        extends Object
+	{
+		private final DFSTreeNode position;
+		private final Future<DFSTreeNode> minimaxFuture;
+		private final Future<DFSTreeNode> alphaBetaFuture;
+
+		public Check(DFSTreeNode position,
+                     Future<DFSTreeNode> minimaxFuture,
+                     Future<DFSTreeNode> alphaBetaFuture)
+		{
+			this.position = position;
+			this.minimaxFuture = minimaxFuture;
+			this.alphaBetaFuture = alphaBetaFuture;
+		}
+
+		public DFSTreeNode getPosition() { return this.position; }
+		public Future<DFSTreeNode> getMinimaxFuture() { return this.minimaxFuture; }
+		public Future<DFSTreeNode> getAlphaBetaFuture() { return this.alphaBetaFuture; }
+
+		/**
+		 * Have both searches finished (or been cancelled)? getMismatch does not wait if so.
+		 */
+		public boolean isDone()
+		{
+			return this.getMinimaxFuture().isDone() && this.getAlphaBetaFuture().isDone();
+		}
+
+		/**
+		 * Wait for both searches.
+		 * @return how they disagree, or null if they agree on the root utility
+		 */
+		public Mismatch getMismatch(int positionIdx)
+            throws InterruptedException, ExecutionException
+		{
+			DFSTreeNode minimaxResult = this.getMinimaxFuture().get();
+			DFSTreeNode alphaBetaResult = this.getAlphaBetaFuture().get();
+			if(Math.abs(minimaxResult.getMaxPlayerUtilityValue() - alphaBetaResult.getMaxPlayerUtilityValue()) <= DifferentialTester.UTILITY_TOLERANCE)
+			{
+				return null;
+			}
+			return new Mismatch(positionIdx,
+                DifferentialTester.describe(this.getPosition().getGame()),
+                String.valueOf(minimaxResult.getMove()),
+                minimaxResult.getMaxPlayerUtilityValue(),
+                String.valueOf(alphaBetaResult.getMove()),
+                alphaBetaResult.getMaxPlayerUtilityValue());
+		}
+
+		/**
+		 * Drop whichever search has not started yet, e.g. once the caller ran out of time.
+		 */
+		public void cancel()
+		{
+			this.getMinimaxFuture().cancel(false);
+			this.getAlphaBetaFuture().cancel(false);
+		}
+	}
+
+	/**
+	 * The reference for the in-place search: plain minimax over a standalone Position, with no pruning, no move
+	 * ordering and no transposition table. Leaves, terminal nodes and repetitions of the line are scored the way
+	 * PositionSearcher scores them (see Scores), so the two must agree on the root score exactly.
+	 * A searcher must not be shared between threads.
+	 */
+	public static class MinimaxPositionSearcher
+        extends Object
+	{
+		private final int maxDepth;
+		private final PositionHistory line; // the positions from the root down to the node being searched, excluded
+		private int maxColor;
+		private long numNodes;
+
+		public MinimaxPositionSearcher(int maxDepth)
+		{
+			this.maxDepth = maxDepth;
+			this.line = new PositionHistory();
+			this.maxColor = Position.WHITE;
+			this.numNodes = 0;
+		}
+
+		public int getMaxDepth() { return this.maxDepth; }
+		public int getMaxColor() { return this.maxColor; }
+		public long getNumNodes() { return this.numNodes; }
+
+		/**
+		 * @return the root's score and the first of its moves with that score, as a PositionSearcher result
+		 */
+		public PositionSearcher.SearchResult search(Position root)
+		{
+			long startTime = System.nanoTime();
+			this.maxColor = root.getSideToMove();
+			this.numNodes = 0;
+			this.line.clear();
+
+			int[] moves = new int[MoveGenerator.MAX_MOVES];
+			int numMoves = MoveGenerator.generateLegalMoves(root, moves);
+			int bestMove = Moves.NO_MOVE;
+			int bestScore = numMoves == 0 ? this.getTerminalScore(root, 0) : -Scores.INFINITY;
+			this.line.push(root);
+			for(int moveIdx = 0; moveIdx < numMoves && this.getMaxDepth() > 0; ++moveIdx)
+			{
+				Position child = root.copy();
+				child.applyMove(moves[moveIdx]);
+				int childScore = this.minimaxSearch(child, 1, this.getMaxDepth() - 1);
+				if(bestMove == Moves.NO_MOVE || childScore > bestScore)
+				{
+					bestScore = childScore;
+					bestMove = moves[moveIdx];
+				}
+			}
+			this.line.pop();
+
+			long runtimeInMS = (System.nanoTime() - startTime) / 1000000;
+			return new PositionSearcher.SearchResult(bestMove, bestScore, this.getMaxDepth(), this.getNumNodes(), runtimeInMS);
+		}
+
+		/**
+		 * @param ply distance of node from the root
+		 * @param depth how many more plies to search
+		 * @return the score of node for the MAX player
+		 */
+		private int minimaxSearch(Position node, int ply, int depth)
+		{
+			this.numNodes += 1;
+			if(this.line.isRepetition(node))
+			{
+				return Scores.DRAW;
+			}
+			int[] moves = new int[MoveGenerator.MAX_MOVES];
+			int numMoves = MoveGenerator.generateLegalMoves(node, moves);
+			if(numMoves == 0)
+			{
+				return this.getTerminalScore(node, ply);
+			}
+			if(depth <= 0)
+			{
+				return CustomHeuristics.getMaxPlayerHeuristicValue(node, this.getMaxColor());
+			}
+
+			boolean isMaxNode = node.getSideToMove() == this.getMaxColor();
+			int bestScore = isMaxNode ? -Scores.INFINITY : Scores.INFINITY;
+			this.line.push(node);
+			for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+			{
+				Position child = node.copy();
+				child.applyMove(moves[moveIdx]);
+				int childScore = this.minimaxSearch(child, ply + 1, depth - 1);
+				bestScore = isMaxNode ? Math.max(bestScore, childScore) : Math.min(bestScore, childScore);
+			}
+			this.line.pop();
+			return bestScore;
+		}
+
+		/**
+		 * Checkmate is a loss for the side to move, by distance from the root, and stalemate a draw.
+		 */
+		private int getTerminalScore(Position node, int ply)
+		{
+			if(!node.isInCheck(node.getSideToMove()))
+			{
+				return Scores.DRAW;
+			}
+			return node.getSideToMove() == this.getMaxColor() ? Scores.matedIn(ply) : Scores.mateIn(ply);
+		}
+	}
+
+	private final int maxDepth;
+	private final ExecutorService threadPool;
+
+	public DifferentialTester(int maxDepth)
+	{
+		this(maxDepth, Runtime.getRuntime().availableProcessors());
+	}
+
+	public DifferentialTester(int maxDepth, int numThreads)
+	{
+		this.maxDepth = maxDepth;
+		this.threadPool = Executors.newFixedThreadPool(Math.max(1, numThreads));
+	}
+
+	public int getMaxDepth() { return this.maxDepth; }
+	private ExecutorService getThreadPool() { return this.threadPool; }
+
+	/**
+	 * Submit both searches of every position without waiting for them, so a caller can take what it needs first.
+	 * Each search gets its own root node so the two jobs never write utilities into the same tree concurrently.
+	 * @param positions the (non-terminal) positions to check
+	 * @return one check per position, in position order
+	 */
+	public List<Check> submit(List<DFSTreeNode> positions)
+	{
+		List<Check> checks = new ArrayList<Check>(positions.size());
+		for(DFSTreeNode position : positions)
+		{
+			final MinimaxAgent.MinimaxSearcher minimaxSearcher = new MinimaxAgent.MinimaxSearcher(
+                new DFSTreeNode(position.getGame(), position.getMaxPlayer()), this.getMaxDepth());
+			final AlphaBetaAgent.AlphaBetaSearcher alphaBetaSearcher = new AlphaBetaAgent.AlphaBetaSearcher(
+                new DFSTreeNode(position.getGame(), position.getMaxPlayer()), this.getMaxDepth());
+
+			checks.add(new Check(position,
+                this.getThreadPool().submit(() ->
+                    minimaxSearcher.minimaxSearch(minimaxSearcher.getRootNode(), minimaxSearcher.getMaxDepth())),
+                this.getThreadPool().submit(() ->
+                    alphaBetaSearcher.alphaBetaSearch(alphaBetaSearcher.getRootNode(), alphaBetaSearcher.getMaxDepth(),
+                        Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY))));
+		}
+		return checks;
+	}
+
+	/**
+	 * Run both searches on every position and collect the disagreements.
+	 * @param positions the (non-terminal) positions to check
+	 * @return every mismatch found, in position order
+	 */
+	public List<Mismatch> run(List<DFSTreeNode> positions)
+        throws InterruptedException, ExecutionException
+	{
+		List<Check> checks = this.submit(positions);
+		List<Mismatch> mismatches = new ArrayList<Mismatch>();
+		for(int positionIdx = 0; positionIdx < checks.size(); ++positionIdx)
+		{
+			Mismatch mismatch = checks.get(positionIdx).getMismatch(positionIdx);
+			if(mismatch != null)
+			{
+				mismatches.add(mismatch);
+			}
+		}
+		return mismatches;
+	}
+
+	public List<Mismatch> runPositions(List<Position> positions)
+        throws InterruptedException, ExecutionException
+	{
+		return this.runPositions(positions, false);
+	}
+
+	/**
+	 * Run PositionSearcher and MinimaxPositionSearcher on every position and collect the disagreements on the root
+	 * score. PositionSearcher searches without quiescence search or network, neither of which the reference has, and
+	 * to the same depth (its iterative deepening only changes the order it searches moves in).
+	 * With a transposition table, every position gets a fresh one, so no entry outlives the search it came from and
+	 * positions cannot affect each other. Its cutoffs must then not change the root score either.
+	 * @param positions the positions to check (not modified)
+	 * @param useTranspositionTable search with a transposition table
+	 * @return every mismatch found, in position order
+	 */
+	public List<Mismatch> runPositions(List<Position> positions,
+                                       boolean useTranspositionTable)
+        throws InterruptedException, ExecutionException
+	{
+		List<Future<PositionSearcher.SearchResult> > minimaxFutures = new ArrayList<Future<PositionSearcher.SearchResult> >(positions.size());
+		List<Future<PositionSearcher.SearchResult> > alphaBetaFutures = new ArrayList<Future<PositionSearcher.SearchResult> >(positions.size());
+		for(Position position : positions)
+		{
+			minimaxFutures.add(this.getThreadPool().submit(() ->
+                new MinimaxPositionSearcher(this.getMaxDepth()).search(position)));
+			alphaBetaFutures.add(this.getThreadPool().submit(() -> {
+				PositionSearcher searcher = new PositionSearcher(this.getMaxDepth(), null);
+				searcher.setTranspositionTable(useTranspositionTable
+                    ? new TranspositionTable(DifferentialTester.TRANSPOSITION_TABLE_SIZE_IN_MB) : null);
+				searcher.setQuiescent(false);
+				return searcher.search(position);
+			}));
+		}
+
+		List<Mismatch> mismatches = new ArrayList<Mismatch>();
+		for(int positionIdx = 0; positionIdx < positions.size(); ++positionIdx)
+		{
+			PositionSearcher.SearchResult minimaxResult = minimaxFutures.get(positionIdx).get();
+			PositionSearcher.SearchResult alphaBetaResult = alphaBetaFutures.get(positionIdx).get();
+			if(minimaxResult.getScore() != alphaBetaResult.getScore())
+			{
+				mismatches.add(new Mismatch(positionIdx,
+                    Fen.toFen(positions.get(positionIdx)),
+                    Moves.toString(minimaxResult.getBestMove()),
+                    minimaxResult.getUtility(),
+                    Moves.toString(alphaBetaResult.getBestMove()),
+                    alphaBetaResult.getUtility()));
+			}
+		}
+		return mismatches;
+	}
+
+	public void shutdown()
+	{
+		this.getThreadPool().shutdownNow();
+	}
+
+	/**
+	 * Expand a live position into a batch of test positions by random walks down the game tree.
+	 * Every walk starts at the root and stops after a random number of plies (or at a terminal node),
+	 * so the batch mixes the root's immediate neighbourhood with somewhat deeper positions.
+	 * @param root where to start the walks from
+	 * @param numPositions how many positions to collect
+	 * @param maxPlies the longest walk to take
+	 * @param seed seed for the walk so a failing batch can be regenerated
+	 * @return the collected positions (all non-terminal)
+	 */
+	public static List<DFSTreeNode> collectPositions(DFSTreeNode root,
+                                                     int numPositions,
+                                                     int maxPlies,
+                                                     long seed)
+	{
+		Random random = new Random(seed);
+		List<DFSTreeNode> positions = new ArrayList<DFSTreeNode>(numPositions);
+		int numAttempts = 0;
+		while(positions.size() < numPositions && numAttempts < 4 * numPositions)
+		{
+			numAttempts += 1;
+
+			DFSTreeNode node = root;
+			int numPlies = random.nextInt(maxPlies + 1);
+			for(int ply = 0; ply < numPlies && !node.isTerminal(); ++ply)
+			{
+				List<DFSTreeNode> children = node.getChildren();
+				if(children.isEmpty())
+				{
+					break;
+				}
+				node = children.get(random.nextInt(children.size()));
+			}
+
+			if(!node.isTerminal())
+			{
+				positions.add(node);
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * The position as FEN, so a failing position can be pasted straight into the batch tools.
+	 */
+	public static String describe(Game game)
+	{
+		return Fen.toFen(GameAdapter.toPosition(game));
+	}
+
+	public static void main(String[] args)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("DifferentialTester.main [ERROR]: must specify a positions file (or - for stdin) and a depth");
+			System.exit(-1);
+		}
+
+		List<Position> positions = new ArrayList<Position>();
+		try(BufferedReader reader = new BufferedReader(args[0].equals("-") ? new InputStreamReader(System.in) : new FileReader(args[0])))
+		{
+			for(Epd record : Epd.load(reader))
+			{
+				positions.add(record.getPosition());
+			}
+		}
+		if(positions.isEmpty())
+		{
+			System.err.println("DifferentialTester.main [ERROR]: no positions in " + args[0]);
+			System.exit(-1);
+		}
+
+		DifferentialTester tester = new DifferentialTester(Integer.parseInt(args[1]));
+		List<Mismatch> mismatches = null;
+		try
+		{
+			mismatches = tester.runPositions(positions, args.length > 2 && args[2].equals("tt"));
+		} finally
+		{
+			tester.shutdown();
+		}
+		for(Mismatch mismatch : mismatches)
+		{
+			System.out.println(mismatch);
+		}
+		System.out.println("DifferentialTester.main [INFO]: " + mismatches.size() + " mismatches in " + positions.size() + " positions");
+		if(!mismatches.isEmpty())
+		{
+			System.exit(1);
+		}
+	}
+
+}
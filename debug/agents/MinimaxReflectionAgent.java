@@ -12,158 +12,35 @@ import edu.bu.chess.game.planning.Planner;
 import edu.bu.chess.game.player.Player;
 import edu.bu.chess.game.player.PlayerType;
 import edu.bu.chess.search.DFSTreeNode;
-import edu.bu.chess.search.DFSTreeNodeType;
 import edu.bu.chess.streaming.Streamer;
-import edu.bu.chess.utils.Pair;
 
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 
 
 // JAVA PROJECT IMPORTS
-import src.pas.chess.heuristics.CustomHeuristics;
 import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.debug.DifferentialTester;
 
 
 public class MinimaxReflectionAgent
     extends ChessAgent
 {
-    private class AlphaBetaReflectionSearcher
-        extends Object
-        implements Callable<Pair<Move, Double> >  // so this object can be run in a background thread
-	{
-
-		private DFSTreeNode rootNode;
-		private final int maxDepth;
-        private final Object searcher;
-        private final Method alphaBetaSearchMethod;
-
-		public AlphaBetaReflectionSearcher(DFSTreeNode rootNode,
-                                           int maxDepth,
-                                           AlphaBetaAgent agent,
-                                           Constructor<?> c,
-                                           Method m)
-		{
-			this.rootNode = rootNode;
-			this.maxDepth = maxDepth;
-            Object searcher = null;
-            try
-            {
-                searcher = c.newInstance(agent, rootNode, maxDepth);
-            } catch(Exception e)
-            {
-                e.printStackTrace();
-                System.exit(-1);
-            }
-            this.searcher = searcher;
-            this.alphaBetaSearchMethod = m;
-		}
-
-		public DFSTreeNode getRootNode() { return this.rootNode; }
-		public int getMaxDepth() { return this.maxDepth; }
-        public Object getSearcher() { return this.searcher; }
-        public Method getSearchMethod() { return this.alphaBetaSearchMethod; }
-
-		@Override
-		public Pair<Move, Double> call() throws Exception
-		{
-			DFSTreeNode n = (DFSTreeNode)this.getSearchMethod().invoke(this.getSearcher(),
-                this.getRootNode(), this.getMaxDepth(), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
-
-			return new Pair<Move, Double>(n.getMove(), n.getMaxPlayerUtilityValue());
-		}
-		
-	}
-
-
-	private class MinimaxSearcher
-        extends Object
-        implements Callable<Pair<Move, Double> >  // so this object can be run in a background thread
-	{
-
-		private DFSTreeNode rootNode;
-		private final int maxDepth;
-
-		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth)
-		{
-			this.rootNode = rootNode;
-			this.maxDepth = maxDepth;
-		}
-
-		public DFSTreeNode getRootNode() { return this.rootNode; }
-		public int getMaxDepth() { return this.maxDepth; }
-
-		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
-		{
-			DFSTreeNode bestChild = null;
-			if(node.isTerminal()) // terminal state!
-			{
-				bestChild = node;
-			} else if(depth <= 0) // reached the end of the depth!
-			{
-				// assign heuristic value to the child as its utility
-				node.setMaxPlayerUtilityValue(CustomHeuristics.getMaxPlayerHeuristicValue(node));
-				bestChild = node;
-			} else // we can get the children of this node and find its best value
-			{
-				List<DFSTreeNode> children = node.getChildren();
-
-				double bestUtilityValue;
-				if(node.getType() == DFSTreeNodeType.MAX)
-				{
-					bestUtilityValue = Double.NEGATIVE_INFINITY;
-					for(DFSTreeNode child : children)
-					{
-						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
-						if(child.getMaxPlayerUtilityValue() > bestUtilityValue)
-						{
-							bestUtilityValue = child.getMaxPlayerUtilityValue();
-							bestChild = child;
-						}
-					}
-				} else
-				{
-					// min
-					bestUtilityValue = Double.POSITIVE_INFINITY;
-					for(DFSTreeNode child : children)
-					{
-						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
-						if(child.getMaxPlayerUtilityValue() < bestUtilityValue)
-						{
-							bestUtilityValue = child.getMaxPlayerUtilityValue();
-							bestChild = child;
-						}
-					}
-				}
-			}
-			return bestChild;
-		}
-
-		@Override
-		public Pair<Move, Double> call() throws Exception
-		{
-			DFSTreeNode n = this.minimaxSearch(this.getRootNode(), this.getMaxDepth());
-
-			return new Pair<Move, Double>(n.getMove(), n.getMaxPlayerUtilityValue());
-		}
-		
-	}
-
 	private static final long serialVersionUID = -8325987205183244708L;
     private static final int MAX_NUM_MOVES_BEFORE_QUIT = 10;
+    private static final int NUM_POSITIONS_PER_MOVE = 256;  // positions expanded from every live position we are asked to play
+    private static final int MAX_WALK_PLIES = 4;
 	private final int maxDepth;
 	private final long maxPlaytimeInMS;
 	private final PlayerType playerType;
@@ -171,11 +48,12 @@ public class MinimaxReflectionAgent
 	private Player myPlayer;
 
     private final AlphaBetaAgent      alphaBetaAgent;
-    private final Class<?>            alphaBetaSearcherClassType;
-    private final Constructor<?>      alphaBetaSearcherConstructor;
-    private final Method              alphaBetaSearchMethod;
+    private final DifferentialTester  rootTester;          // the position we play, on threads of its own so it never queues behind a batch
+    private final DifferentialTester  differentialTester;  // the batches around the positions we played, checked off the clock
+    private final Deque<DifferentialTester.Check> pendingChecks; // submitted, in submission order, not looked at yet
 
     private int numMoves;
+    private int numPositionsChecked;
     private int numDifferentUtilityMoves;
 
 	/**
@@ -192,55 +70,14 @@ public class MinimaxReflectionAgent
         this.maxPlaytimeInMS = this.getAlphaBetaAgent().getMaxPlaytimeInMS();
         this.playerType = this.getAlphaBetaAgent().getPlayerType();
 
-        // have to use reflection at this point
-        Class<?> alphaBetaSearcherClass = null;
-        Constructor<?> alphaBetaSearcherConstructor = null;
-        Method alphaBetaSearchMethod = null;
-        try
-        {
-            Method getPlayerMethod = null;
-            for(Method m : AlphaBetaAgent.class.getDeclaredMethods())
-            {
-                if(getPlayerMethod == null && m.getName().equals("getPlayer"))
-                {
-                    getPlayerMethod = m;
-                }
-            }
-
-            // System.out.println(getPlayerMethod);
-            getPlayerMethod.setAccessible(true);
-            this.myPlayer = (Player)getPlayerMethod.invoke(this.getAlphaBetaAgent());
-
-
-            // reflection to find AlphaBetaSearcherStuff
-            alphaBetaSearcherClass = Class.forName("src.pas.chess.agents.AlphaBetaAgent$AlphaBetaSearcher");
-            // System.out.println(alphaBetaSearcherClass);
-
-            alphaBetaSearcherConstructor =  alphaBetaSearcherClass.getDeclaredConstructors()[0];
-            // System.out.println(this.getAlphaBetaSearcherConstructor());
-
-            for(Method m : alphaBetaSearcherClass.getDeclaredMethods())
-            {
-                if(alphaBetaSearchMethod == null && m.getName().equals("alphaBetaSearch"))
-                {
-                    alphaBetaSearchMethod = m;
-                }
-            }
-
-        } catch(Exception e)
-        {
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        this.alphaBetaSearcherClassType = alphaBetaSearcherClass;
-        this.alphaBetaSearcherConstructor = alphaBetaSearcherConstructor;
-        this.alphaBetaSearchMethod = alphaBetaSearchMethod;
-
-        this.getAlphaBetaSearcherConstructor().setAccessible(true);
-        this.getAlphaBetaSearchMethod().setAccessible(true);
+        this.myPlayer = null;
+        this.rootTester = new DifferentialTester(this.getMaxDepth(), 2);
+        this.differentialTester = new DifferentialTester(this.getMaxDepth(),
+            Runtime.getRuntime().availableProcessors() - 2); // leave the root's searches a core each
+        this.pendingChecks = new ArrayDeque<DifferentialTester.Check>();
 
         this.numMoves = 0;
+        this.numPositionsChecked = 0;
         this.numDifferentUtilityMoves = 0;
 
 		System.out.println("Constructed MinimaxReflectionAgent(teamColor=" + this.getPlayerType() +
@@ -251,14 +88,16 @@ public class MinimaxReflectionAgent
 	 * Some constants
 	 */
     public AlphaBetaAgent getAlphaBetaAgent() { return this.alphaBetaAgent; }
-    public Class<?> getAlphaBetaSearcherClassType() { return this.alphaBetaSearcherClassType; }
-    public Constructor<?> getAlphaBetaSearcherConstructor() { return this.alphaBetaSearcherConstructor; }
-    public Method getAlphaBetaSearchMethod() { return this.alphaBetaSearchMethod; }
+    public DifferentialTester getRootTester() { return this.rootTester; }
+    public DifferentialTester getDifferentialTester() { return this.differentialTester; }
+    private Deque<DifferentialTester.Check> getPendingChecks() { return this.pendingChecks; }
 
     public int getNumMoves() { return this.numMoves; }
+    public int getNumPositionsChecked() { return this.numPositionsChecked; }
     public int getNumDifferentUtilityMoves() { return this.numDifferentUtilityMoves; }
 
     public void incNumMoves() { this.numMoves += 1; }
+    public void incNumPositionsChecked(int numPositions) { this.numPositionsChecked += numPositions; }
     public void incNumDifferentUtilityMoves() { this.numDifferentUtilityMoves += 1; }
 
 	public int getMaxDepth() { return this.maxDepth; }
@@ -273,58 +112,38 @@ public class MinimaxReflectionAgent
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
 	 * There is some setup for this to work, namely making sure the agent doesn't run out of time.
-	 * Please do not modify.
+	 * Only the minimax search of the position we play is on the clock. The batch of positions around it is expanded
+	 * and submitted once the clock is stopped, and checked in the background: every move looks at the checks that
+	 * have finished since the last one without waiting, and terminalStep waits for the rest.
 	 */
 	@Override
 	protected Move getChessMove(StateView state)
 	{
         Planner.getPlanner().freeze(this.getPlayer());
 
-		// will run the minimax algorithm in a background thread with a timeout
-		ExecutorService backgroundThreadManager = Executors.newSingleThreadExecutor();
-
 		// preallocate so we don't spend precious time doing it when we are recording duration
 		Move move = null;
 		DFSTreeNode rootNode = new DFSTreeNode(Planner.getPlanner().getGame(), this.getPlayer());
-		MinimaxSearcher minimaxSearcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth());
-        AlphaBetaReflectionSearcher alphaBetaSearcherObject = new AlphaBetaReflectionSearcher(rootNode,
-            this.getMaxDepth(),
-            this.getAlphaBetaAgent(),
-            this.getAlphaBetaSearcherConstructor(),
-            this.getAlphaBetaSearchMethod()
-        );
-
-		// submit the job
-		Future<Pair<Move, Double> > minimaxFuture = backgroundThreadManager.submit(minimaxSearcherObject);
-        Future<Pair<Move, Double> > alphaBetaFuture = backgroundThreadManager.submit(alphaBetaSearcherObject);
-        
+		DifferentialTester.Check rootCheck = this.getRootTester().submit(Collections.singletonList(rootNode)).get(0);
 
 		try
 		{
-			// set the timeout
-			Pair<Move, Double> minimaxMoveAndUtil = minimaxFuture.get(
-                    Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer()),
-					TimeUnit.MILLISECONDS
-            );
-            Pair<Move, Double> alphaBetaMoveAndUtil = alphaBetaFuture.get(
+			// set the timeout: we play the reference (minimax) move
+			DFSTreeNode minimaxResult = rootCheck.getMinimaxFuture().get(
                     Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer()),
-					TimeUnit.MILLISECONDS
+                    TimeUnit.MILLISECONDS
             );
 
 			// if we get here the move was chosen quick enough! :)
-			move = minimaxMoveAndUtil.getFirst();
+			move = minimaxResult.getMove();
             this.incNumMoves();
-            if(Math.abs(minimaxMoveAndUtil.getSecond() - alphaBetaMoveAndUtil.getSecond()) > 1e-12)
-            {
-                System.err.println("WARNING: alphabeta and minimax produced different utilities!");
-                this.incNumDifferentUtilityMoves();
-            }
 
 			// convert the move into a text form (algebraic notation) and stream it somewhere
 			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
+			rootCheck.cancel();
 		} catch(InterruptedException e)
 		{
 			e.printStackTrace();
@@ -339,9 +158,50 @@ public class MinimaxReflectionAgent
 
         Planner.getPlanner().thaw(this.getPlayer());
 
+		if(move != null)
+		{
+			// expand the live position into a batch of nearby positions, the root's own check included
+			List<DFSTreeNode> positions = DifferentialTester.collectPositions(rootNode,
+                MinimaxReflectionAgent.NUM_POSITIONS_PER_MOVE - 1,
+                MinimaxReflectionAgent.MAX_WALK_PLIES,
+                this.getNumMoves());
+			this.getPendingChecks().add(rootCheck);
+			this.getPendingChecks().addAll(this.getDifferentialTester().submit(positions));
+		}
+		this.collectChecks(false);
+
 		return move;
 	}
 
+	/**
+	 * Count the pending checks whose searches have finished, oldest first, and report their mismatches.
+	 * @param waitForAll wait for every pending check, rather than stopping at the first that is still running
+	 */
+	private void collectChecks(boolean waitForAll)
+	{
+		try
+		{
+			while(!this.getPendingChecks().isEmpty() && (waitForAll || this.getPendingChecks().peek().isDone()))
+			{
+				DifferentialTester.Mismatch mismatch = this.getPendingChecks().poll().getMismatch(this.getNumPositionsChecked());
+				if(mismatch != null)
+				{
+					System.err.println("WARNING: alphabeta and minimax produced different utilities! " + mismatch);
+					this.incNumDifferentUtilityMoves();
+				}
+				this.incNumPositionsChecked(1);
+			}
+		} catch(InterruptedException e)
+		{
+			e.printStackTrace();
+			System.exit(-1);
+		} catch(ExecutionException e)
+		{
+			e.printStackTrace();
+			System.exit(-1);
+		}
+	}
+
 	/**
 	 * The initial step which we use for setup. Please do not modify.
 	 */
@@ -431,8 +291,11 @@ public class MinimaxReflectionAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+        this.collectChecks(true);
+        this.getRootTester().shutdown();
+        this.getDifferentialTester().shutdown();
         System.out.println("MinimaxReflectionAgent: numMoves=" + this.getNumMoves() +
+            " numPositionsChecked=" + this.getNumPositionsChecked() +
             " numDifferentUtilityMoves=" + this.getNumDifferentUtilityMoves());
 	}
 
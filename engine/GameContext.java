@@ -0,0 +1,200 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Everything about one game played outside of SEPIA: the current position, the positions before it (for repetitions
+ * and for the searchers, see PositionSearcher.setHistory), the moves played and, once it is over, the result.
+ *
+ * A context replaces the Planner singleton for headless games, so any number of games can run in one JVM: each game
+ * owns its context and nothing in it is shared. A context is not thread-safe, one game is played by one thread.
+ *
+ * The game ends on checkmate or stalemate, on the third occurrence of a position, after fifty moves without a pawn
+ * move or a capture, when neither side has mating material left, or (adjudicated a draw) after maxPlies plies.
+ * Whoever runs the game can also end it on time (see forfeitOnTime).
+ */
+public class GameContext
+    extends Object
+{
+
+	public static final int DEFAULT_MAX_PLIES = 400;
+
+	// results
+	public static final int ONGOING = 0;
+	public static final int WHITE_WINS = 1;
+	public static final int BLACK_WINS = 2;
+	public static final int DRAW = 3;
+
+	private final Position position;
+	private final PositionHistory history;
+	private final int maxPlies;
+	private final int[] legalMoves;
+	private int numLegalMoves;
+	private int[] moves;
+	private int numPlies;
+	private int result;
+	private String termination; // why the game ended, null while it is on
+
+	public GameContext(Position start, int maxPlies)
+	{
+		this.position = start.copy();
+		this.history = new PositionHistory();
+		this.maxPlies = maxPlies;
+		this.legalMoves = new int[MoveGenerator.MAX_MOVES];
+		this.moves = new int[64];
+		this.numPlies = 0;
+		this.result = ONGOING;
+		this.termination = null;
+		this.updateResult();
+	}
+
+	/**
+	 * The current position (owned by the context, do not modify).
+	 */
+	public Position getPosition() { return this.position; }
+
+	/**
+	 * The positions before the current one, oldest first.
+	 */
+	public PositionHistory getHistory() { return this.history; }
+	public int getMaxPlies() { return this.maxPlies; }
+	public int getNumPlies() { return this.numPlies; }
+	public int getMove(int plyIdx) { return this.moves[plyIdx]; }
+	public int getResult() { return this.result; }
+	public String getTermination() { return this.termination; }
+	public boolean isOver() { return this.result != ONGOING; }
+
+	/**
+	 * The result as a score for white: 1 for a win, 0.5 for a draw, 0 for a loss.
+	 */
+	public double getWhiteScore()
+	{
+		return this.result == WHITE_WINS ? 1.0 : this.result == BLACK_WINS ? 0.0 : 0.5;
+	}
+
+	public boolean isLegal(int move)
+	{
+		for(int moveIdx = 0; moveIdx < this.numLegalMoves; ++moveIdx)
+		{
+			if(this.legalMoves[moveIdx] == move)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Play move, which must be legal, and find out whether it ended the game.
+	 */
+	public void play(int move)
+	{
+		if(this.isOver() || !this.isLegal(move))
+		{
+			throw new IllegalArgumentException("GameContext.play [ERROR]: cannot play move " + move + " now");
+		}
+		this.history.push(this.position);
+		if(this.numPlies == this.moves.length)
+		{
+			this.moves = Arrays.copyOf(this.moves, this.numPlies * 2);
+		}
+		this.moves[this.numPlies++] = move;
+		this.position.applyMove(move);
+		this.updateResult();
+	}
+
+	private void updateResult()
+	{
+		Position position = this.position;
+		this.numLegalMoves = MoveGenerator.generateLegalMoves(position, this.legalMoves);
+		if(this.numLegalMoves == 0)
+		{
+			if(position.isInCheck(position.getSideToMove()))
+			{
+				this.end(position.getSideToMove() == Position.WHITE ? BLACK_WINS : WHITE_WINS, "checkmate");
+			} else
+			{
+				this.end(DRAW, "stalemate");
+			}
+		} else if(this.getNumRepetitions() >= 2)
+		{
+			this.end(DRAW, "threefold repetition");
+		} else if(position.getHalfmoveClock() >= 100)
+		{
+			this.end(DRAW, "fifty-move rule");
+		} else if(GameContext.isInsufficientMaterial(position))
+		{
+			this.end(DRAW, "insufficient material");
+		} else if(this.numPlies >= this.maxPlies)
+		{
+			this.end(DRAW, "move limit");
+		}
+	}
+
+	/**
+	 * End the game as lost by color, whose clock ran out.
+	 */
+	public void forfeitOnTime(int color)
+	{
+		this.end(color == Position.WHITE ? BLACK_WINS : WHITE_WINS, "time forfeit");
+	}
+
+	private void end(int result, String termination)
+	{
+		this.result = result;
+		this.termination = termination;
+	}
+
+	/**
+	 * How many times the current position occurred before, looking back as far as the halfmove clock allows.
+	 */
+	private int getNumRepetitions()
+	{
+		long hash = this.position.getHash();
+		int numHashes = this.history.getNumHashes();
+		int maxDistance = Math.min(this.position.getHalfmoveClock(), numHashes);
+		int numRepetitions = 0;
+		for(int distance = 4; distance <= maxDistance; distance += 2)
+		{
+			if(this.history.getHash(numHashes - distance) == hash)
+			{
+				numRepetitions += 1;
+			}
+		}
+		return numRepetitions;
+	}
+
+	/**
+	 * Is there no pawn, rook or queen left and at most one minor piece?
+	 */
+	public static boolean isInsufficientMaterial(Position position)
+	{
+		int numMinorPieces = 0;
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			switch(Position.typeOf(position.getPieceAt(square)))
+			{
+			case Position.PAWN:
+			case Position.ROOK:
+			case Position.QUEEN:
+				return false;
+			case Position.KNIGHT:
+			case Position.BISHOP:
+				numMinorPieces += 1;
+				break;
+			default:
+				break;
+			}
+		}
+		return numMinorPieces <= 1;
+	}
+
+}
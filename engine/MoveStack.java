@@ -0,0 +1,65 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.MoveGenerator;
+
+
+/**
+ * Preallocated move lists for a search, one per ply: an int array of moves (see Moves) and a parallel int array of
+ * ordering scores. A node generates into the list of its ply and its children use the next one, so the search never
+ * allocates a move list.
+ *
+ * Moves are not sorted up front. selectNext brings the best remaining move forward just before it is searched, so a
+ * node that is cut off after its first few moves never pays for ordering the rest.
+ */
+public class MoveStack
+    extends Object
+{
+
+	private final int[][] moves;  // [ply][moveIdx]
+	private final int[][] scores; // [ply][moveIdx]
+
+	public MoveStack(int maxPly)
+	{
+		this.moves = new int[maxPly][MoveGenerator.MAX_MOVES];
+		this.scores = new int[maxPly][MoveGenerator.MAX_MOVES];
+	}
+
+	public int getMaxPly() { return this.moves.length; }
+	public int[] getMoves(int ply) { return this.moves[ply]; }
+	public int[] getScores(int ply) { return this.scores[ply]; }
+
+	/**
+	 * One step of a partial selection sort: move the best scored of moves[moveIdx..numMoves) to moveIdx.
+	 * The moves it passes over shift up by one rather than being swapped, so moves with equal scores keep their
+	 * generation order, exactly as a full stable sort would have left them.
+	 * @return the move now at moveIdx
+	 */
+	public static int selectNext(int[] moves, int[] scores, int moveIdx, int numMoves)
+	{
+		int bestIdx = moveIdx;
+		int bestScore = scores[moveIdx];
+		for(int otherIdx = moveIdx + 1; otherIdx < numMoves; ++otherIdx)
+		{
+			if(scores[otherIdx] > bestScore)
+			{
+				bestIdx = otherIdx;
+				bestScore = scores[otherIdx];
+			}
+		}
+		if(bestIdx != moveIdx)
+		{
+			int bestMove = moves[bestIdx];
+			System.arraycopy(moves, moveIdx, moves, moveIdx + 1, bestIdx - moveIdx);
+			System.arraycopy(scores, moveIdx, scores, moveIdx + 1, bestIdx - moveIdx);
+			moves[moveIdx] = bestMove;
+			scores[moveIdx] = bestScore;
+		}
+		return moves[moveIdx];
+	}
+
+}
@@ -0,0 +1,246 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+import src.pas.chess.position.Zobrist;
+
+
+/**
+ * The hashes (see Position.getHash) of the positions a game has gone through, oldest first, so a search can tell
+ * when a line repeats a position played before its root (see PositionSearcher.setHistory).
+ *
+ * The framework's Game does not keep its moves, so an agent builds the history itself by pushing every position it
+ * sees: the position it is asked to move in and the one its move leads to. Those follow each other ply by ply.
+ * A Position read from a Game only has its board and side to move, so the history keeps what the board alone cannot
+ * tell, per position pushed (see fillIn):
+ * - the plies since the last irreversible move (a pawn move or a capture), which is all a repetition can look back
+ *   over, i.e. the halfmove clock
+ * - the plies since the start of the game, for the fullmove number
+ * - the castling rights: a right is lost for good once its king or rook has left its square, even if it comes back,
+ *   and the board only shows where they are now. The hashes are those of the positions with these rights.
+ *
+ * Positions can also be popped, so a search can push the positions of its current line on top of the game's
+ * (see AlphaBetaAgent.AlphaBetaSearcher.alphaBetaSearch).
+ */
+public class PositionHistory
+    extends Object
+{
+
+	private long[] hashes;
+	private long[] pawnSquares;    // [hashIdx] bitset of the squares holding a pawn, to spot irreversible moves
+	private int[] numPieces;       // [hashIdx]
+	private int[] halfmoveClocks;  // [hashIdx]
+	private int[] castlingRights;  // [hashIdx]
+	private int numHashes;
+	private int firstPly;          // plies played before the first position pushed
+
+	public PositionHistory()
+	{
+		this.hashes = new long[64];
+		this.pawnSquares = new long[64];
+		this.numPieces = new int[64];
+		this.halfmoveClocks = new int[64];
+		this.castlingRights = new int[64];
+		this.numHashes = 0;
+		this.firstPly = 0;
+	}
+
+	/**
+	 * A copy of other, which can then be pushed onto and popped without changing other.
+	 */
+	public PositionHistory(PositionHistory other)
+	{
+		this.hashes = Arrays.copyOf(other.hashes, other.hashes.length);
+		this.pawnSquares = Arrays.copyOf(other.pawnSquares, other.pawnSquares.length);
+		this.numPieces = Arrays.copyOf(other.numPieces, other.numPieces.length);
+		this.halfmoveClocks = Arrays.copyOf(other.halfmoveClocks, other.halfmoveClocks.length);
+		this.castlingRights = Arrays.copyOf(other.castlingRights, other.castlingRights.length);
+		this.numHashes = other.numHashes;
+		this.firstPly = other.firstPly;
+	}
+
+	public int getNumHashes() { return this.numHashes; }
+
+	/**
+	 * @param hashIdx 0 for the oldest position
+	 */
+	public long getHash(int hashIdx) { return this.hashes[hashIdx]; }
+
+	/**
+	 * Add the position the game has just reached.
+	 */
+	public void push(Position position)
+	{
+		if(this.numHashes == this.hashes.length)
+		{
+			int capacity = this.numHashes * 2;
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+			this.pawnSquares = Arrays.copyOf(this.pawnSquares, capacity);
+			this.numPieces = Arrays.copyOf(this.numPieces, capacity);
+			this.halfmoveClocks = Arrays.copyOf(this.halfmoveClocks, capacity);
+			this.castlingRights = Arrays.copyOf(this.castlingRights, capacity);
+		}
+		if(this.numHashes == 0)
+		{
+			this.firstPly = PositionHistory.getFirstPly(position);
+		}
+		int hashIdx = this.numHashes;
+		int castlingRights = this.getCastlingRights(position);
+		this.hashes[hashIdx] = PositionHistory.getHash(position, castlingRights);
+		this.halfmoveClocks[hashIdx] = this.getHalfmoveClock(position);
+		this.pawnSquares[hashIdx] = PositionHistory.getPawnSquares(position);
+		this.numPieces[hashIdx] = PositionHistory.countPieces(position);
+		this.castlingRights[hashIdx] = castlingRights;
+		this.numHashes += 1;
+	}
+
+	/**
+	 * Take back the last position pushed.
+	 */
+	public void pop()
+	{
+		this.numHashes -= 1;
+	}
+
+	public void clear()
+	{
+		this.numHashes = 0;
+		this.firstPly = 0;
+	}
+
+	/**
+	 * The halfmove clock of position, if position comes right after the last position pushed: how many plies have
+	 * been played since the last pawn move or capture. With nothing pushed yet, position is taken to be the first or
+	 * second of a game from the standard start (see getFullmoveNumber).
+	 */
+	public int getHalfmoveClock(Position position)
+	{
+		if(this.numHashes == 0)
+		{
+			return PositionHistory.getFirstPly(position) == 1 && !PositionHistory.hasMovedWhitePawn(position) ? 1 : 0;
+		}
+		int lastIdx = this.numHashes - 1;
+		if(PositionHistory.getPawnSquares(position) != this.pawnSquares[lastIdx]
+            || PositionHistory.countPieces(position) != this.numPieces[lastIdx])
+		{
+			return 0;
+		}
+		return this.halfmoveClocks[lastIdx] + 1;
+	}
+
+	/**
+	 * The fullmove number of position, if position comes right after the last position pushed. Plies are counted
+	 * from a game that started with white to move, so an agent playing black pushes its first position at ply 1.
+	 */
+	public int getFullmoveNumber(Position position)
+	{
+		int ply = this.numHashes > 0 ? this.firstPly + this.numHashes : PositionHistory.getFirstPly(position);
+		return ply / 2 + 1;
+	}
+
+	/**
+	 * The castling rights of position, if position comes right after the last position pushed: those position has
+	 * (e.g. read off its board) that no earlier position has lost.
+	 */
+	public int getCastlingRights(Position position)
+	{
+		int castlingRights = position.getCastlingRights();
+		return this.numHashes > 0 ? castlingRights & this.castlingRights[this.numHashes - 1] : castlingRights;
+	}
+
+	/**
+	 * Set what a Position read from a Game is missing from the history: the halfmove clock, the fullmove number and
+	 * the castling rights. position comes right after the last position pushed.
+	 */
+	public void fillIn(Position position)
+	{
+		position.setHalfmoveClock(this.getHalfmoveClock(position));
+		position.setFullmoveNumber(this.getFullmoveNumber(position));
+		position.setCastlingRights(this.getCastlingRights(position));
+	}
+
+	/**
+	 * Does position, which comes right after the last position pushed and has its halfmove clock, repeat one of the
+	 * history? A position can only come back with the same side to move and not across a pawn move or a capture, so
+	 * only every other position within the halfmove clock is compared, starting four plies back.
+	 */
+	public boolean isRepetition(Position position)
+	{
+		long hash = PositionHistory.getHash(position, this.getCastlingRights(position));
+		int maxDistance = Math.min(position.getHalfmoveClock(), this.numHashes);
+		for(int distance = 4; distance <= maxDistance; distance += 2)
+		{
+			if(this.hashes[this.numHashes - distance] == hash)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The hash position would have with these castling rights.
+	 */
+	private static long getHash(Position position, int castlingRights)
+	{
+		return position.getHash() ^ Zobrist.getCastlingKey(position.getCastlingRights()) ^ Zobrist.getCastlingKey(castlingRights);
+	}
+
+	/**
+	 * The ply of the first position a history is given, as far as it can tell: 0 with white to move, 1 with black.
+	 */
+	private static int getFirstPly(Position position)
+	{
+		return position.getSideToMove() == Position.BLACK ? 1 : 0;
+	}
+
+	/**
+	 * Has a white pawn left its starting rank? White's first move was a pawn move if so, since it cannot capture.
+	 */
+	private static boolean hasMovedWhitePawn(Position position)
+	{
+		int whitePawn = Position.makePiece(Position.WHITE, Position.PAWN);
+		for(int file = 0; file < 8; ++file)
+		{
+			if(position.getPieceAt(Position.square(file, 1)) != whitePawn)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The squares holding a pawn of either color. A move changes them if and only if it moves or captures a pawn
+	 * (a pawn capturing a pawn empties its own square), and one that does not change them nor the number of pieces
+	 * is reversible.
+	 */
+	private static long getPawnSquares(Position position)
+	{
+		long pawnSquares = 0L;
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			if(Position.typeOf(position.getPieceAt(square)) == Position.PAWN)
+			{
+				pawnSquares |= 1L << square;
+			}
+		}
+		return pawnSquares;
+	}
+
+	private static int countPieces(Position position)
+	{
+		int numPieces = 0;
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			numPieces += position.isEmpty(square) ? 0 : 1;
+		}
+		return numPieces;
+	}
+
+}
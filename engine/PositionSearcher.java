@@ -0,0 +1,648 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+import java.util.function.Consumer;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.heuristics.nnue.NnueAccumulator;
+import src.pas.chess.heuristics.nnue.NnueEvaluator;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.StaticExchange;
+
+
+/**
+ * Alpha-beta search over a standalone Position, so positions can be searched without SEPIA or the Planner.
+ * Like the agents' searchers, scores are always from the point of view of the MAX player (the side to move at the root)
+ * and the leaves are scored with CustomHeuristics. The search deepens iteratively up to maxDepth so a result always
+ * reports the deepest completed iteration.
+ *
+ * If the searcher is given an NnueEvaluator, the leaves are scored by the network instead. The searcher then keeps one
+ * accumulator per ply and updates it incrementally from the parent's as it descends.
+ *
+ * Moves are searched in static exchange order (see scoreMoves), each node picking its next move from its ply's
+ * preallocated move list (see MoveStack). With quiescence on (-Dchess.search.quiescence=true or
+ * setQuiescent), leaves are not scored as they are but resolved by a capture-only search first (see quiescenceSearch).
+ *
+ * The search walks the tree on one mutable position owned by the searcher, playing and taking back moves in place
+ * (Position.makeMove / unmakeMove) instead of copying a board per node, so a searcher must not be shared between
+ * threads. The caller's positions are never modified.
+ *
+ * With a TranspositionTable (the one -Dchess.search.hashMB sizes, which every searcher shares, or one of its own given
+ * with setTranspositionTable, e.g. for each side of a game), every interior node first looks its position up: an entry
+ * searched at least as deep whose score or bound settles the window ends the node there, and otherwise the entry's best
+ * move is searched first. Nodes store what they found on the way back up.
+ *
+ * A node that repeats a position of the current line, or of the game before the root if the searcher was given the
+ * game's PositionHistory, is scored as a draw without being searched. Only the positions since the last pawn move or
+ * capture (the halfmove clock) can repeat, so that is as far back as the check looks.
+ *
+ * A search can be stopped early, by a deadline (setDeadline), from another thread with stop() or by a TimeManager
+ * (setTimeManager), which sets the deadline to its hard limit and ends the search after an iteration past its soft one.
+ * A stop is a flag of its own rather than a deadline, so the time manager's deadline cannot override it. The iteration that is
+ * interrupted is thrown away and the result is that of the deepest completed one; the first iteration always completes,
+ * so there is always a move. An iteration listener (setIterationListener) hears about every completed iteration.
+ *
+ * The whole search works on integer centipawn scores with mates encoded by distance from the root (see Scores), so a
+ * quicker mate is preferred to a slower one. Only the result is converted to the framework's double utility.
+ */
+public class PositionSearcher
+    extends Object
+{
+
+	public static final String QUIESCENCE_PROPERTY = "chess.search.quiescence";
+	public static final int MAX_QUIESCENCE_PLIES = 16;
+	private static final int GOOD_CAPTURE_KEY = 1 << 20; // ahead of every quiet move (key 0) and losing capture (< 0)
+	private static final int HASH_MOVE_KEY = Integer.MAX_VALUE;
+	private static final int STOP_CHECK_INTERVAL = 1024; // nodes between two looks at the clock, a power of two
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	public static class SearchResult
+        extends Object
+	{
+		private final int bestMove;
+		private final int score;
+		private final int depth;
+		private final long numNodes;
+		private final long runtimeInMS;
+
+		public SearchResult(int bestMove, int score, int depth, long numNodes, long runtimeInMS)
+		{
+			this.bestMove = bestMove;
+			this.score = score;
+			this.depth = depth;
+			this.numNodes = numNodes;
+			this.runtimeInMS = runtimeInMS;
+		}
+
+		public int getBestMove() { return this.bestMove; }
+		public int getScore() { return this.score; }
+		public double getUtility() { return Scores.toUtility(this.score); }
+		public int getDepth() { return this.depth; }
+		public long getNumNodes() { return this.numNodes; }
+		public long getRuntimeInMS() { return this.runtimeInMS; }
+	}
+
+	private final int maxDepth;
+	private final NnueEvaluator nnueEvaluator; // null to score leaves with CustomHeuristics
+	private final NnueAccumulator[] accumulators; // [ply], only used with nnueEvaluator
+	private final MoveStack moveStack;
+	private TranspositionTable transpositionTable; // null to search without one
+	private PositionHistory history;               // the game's positions before the root, null if unknown
+	private final int[] scratchMoves;
+	private final int[] exchangeGains;     // StaticExchange's scratch
+	private final Position position;       // the node being searched, moves are made and unmade on it
+	private Consumer<SearchResult> iterationListener; // null if nobody listens
+	private TimeManager timeManager;       // null to search to maxDepth (or the deadline)
+	private boolean isQuiescent;
+	private int maxColor;
+	private long numNodes;
+	private volatile long deadlineInNS; // System.nanoTime() at which to stop, NO_DEADLINE for none
+	private volatile boolean isStopRequested; // stop() was called, for the running search or the next one
+	private boolean canAbort;           // whether an iteration may be interrupted (not the first one)
+	private boolean isAborted;          // the current iteration was interrupted, its scores mean nothing
+
+	public PositionSearcher(int maxDepth)
+	{
+		this(maxDepth, NnueEvaluator.getDefault());
+	}
+
+	public PositionSearcher(int maxDepth, NnueEvaluator nnueEvaluator)
+	{
+		this.maxDepth = maxDepth;
+		this.nnueEvaluator = nnueEvaluator;
+		this.accumulators = new NnueAccumulator[nnueEvaluator != null ? maxDepth + 1 + MAX_QUIESCENCE_PLIES : 0];
+		for(int ply = 0; ply < this.accumulators.length; ++ply)
+		{
+			this.accumulators[ply] = nnueEvaluator.newAccumulator();
+		}
+		this.moveStack = new MoveStack(maxDepth + 1 + MAX_QUIESCENCE_PLIES);
+		this.transpositionTable = TranspositionTable.getDefault();
+		this.history = null;
+		this.scratchMoves = new int[MoveGenerator.MAX_MOVES];
+		this.exchangeGains = StaticExchange.newGains();
+		this.position = new Position();
+		this.isQuiescent = Boolean.getBoolean(PositionSearcher.QUIESCENCE_PROPERTY);
+		this.iterationListener = null;
+		this.timeManager = null;
+		this.maxColor = Position.WHITE;
+		this.numNodes = 0;
+		this.deadlineInNS = NO_DEADLINE;
+		this.isStopRequested = false;
+		this.canAbort = false;
+		this.isAborted = false;
+	}
+
+	public int getMaxDepth() { return this.maxDepth; }
+	public int getMaxColor() { return this.maxColor; }
+	public long getNumNodes() { return this.numNodes; }
+	public NnueEvaluator getNnueEvaluator() { return this.nnueEvaluator; }
+	public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+	public void setTranspositionTable(TranspositionTable transpositionTable) { this.transpositionTable = transpositionTable; }
+	public PositionHistory getHistory() { return this.history; }
+
+	/**
+	 * @param history the positions the game went through before the root of the next searches (the root excluded),
+	 * or null. The root's halfmove clock says how far back they can repeat.
+	 */
+	public void setHistory(PositionHistory history) { this.history = history; }
+	public Consumer<SearchResult> getIterationListener() { return this.iterationListener; }
+	public void setIterationListener(Consumer<SearchResult> iterationListener) { this.iterationListener = iterationListener; }
+	public TimeManager getTimeManager() { return this.timeManager; }
+
+	/**
+	 * @param timeManager the budgets of the next search, or null. If it has started when the search does, its hard
+	 * limit replaces the deadline; if it starts later, whoever starts it should pass getHardDeadlineInNS to setDeadline.
+	 */
+	public void setTimeManager(TimeManager timeManager) { this.timeManager = timeManager; }
+	public long getDeadlineInNS() { return this.deadlineInNS; }
+
+	/**
+	 * @param deadlineInNS the System.nanoTime() at which the running or next search stops, or NO_DEADLINE. Safe to
+	 * call from any thread, e.g. to start the clock of a search that was pondering.
+	 */
+	public void setDeadline(long deadlineInNS) { this.deadlineInNS = deadlineInNS; }
+
+	/**
+	 * Stop the running search as soon as possible (it still returns its deepest completed iteration), or if none is
+	 * running the next one after its first iteration. Whatever the deadline is, even one a TimeManager sets when the
+	 * search starts. Safe to call from any thread.
+	 */
+	public void stop() { this.isStopRequested = true; }
+
+	public boolean isQuiescent() { return this.isQuiescent; }
+	public void setQuiescent(boolean isQuiescent) { this.isQuiescent = isQuiescent; }
+
+	public SearchResult search(Position root)
+	{
+		return this.search(root, true);
+	}
+
+	/**
+	 * @param isNewSearch false for a helper searching the same root alongside another searcher on a shared
+	 * transposition table, so the table only starts one new generation per root
+	 */
+	public SearchResult search(Position root, boolean isNewSearch)
+	{
+		long startTime = System.nanoTime();
+		this.maxColor = root.getSideToMove();
+		this.numNodes = 0;
+		this.canAbort = false;
+		this.isAborted = false;
+		if(this.getTimeManager() != null && this.getTimeManager().isStarted())
+		{
+			this.setDeadline(this.getTimeManager().getHardDeadlineInNS());
+		}
+		if(this.getTranspositionTable() != null && isNewSearch)
+		{
+			this.getTranspositionTable().newSearch();
+		}
+
+		int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+		int[] rootScores = new int[MoveGenerator.MAX_MOVES];
+		int numRootMoves = MoveGenerator.generateLegalMoves(root, rootMoves);
+		this.scoreMoves(root, rootMoves, rootScores, numRootMoves, Moves.NO_MOVE);
+		for(int moveIdx = 0; moveIdx < numRootMoves; ++moveIdx)
+		{
+			MoveStack.selectNext(rootMoves, rootScores, moveIdx, numRootMoves);
+		}
+
+		int bestMove = Moves.NO_MOVE;
+		int bestScore = numRootMoves == 0 ? this.getTerminalScore(root, 0) : -Scores.INFINITY;
+		int completedDepth = 0;
+		if(this.getNnueEvaluator() != null)
+		{
+			this.accumulators[0].refresh(root);
+		}
+
+		Position position = this.position;
+		position.copyFrom(root);
+		for(int depth = 1; depth <= this.getMaxDepth() && numRootMoves > 0 && !this.isAborted; ++depth)
+		{
+			// search the previous iteration's best move first
+			for(int moveIdx = 1; moveIdx < numRootMoves; ++moveIdx)
+			{
+				if(rootMoves[moveIdx] == bestMove)
+				{
+					rootMoves[moveIdx] = rootMoves[0];
+					rootMoves[0] = bestMove;
+					break;
+				}
+			}
+
+			int iterationBestMove = Moves.NO_MOVE;
+			int alpha = -Scores.INFINITY;
+			for(int moveIdx = 0; moveIdx < numRootMoves; ++moveIdx)
+			{
+				if(this.getNnueEvaluator() != null)
+				{
+					this.accumulators[1].copyAndUpdate(this.accumulators[0], position, rootMoves[moveIdx]);
+				}
+				position.makeMove(rootMoves[moveIdx]);
+				int childScore = this.alphaBetaSearch(1, depth - 1, alpha, Scores.INFINITY);
+				position.unmakeMove(rootMoves[moveIdx]);
+				if(this.isAborted)
+				{
+					break;
+				}
+				if(iterationBestMove == Moves.NO_MOVE || childScore > alpha)
+				{
+					alpha = childScore;
+					iterationBestMove = rootMoves[moveIdx];
+				}
+			}
+
+			if(this.isAborted)
+			{
+				break;
+			}
+			bestMove = iterationBestMove;
+			bestScore = alpha;
+			completedDepth = depth;
+			this.canAbort = true;
+			if(this.getIterationListener() != null)
+			{
+				this.getIterationListener().accept(new SearchResult(bestMove, bestScore, completedDepth, this.getNumNodes(),
+                    (System.nanoTime() - startTime) / 1000000));
+			}
+			if(this.isStopRequested)
+			{
+				break;
+			}
+			if(this.getTimeManager() != null)
+			{
+				this.getTimeManager().update(bestMove, bestScore);
+				if(this.getTimeManager().shouldStop())
+				{
+					break;
+				}
+			}
+		}
+
+		this.isStopRequested = false; // the stop was for this search
+		long runtimeInMS = (System.nanoTime() - startTime) / 1000000;
+		return new SearchResult(bestMove, bestScore, completedDepth, this.getNumNodes(), runtimeInMS);
+	}
+
+	/**
+	 * Alpha-beta search from the given node.
+	 * @param node the position to search (not modified)
+	 * @param depth how many more plies to search
+	 * @return the score of node for the MAX player (see Scores)
+	 */
+	public int alphaBetaSearch(Position node, int depth, int alpha, int beta)
+	{
+		this.position.copyFrom(node);
+		if(this.getNnueEvaluator() != null)
+		{
+			this.accumulators[0].refresh(node);
+		}
+		return this.alphaBetaSearch(0, depth, alpha, beta);
+	}
+
+	/**
+	 * Search the searcher's position, which is restored before returning.
+	 * @param ply distance from the root (indexes the accumulator of the position)
+	 */
+	private int alphaBetaSearch(int ply, int depth, int alpha, int beta)
+	{
+		if(ply > 0 && this.isRepetition())
+		{
+			return Scores.DRAW;
+		}
+		if(depth <= 0 && this.isQuiescent())
+		{
+			return this.quiescenceSearch(ply, 0, alpha, beta);
+		}
+		this.numNodes += 1;
+		if((this.numNodes & (STOP_CHECK_INTERVAL - 1)) == 0)
+		{
+			this.checkStop();
+		}
+
+		Position node = this.position;
+		int[] moves = this.moveStack.getMoves(ply);
+		int[] scores = this.moveStack.getScores(ply);
+		int numMoves = MoveGenerator.generateMoves(node, moves, 0);
+		int sideToMove = node.getSideToMove();
+		boolean isMaxNode = sideToMove == this.getMaxColor();
+
+		int hashMove = Moves.NO_MOVE;
+		if(depth > 0 && this.getTranspositionTable() != null)
+		{
+			long entry = this.getTranspositionTable().probe(node.getHash());
+			if(entry != TranspositionTable.NO_ENTRY)
+			{
+				hashMove = TranspositionTable.getMove(entry);
+				if(TranspositionTable.getDepth(entry) >= depth)
+				{
+					int score = TranspositionTable.fromTableScore(TranspositionTable.getScore(entry), ply);
+					int bound = TranspositionTable.getBound(entry);
+					if(!isMaxNode)
+					{
+						// the entry is from the side to move's point of view, which is MIN's here
+						score = -score;
+						bound = ((bound & TranspositionTable.BOUND_LOWER) << 1) | ((bound & TranspositionTable.BOUND_UPPER) >> 1);
+					}
+					if(bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha))
+					{
+						return score;
+					}
+				}
+			}
+		}
+
+		if(depth > 0)
+		{
+			this.scoreMoves(node, moves, scores, numMoves, hashMove);
+		}
+
+		int originalAlpha = alpha;
+		int originalBeta = beta;
+		int bestScore = isMaxNode ? -Scores.INFINITY : Scores.INFINITY;
+		int bestMove = Moves.NO_MOVE;
+		boolean hasLegalMove = false;
+
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			// a depth-0 node only looks for any legal move, in generation order
+			int move = depth > 0 ? MoveStack.selectNext(moves, scores, moveIdx, numMoves) : moves[moveIdx];
+			if(depth > 0 && this.getNnueEvaluator() != null)
+			{
+				this.accumulators[ply + 1].copyAndUpdate(this.accumulators[ply], node, move);
+			}
+			node.makeMove(move);
+			if(node.isInCheck(sideToMove))
+			{
+				node.unmakeMove(move);
+				continue; // illegal, the mover left its king en prise
+			}
+			hasLegalMove = true;
+
+			if(depth <= 0)
+			{
+				// we only needed to know the node is not terminal
+				node.unmakeMove(move);
+				break;
+			}
+
+			int childScore = this.alphaBetaSearch(ply + 1, depth - 1, alpha, beta);
+			node.unmakeMove(move);
+			if(this.isAborted)
+			{
+				return 0; // meaningless, the iteration is thrown away
+			}
+			if(isMaxNode ? childScore > bestScore : childScore < bestScore)
+			{
+				bestScore = childScore;
+				bestMove = move;
+			}
+			if(isMaxNode)
+			{
+				alpha = Math.max(alpha, bestScore);
+			} else
+			{
+				beta = Math.min(beta, bestScore);
+			}
+			if(alpha >= beta)
+			{
+				break; // prune remaining children
+			}
+		}
+
+		if(depth <= 0)
+		{
+			return hasLegalMove ? this.evaluate(node, ply) : this.getTerminalScore(node, ply);
+		}
+		if(!hasLegalMove)
+		{
+			bestScore = this.getTerminalScore(node, ply);
+		}
+		this.store(ply, depth, isMaxNode, originalAlpha, originalBeta, bestScore, bestMove);
+		return bestScore;
+	}
+
+	/**
+	 * Search only captures and promotions below a leaf, so that it is not scored in the middle of an exchange.
+	 * The side to move may always stand pat on the static evaluation instead. Captures that lose material according
+	 * to static exchange evaluation are pruned, the others are searched best exchange first.
+	 * @param quiescencePly how many plies deep into the quiescence search the searcher's position is
+	 */
+	private int quiescenceSearch(int ply, int quiescencePly, int alpha, int beta)
+	{
+		this.numNodes += 1;
+		if((this.numNodes & (STOP_CHECK_INTERVAL - 1)) == 0)
+		{
+			this.checkStop();
+		}
+		Position node = this.position;
+		if(!this.hasLegalMove(node))
+		{
+			return this.getTerminalScore(node, ply);
+		}
+
+		int sideToMove = node.getSideToMove();
+		boolean isMaxNode = sideToMove == this.getMaxColor();
+		int bestScore = this.evaluate(node, ply);
+		if(isMaxNode ? bestScore >= beta : bestScore <= alpha)
+		{
+			return bestScore;
+		}
+		if(quiescencePly >= PositionSearcher.MAX_QUIESCENCE_PLIES)
+		{
+			return bestScore;
+		}
+		if(isMaxNode)
+		{
+			alpha = Math.max(alpha, bestScore);
+		} else
+		{
+			beta = Math.min(beta, bestScore);
+		}
+
+		int[] moves = this.moveStack.getMoves(ply);
+		int[] scores = this.moveStack.getScores(ply);
+		int numMoves = MoveGenerator.generateMoves(node, moves, 0);
+		int numCaptures = 0;
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			int move = moves[moveIdx];
+			if(Moves.isCapture(move) || Moves.isPromotion(move))
+			{
+				int exchangeValue = StaticExchange.evaluate(node, move, this.exchangeGains);
+				if(exchangeValue >= 0)
+				{
+					moves[numCaptures] = move;
+					scores[numCaptures++] = exchangeValue;
+				}
+			}
+		}
+
+		for(int moveIdx = 0; moveIdx < numCaptures && alpha < beta; ++moveIdx)
+		{
+			int move = MoveStack.selectNext(moves, scores, moveIdx, numCaptures);
+			if(this.getNnueEvaluator() != null)
+			{
+				this.accumulators[ply + 1].copyAndUpdate(this.accumulators[ply], node, move);
+			}
+			node.makeMove(move);
+			if(node.isInCheck(sideToMove))
+			{
+				node.unmakeMove(move);
+				continue;
+			}
+			int childScore = this.quiescenceSearch(ply + 1, quiescencePly + 1, alpha, beta);
+			node.unmakeMove(move);
+			if(this.isAborted)
+			{
+				return 0;
+			}
+			if(isMaxNode)
+			{
+				bestScore = Math.max(bestScore, childScore);
+				alpha = Math.max(alpha, bestScore);
+			} else
+			{
+				bestScore = Math.min(bestScore, childScore);
+				beta = Math.min(beta, bestScore);
+			}
+		}
+		return bestScore;
+	}
+
+	/**
+	 * The static evaluation of a non-terminal node, with the network if there is one.
+	 */
+	private int evaluate(Position node, int ply)
+	{
+		return this.getNnueEvaluator() != null
+            ? this.getNnueEvaluator().evaluate(this.accumulators[ply], node, this.getMaxColor())
+            : CustomHeuristics.getMaxPlayerHeuristicValue(node, this.getMaxColor());
+	}
+
+	/**
+	 * Abort the current iteration if the search was stopped or the deadline has passed, unless it is the first one.
+	 */
+	private void checkStop()
+	{
+		if(this.canAbort
+            && (this.isStopRequested || (this.deadlineInNS != NO_DEADLINE && System.nanoTime() - this.deadlineInNS >= 0)))
+		{
+			this.isAborted = true;
+		}
+	}
+
+	/**
+	 * Store the result of searching the searcher's position in the transposition table, if there is one.
+	 * @param score the node's score for the MAX player, found with the window (alpha, beta)
+	 */
+	private void store(int ply, int depth, boolean isMaxNode, int alpha, int beta, int score, int bestMove)
+	{
+		if(this.getTranspositionTable() == null)
+		{
+			return;
+		}
+		int bound = score <= alpha ? TranspositionTable.BOUND_UPPER
+            : score >= beta ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_EXACT;
+		if(!isMaxNode)
+		{
+			// stored from the side to move's point of view, which is MIN's here
+			score = -score;
+			bound = ((bound & TranspositionTable.BOUND_LOWER) << 1) | ((bound & TranspositionTable.BOUND_UPPER) >> 1);
+		}
+		this.getTranspositionTable().store(this.position.getHash(), bestMove, TranspositionTable.toTableScore(score, ply),
+            depth, bound);
+	}
+
+	/**
+	 * Does the searcher's position repeat an earlier one, in the current line or in the game's history? A position can
+	 * only come back with the same side to move and not across a pawn move or a capture, so only every other position
+	 * within the halfmove clock is compared, starting four plies back.
+	 */
+	private boolean isRepetition()
+	{
+		Position node = this.position;
+		long hash = node.getHash();
+		int numLinePlies = node.getNumUndoableMoves();
+		int numHistoryPlies = this.getHistory() != null ? this.getHistory().getNumHashes() : 0;
+		int maxDistance = Math.min(node.getHalfmoveClock(), numLinePlies + numHistoryPlies);
+		for(int distance = 4; distance <= maxDistance; distance += 2)
+		{
+			long previousHash = distance <= numLinePlies
+                ? node.getHash(distance)
+                : this.getHistory().getHash(numHistoryPlies - (distance - numLinePlies));
+			if(previousHash == hash)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Does node have a legal move? node is played on and restored.
+	 */
+	private boolean hasLegalMove(Position node)
+	{
+		int sideToMove = node.getSideToMove();
+		int numMoves = MoveGenerator.generateMoves(node, this.scratchMoves, 0);
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			int move = this.scratchMoves[moveIdx];
+			node.makeMove(move);
+			boolean isLegal = !node.isInCheck(sideToMove);
+			node.unmakeMove(move);
+			if(isLegal)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Score of a position with no legal moves: checkmate is a loss for the side to move, stalemate is a draw.
+	 * @param ply distance of node from the root, so that quicker mates score higher
+	 */
+	private int getTerminalScore(Position node, int ply)
+	{
+		if(!node.isInCheck(node.getSideToMove()))
+		{
+			return Scores.DRAW;
+		}
+		return node.getSideToMove() == this.getMaxColor() ? Scores.matedIn(ply) : Scores.mateIn(ply);
+	}
+
+	/**
+	 * Same policy as CustomMoveOrderer: captures (and promotions) that win or hold material according to static
+	 * exchange evaluation first, best first, then quiet moves in generation order, then the captures that lose material.
+	 * The transposition table's move for node, if any, goes before all of them.
+	 * Only scores the moves, the search picks them in that order with MoveStack.selectNext.
+	 */
+	private void scoreMoves(Position node, int[] moves, int[] scores, int numMoves, int hashMove)
+	{
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			int move = moves[moveIdx];
+			if(move == hashMove)
+			{
+				scores[moveIdx] = HASH_MOVE_KEY;
+			} else if(Moves.isCapture(move) || Moves.isPromotion(move))
+			{
+				int exchangeValue = StaticExchange.evaluate(node, move, this.exchangeGains);
+				scores[moveIdx] = exchangeValue >= 0 ? GOOD_CAPTURE_KEY + exchangeValue : exchangeValue;
+			} else
+			{
+				scores[moveIdx] = 0;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Moves;
+
+
+/**
+ * How long one move may think, for an iterative deepening search (see PositionSearcher.setTimeManager).
+ *
+ * There are two budgets. The soft budget is the time the move should take: once an iteration completes past it, the
+ * search stops there. The hard budget is the time the move may take: at the hard limit the search abandons the
+ * iteration it is in and plays the best move of the last completed one. Both come from the clock (see forClock): an
+ * even share of the time left over the moves expected until the end of the game (fewer as the game goes on) plus most
+ * of the increment, with the hard budget a multiple of the soft one but never more than a fraction of the clock.
+ *
+ * The soft budget then moves with the search (see update): a best move that keeps changing from one iteration to the
+ * next or a score that drops lengthen it (up to the hard budget), a best move that stays the same shortens it.
+ *
+ * The clock starts with start(), so a search can begin before its time counts (e.g. while pondering). A time manager
+ * is for one move of one search: update is called by the searching thread, start may come from any other.
+ */
+public class TimeManager
+    extends Object
+{
+
+	public static final long MOVE_OVERHEAD_IN_MS = 30;   // kept back from every budget for whoever relays the move
+	public static final int MAX_MOVES_TO_GO = 50;        // moves expected until the end of the game, at the start
+	public static final int MIN_MOVES_TO_GO = 20;        // ...never fewer than this however long the game has gone
+	public static final double HARD_BUDGET_FACTOR = 4.0; // the hard budget as a multiple of the soft one
+	public static final double MAX_HARD_FRACTION = 0.5;  // ...but at most this share of the clock
+	public static final int SCORE_DROP_MARGIN = 25;      // centipawns a score may drop without lengthening the budget
+	public static final int MAX_SCORE_DROP = 200;        // a drop this large (or larger) doubles the budget
+
+	// the soft budget's factor after 0, 1, 2, 3 and 4 or more iterations with the same best move
+	private static final double[] STABILITY_FACTORS = new double[] {1.5, 1.2, 1.0, 0.85, 0.7};
+
+	private final long softBudgetInMS;
+	private final long hardBudgetInMS;
+	private final boolean isAdjustable; // false to stop at the hard budget only
+	private volatile long startTimeInNS;
+	private volatile boolean isStarted;
+	private int numIterations;
+	private int previousBestMove;
+	private final int[] previousScores; // [iteration % 2], the last score of an odd and of an even depth
+	private int numStableIterations; // completed iterations since the best move last changed
+	private double scoreDropFactor;
+
+	public TimeManager(long softBudgetInMS, long hardBudgetInMS)
+	{
+		this(softBudgetInMS, hardBudgetInMS, true);
+	}
+
+	private TimeManager(long softBudgetInMS, long hardBudgetInMS, boolean isAdjustable)
+	{
+		this.softBudgetInMS = softBudgetInMS;
+		this.hardBudgetInMS = Math.max(softBudgetInMS, hardBudgetInMS);
+		this.isAdjustable = isAdjustable;
+		this.startTimeInNS = 0;
+		this.isStarted = false;
+		this.numIterations = 0;
+		this.previousBestMove = Moves.NO_MOVE;
+		this.previousScores = new int[] {Scores.DRAW, Scores.DRAW};
+		this.numStableIterations = 0;
+		this.scoreDropFactor = 1.0;
+	}
+
+	/**
+	 * The budgets for a move on a clock with timeLeftInMS left.
+	 * @param movesToGo the moves until the next time control, or -1 if the rest of the game is played on this clock
+	 * @param fullmoveNumber the move about to be played (1 for the first one)
+	 */
+	public static TimeManager forClock(long timeLeftInMS, long incrementInMS, int movesToGo, int fullmoveNumber)
+	{
+		long usableInMS = Math.max(1, timeLeftInMS - MOVE_OVERHEAD_IN_MS);
+		int numMovesLeft = movesToGo > 0 ? movesToGo : Math.max(MIN_MOVES_TO_GO, MAX_MOVES_TO_GO - fullmoveNumber / 2);
+		long softBudgetInMS = Math.min(usableInMS, usableInMS / numMovesLeft + incrementInMS * 3 / 4);
+		long hardBudgetInMS = Math.min((long)(softBudgetInMS * HARD_BUDGET_FACTOR), (long)(usableInMS * MAX_HARD_FRACTION));
+		return new TimeManager(Math.max(1, softBudgetInMS), hardBudgetInMS);
+	}
+
+	/**
+	 * The budgets for a fixed time per move: the search stops at moveTimeInMS (less the overhead), not before.
+	 */
+	public static TimeManager forMoveTime(long moveTimeInMS)
+	{
+		long budgetInMS = Math.max(1, moveTimeInMS - MOVE_OVERHEAD_IN_MS);
+		return new TimeManager(budgetInMS, budgetInMS, false);
+	}
+
+	public long getSoftBudgetInMS() { return this.softBudgetInMS; }
+	public long getHardBudgetInMS() { return this.hardBudgetInMS; }
+	public boolean isAdjustable() { return this.isAdjustable; }
+	public boolean isStarted() { return this.isStarted; }
+
+	/**
+	 * Start the clock of this move now.
+	 */
+	public void start()
+	{
+		this.startTimeInNS = System.nanoTime();
+		this.isStarted = true;
+	}
+
+	/**
+	 * @return the time since start(), 0 if not started
+	 */
+	public long getElapsedInMS()
+	{
+		return this.isStarted() ? (System.nanoTime() - this.startTimeInNS) / 1000000 : 0;
+	}
+
+	/**
+	 * The System.nanoTime() of the hard limit, for PositionSearcher.setDeadline.
+	 */
+	public long getHardDeadlineInNS()
+	{
+		return this.startTimeInNS + this.getHardBudgetInMS() * 1000000;
+	}
+
+	/**
+	 * The soft budget as adjusted by the iterations so far, never more than the hard budget.
+	 */
+	public long getAdjustedSoftBudgetInMS()
+	{
+		if(!this.isAdjustable())
+		{
+			return this.getHardBudgetInMS();
+		}
+		double stabilityFactor = this.numIterations < 2 ? 1.0
+            : STABILITY_FACTORS[Math.min(this.numStableIterations, STABILITY_FACTORS.length - 1)];
+		return Math.min(this.getHardBudgetInMS(), (long)(this.getSoftBudgetInMS() * stabilityFactor * this.scoreDropFactor));
+	}
+
+	/**
+	 * Hear about a completed iteration. Its score is compared with the one of two iterations before, whose lines end
+	 * with the same side to move: the static evaluation favors whoever moved last, so scores of consecutive depths
+	 * swing even when nothing is going wrong.
+	 * @param bestMove the iteration's best move
+	 * @param score its score, for the side to move at the root
+	 */
+	public void update(int bestMove, int score)
+	{
+		if(this.numIterations > 0)
+		{
+			this.numStableIterations = bestMove == this.previousBestMove ? this.numStableIterations + 1 : 0;
+		}
+		int parity = this.numIterations & 1;
+		if(this.numIterations >= 2)
+		{
+			int previousScore = this.previousScores[parity];
+			int drop = previousScore - score;
+			this.scoreDropFactor = drop <= SCORE_DROP_MARGIN || Scores.isMate(score) || Scores.isMate(previousScore)
+                ? 1.0 : 1.0 + (double)Math.min(drop, MAX_SCORE_DROP) / MAX_SCORE_DROP;
+		}
+		this.numIterations += 1;
+		this.previousBestMove = bestMove;
+		this.previousScores[parity] = score;
+	}
+
+	/**
+	 * Should the search stop rather than start another iteration? Never before start().
+	 */
+	public boolean shouldStop()
+	{
+		return this.isStarted() && this.getElapsedInMS() >= this.getAdjustedSoftBudgetInMS();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "soft " + this.getAdjustedSoftBudgetInMS() + "ms (of " + this.getSoftBudgetInMS() + "ms), hard " +
+            this.getHardBudgetInMS() + "ms";
+	}
+
+}
@@ -0,0 +1,303 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Moves;
+
+
+/**
+ * A transposition table for PositionSearcher: what earlier searches found out about a position (a score or a bound
+ * on it, how deep that search went, the best move), keyed by the position's Zobrist hash (see Position.getHash).
+ *
+ * The table lives off the Java heap, in direct ByteBuffers, so even a table of several GB costs the garbage collector
+ * nothing to scan and no object headers. Its size is fixed in MB when it is created.
+ *
+ * Each entry is 16 bytes: the hash XOR the data, then the data (see the get methods for the data's layout). Entries
+ * come in buckets of four, 64 bytes, and a position can only go in the bucket its hash selects. allocateDirect does
+ * not align its memory to anything wider than 8 bytes, so each buffer is allocated a bucket larger than needed and
+ * used from its first 64-byte aligned address on (see alignToBucket): a bucket is then one cache line and a probe
+ * reads a single line. Finding the address takes ByteBuffer.alignedSlice on Java 9 and later and the buffer's address
+ * field on Java 8; a JVM that allows neither gets unaligned buckets, which straddle two lines. Reads and writes take
+ * no lock: several searchers may share a table, and if two threads
+ * write the same entry at once and its two longs end up from different writes, the key check (hash XOR data read
+ * back against the probed hash) fails and the entry is simply a miss.
+ *
+ * Entries are aged by generation: newSearch starts a new one, and when a bucket is full the entry replaced is the
+ * shallowest, counting each generation of age as a few plies less, so entries from earlier moves of the game are
+ * reused while they are still relevant but do not fill the table forever.
+ *
+ * Optional: the searches only use one when -Dchess.search.hashMB gives its size (see getDefault).
+ */
+public class TranspositionTable
+    extends Object
+{
+
+	public static final String SIZE_PROPERTY = "chess.search.hashMB";
+
+	// bounds (an empty entry has none), from the point of view of the side to move in the entry's position
+	public static final int BOUND_LOWER = 1;
+	public static final int BOUND_UPPER = 2;
+	public static final int BOUND_EXACT = BOUND_LOWER | BOUND_UPPER;
+
+	public static final long NO_ENTRY = 0L;
+
+	private static final int ENTRY_SIZE = 16;
+	private static final int BUCKET_SIZE = 64;
+	private static final int ENTRIES_PER_BUCKET = BUCKET_SIZE / ENTRY_SIZE;
+	private static final int SEGMENT_SHIFT = 24; // buckets per buffer (1 GB), a ByteBuffer is indexed by int
+	private static final int MAX_GENERATION = 63;
+	private static final int AGE_PENALTY = 8;    // plies of depth one generation of age is worth when replacing
+
+	private static class DefaultHolder
+        extends Object
+	{
+		private static final TranspositionTable DEFAULT = Integer.getInteger(TranspositionTable.SIZE_PROPERTY, 0) > 0
+            ? new TranspositionTable(Integer.getInteger(TranspositionTable.SIZE_PROPERTY)) : null;
+	}
+
+	private final int sizeInMB;
+	private final ByteBuffer[] segments;
+	private final long bucketMask;
+	private volatile int generation;
+
+	/**
+	 * @param sizeInMB at most how much memory to use, rounded down to a power of two number of buckets
+	 */
+	public TranspositionTable(int sizeInMB)
+	{
+		long numBuckets = Long.highestOneBit(Math.max(1L, ((long)sizeInMB << 20) / BUCKET_SIZE));
+		int bucketsPerSegment = (int)Math.min(numBuckets, 1L << SEGMENT_SHIFT);
+		this.sizeInMB = sizeInMB;
+		this.segments = new ByteBuffer[(int)(numBuckets / bucketsPerSegment)];
+		for(int segmentIdx = 0; segmentIdx < this.segments.length; ++segmentIdx)
+		{
+			int segmentSize = bucketsPerSegment * BUCKET_SIZE;
+			ByteBuffer buffer = ByteBuffer.allocateDirect(segmentSize + BUCKET_SIZE - 1);
+			this.segments[segmentIdx] = TranspositionTable.alignToBucket(buffer, segmentSize).order(ByteOrder.nativeOrder());
+		}
+		this.bucketMask = numBuckets - 1;
+		this.generation = 0;
+	}
+
+	/**
+	 * The part of buffer (which has BUCKET_SIZE - 1 bytes to spare) of size bytes that starts on a BUCKET_SIZE aligned
+	 * address, or the start of buffer if the address cannot be found out.
+	 */
+	private static ByteBuffer alignToBucket(ByteBuffer buffer, int size)
+	{
+		int offset = 0;
+		try
+		{
+			// Java 9 and later
+			Method alignedSlice = ByteBuffer.class.getMethod("alignedSlice", int.class);
+			ByteBuffer aligned = (ByteBuffer)alignedSlice.invoke(buffer, BUCKET_SIZE);
+			aligned.limit(size);
+			return aligned.slice();
+		} catch(ReflectiveOperationException | RuntimeException e)
+		{
+			// Java 8: no alignedSlice, but the address of a direct buffer is a field of Buffer
+			try
+			{
+				Field addressField = Buffer.class.getDeclaredField("address");
+				addressField.setAccessible(true);
+				long address = addressField.getLong(buffer);
+				offset = (int)(-address & (BUCKET_SIZE - 1));
+			} catch(ReflectiveOperationException | RuntimeException e2)
+			{
+				offset = 0;
+			}
+		}
+		buffer.position(offset);
+		buffer.limit(offset + size);
+		return buffer.slice();
+	}
+
+	/**
+	 * The table sized by -Dchess.search.hashMB, created on first use and shared by every search of the JVM that is not
+	 * given a table of its own (see newOfDefaultSize).
+	 * @return the table, or null if no size was given
+	 */
+	public static TranspositionTable getDefault() { return DefaultHolder.DEFAULT; }
+
+	/**
+	 * A new table of the size -Dchess.search.hashMB gives, for searches that must not share the default one, e.g. one
+	 * side of a game when both sides (or several games) run in the same JVM.
+	 * @return the table, or null if no size was given
+	 */
+	public static TranspositionTable newOfDefaultSize()
+	{
+		int sizeInMB = Integer.getInteger(TranspositionTable.SIZE_PROPERTY, 0);
+		return sizeInMB > 0 ? new TranspositionTable(sizeInMB) : null;
+	}
+
+	public int getSizeInMB() { return this.sizeInMB; }
+	public long getNumEntries() { return (this.bucketMask + 1) * ENTRIES_PER_BUCKET; }
+	public int getGeneration() { return this.generation; }
+
+	/**
+	 * Start a new generation: the entries stored until now are kept but become cheaper to replace.
+	 */
+	public void newSearch()
+	{
+		this.generation = (this.generation + 1) & MAX_GENERATION;
+	}
+
+	public void clear()
+	{
+		for(ByteBuffer segment : this.segments)
+		{
+			for(int offset = 0; offset < segment.capacity(); offset += 8)
+			{
+				segment.putLong(offset, 0L);
+			}
+		}
+		this.generation = 0;
+	}
+
+	/**
+	 * @return the data stored for the position with hash, or NO_ENTRY
+	 */
+	public long probe(long hash)
+	{
+		ByteBuffer segment = this.getSegment(hash);
+		int bucketOffset = this.getBucketOffset(hash);
+		for(int offset = bucketOffset; offset < bucketOffset + BUCKET_SIZE; offset += ENTRY_SIZE)
+		{
+			long data = segment.getLong(offset + 8);
+			if((segment.getLong(offset) ^ data) == hash && TranspositionTable.getBound(data) != 0)
+			{
+				return data;
+			}
+		}
+		return NO_ENTRY;
+	}
+
+	/**
+	 * Remember what a search of depth plies found about the position with hash. A search that found no best move
+	 * (Moves.NO_MOVE) keeps the move already stored for the position, if any.
+	 * @param score from the point of view of the side to move, mates counted from the position (see toTableScore)
+	 */
+	public void store(long hash, int move, int score, int depth, int bound)
+	{
+		ByteBuffer segment = this.getSegment(hash);
+		int bucketOffset = this.getBucketOffset(hash);
+		int generation = this.generation;
+
+		int replaceOffset = bucketOffset;
+		int replaceValue = Integer.MAX_VALUE;
+		for(int offset = bucketOffset; offset < bucketOffset + BUCKET_SIZE; offset += ENTRY_SIZE)
+		{
+			long data = segment.getLong(offset + 8);
+			if(TranspositionTable.getBound(data) == 0)
+			{
+				if(replaceValue > Integer.MIN_VALUE)
+				{
+					replaceOffset = offset;
+					replaceValue = Integer.MIN_VALUE;
+				}
+				continue;
+			}
+			if((segment.getLong(offset) ^ data) == hash)
+			{
+				if(move == Moves.NO_MOVE)
+				{
+					move = TranspositionTable.getMove(data);
+				}
+				replaceOffset = offset;
+				break;
+			}
+			int age = (generation - TranspositionTable.getGeneration(data)) & MAX_GENERATION;
+			int value = TranspositionTable.getDepth(data) - AGE_PENALTY * age;
+			if(value < replaceValue)
+			{
+				replaceOffset = offset;
+				replaceValue = value;
+			}
+		}
+
+		long data = (move & 0xFFFFFFFFL)
+            | ((long)(score & 0xFFFF) << 32)
+            | ((long)Math.min(depth, 0xFF) << 48)
+            | ((long)bound << 56)
+            | ((long)generation << 58);
+		segment.putLong(replaceOffset, hash ^ data);
+		segment.putLong(replaceOffset + 8, data);
+	}
+
+	/**
+	 * How full the table is, in permill, estimated from the first thousand buckets' entries of the current generation.
+	 */
+	public int getHashfull()
+	{
+		ByteBuffer segment = this.segments[0];
+		int numBuckets = (int)Math.min(1000, this.bucketMask + 1);
+		int numUsed = 0;
+		for(int offset = 0; offset < numBuckets * BUCKET_SIZE; offset += ENTRY_SIZE)
+		{
+			long data = segment.getLong(offset + 8);
+			if(TranspositionTable.getBound(data) != 0 && TranspositionTable.getGeneration(data) == this.generation)
+			{
+				numUsed += 1;
+			}
+		}
+		return numUsed * 1000 / (numBuckets * ENTRIES_PER_BUCKET);
+	}
+
+	// data: move in bits 0-31, score 32-47, depth 48-55, bound 56-57, generation 58-63
+	public static int getMove(long data) { return (int)data; }
+	public static int getScore(long data) { return (short)(data >>> 32); }
+	public static int getDepth(long data) { return (int)(data >>> 48) & 0xFF; }
+	public static int getBound(long data) { return (int)(data >>> 56) & 3; }
+	public static int getGeneration(long data) { return (int)(data >>> 58); }
+
+	/**
+	 * A score found ply plies from the root as it is stored: mates are counted from the position itself rather than
+	 * from the root, so the entry stays right when the position is reached at another ply.
+	 */
+	public static int toTableScore(int score, int ply)
+	{
+		if(score >= Scores.MATE_BOUND)
+		{
+			return score + ply;
+		} else if(score <= -Scores.MATE_BOUND)
+		{
+			return score - ply;
+		}
+		return score;
+	}
+
+	/**
+	 * The inverse of toTableScore.
+	 */
+	public static int fromTableScore(int score, int ply)
+	{
+		if(score >= Scores.MATE_BOUND)
+		{
+			return score - ply;
+		} else if(score <= -Scores.MATE_BOUND)
+		{
+			return score + ply;
+		}
+		return score;
+	}
+
+	private ByteBuffer getSegment(long hash)
+	{
+		return this.segments[(int)((hash & this.bucketMask) >>> SEGMENT_SHIFT)];
+	}
+
+	private int getBucketOffset(long hash)
+	{
+		return (int)(hash & this.bucketMask & ((1L << SEGMENT_SHIFT) - 1)) * BUCKET_SIZE;
+	}
+
+}
@@ -0,0 +1,72 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+
+
+/**
+ * A chess clock for simulated games: each side has its time left and gains a fixed increment after every move.
+ *
+ * The clock is virtual in that nobody watches it run: whoever plays the game measures how long a move took and charges
+ * it (see charge). Measuring with getThreadCpuTimeInMS charges a side only for the CPU its own search used, so a game
+ * keeps the same time control however many other games share the machine.
+ */
+public class VirtualClock
+    extends Object
+{
+
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	private final long[] timeLeftInMS; // [color]
+	private final long incrementInMS;
+
+	public VirtualClock(long initialTimeInMS, long incrementInMS)
+	{
+		this.timeLeftInMS = new long[] {initialTimeInMS, initialTimeInMS};
+		this.incrementInMS = incrementInMS;
+	}
+
+	public long getTimeLeftInMS(int color) { return this.timeLeftInMS[color]; }
+	public long getIncrementInMS() { return this.incrementInMS; }
+
+	/**
+	 * Charge color for a move that took elapsedInMS, then add the increment if the flag has not fallen.
+	 * @return false if color ran out of time
+	 */
+	public boolean charge(int color, long elapsedInMS)
+	{
+		this.timeLeftInMS[color] -= elapsedInMS;
+		if(this.timeLeftInMS[color] < 0)
+		{
+			this.timeLeftInMS[color] = 0;
+			return false;
+		}
+		this.timeLeftInMS[color] += this.getIncrementInMS();
+		return true;
+	}
+
+	/**
+	 * The CPU time the calling thread has used, or its wall clock time if the JVM cannot measure CPU time.
+	 */
+	public static long getThreadCpuTimeInMS()
+	{
+		if(THREAD_BEAN.isCurrentThreadCpuTimeSupported())
+		{
+			return THREAD_BEAN.getCurrentThreadCpuTime() / 1000000;
+		}
+		return System.nanoTime() / 1000000;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "white " + this.timeLeftInMS[Position.WHITE] + "ms, black " + this.timeLeftInMS[Position.BLACK] + "ms";
+	}
+
+}
@@ -3,21 +3,33 @@ package src.pas.chess.heuristics;
 // SYSTEM IMPORTS
 import edu.bu.chess.search.DFSTreeNode;
 import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.MoveType;
+import edu.bu.chess.game.move.PromotePawnMove;
 import edu.bu.chess.game.piece.Piece;
 import edu.bu.chess.game.piece.PieceType;
 import edu.bu.chess.game.player.Player;
-import edu.bu.chess.game.Board;
-import edu.bu.chess.utils.Coordinate;
-import edu.cwru.sepia.util.Direction;
 
 // JAVA PROJECT IMPORTS
-// Assuming DefaultHeuristics is available if needed
+import src.pas.chess.instrumentation.HeuristicsProfiler;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.Position;
 
 public class CustomHeuristics extends Object {
 
+    // material, mobility, king safety, pawn structure and piece-square tables (see FusedEvaluator.createDefault)
+    private static final FusedEvaluator EVALUATOR = FusedEvaluator.createDefault();
+
+    /**
+     * The evaluator behind both heuristics below, e.g. to register more terms or change weights before a game.
+     */
+    public static FusedEvaluator getEvaluator() {
+        return EVALUATOR;
+    }
+
     /**
      * Calculates the heuristic value for the MAX player in the given game node.
-     * The heuristic considers material balance, piece mobility, king safety, and pawn structure.
+     * The heuristic considers material balance, piece mobility, king safety, pawn structure, and piece placement.
      * @param node The current game node.
      * @return The heuristic value representing the "goodness" of the game state for the MAX player.
      */
@@ -32,18 +44,59 @@ public class CustomHeuristics extends Object {
             return Double.MAX_VALUE / 2;
         }
 
-        double materialScore = evaluateMaterial(game, maxPlayer, minPlayer);
-        double mobilityScore = evaluateMobility(game, maxPlayer, minPlayer);
-        double kingSafetyScore = evaluateKingSafety(game, maxPlayer, minPlayer);
-        double pawnStructureScore = evaluatePawnStructure(game, maxPlayer, minPlayer);
+        // the node's attack map carries a Position snapshot of the game, the evaluator works on that
+        AttackMap attackMap = AttackMap.of(game);
+        int maxColor = GameAdapter.getColor(game, maxPlayer);
+        if (HeuristicsProfiler.shouldSample()) {
+            return Scores.toUtility(EVALUATOR.evaluateProfiled(attackMap, maxColor));
+        }
+        return Scores.toUtility(EVALUATOR.evaluate(attackMap, maxColor));
+    }
+
+    /**
+     * The same evaluation computed directly on a standalone Position, for searches that run outside of SEPIA.
+     * @param position The position to evaluate.
+     * @param maxColor The color (Position.WHITE or Position.BLACK) of the MAX player.
+     * @return The heuristic value representing the "goodness" of the position for the MAX player, in centipawns (see Scores).
+     */
+    public static int getMaxPlayerHeuristicValue(Position position, int maxColor) {
+        if (position.getKingSquare(maxColor ^ 1) == Position.NO_SQUARE) {
+            return Scores.MATE;
+        }
+
+        if (HeuristicsProfiler.shouldSample()) {
+            return EVALUATOR.evaluateProfiled(position, maxColor);
+        }
+        return EVALUATOR.evaluate(position, maxColor);
+    }
+
+    /**
+     * The value of DefaultHeuristics.getMaxPlayerHeuristicValue, for the agents that score nodes with it. DefaultHeuristics
+     * is the provided version and is left as it is, so its threat counters still generate the library's capture moves
+     * piece by piece, once for each side. Here both counts are read off the node's attack map instead (one pass over
+     * the pieces, see AttackMap.getNumThreats), and every other term is DefaultHeuristics' own.
+     * @param node The current game node.
+     * @return The heuristic value representing the "goodness" of the game state for the MAX player.
+     */
+    public static double getDefaultMaxPlayerHeuristicValue(DFSTreeNode node) {
+        Game game = node.getGame();
+        AttackMap attackMap = AttackMap.of(game);
+        int maxColor = GameAdapter.getColor(game, node.getMaxPlayer());
 
-        // Combine the scores with appropriate weights
-        double heuristicValue = (12 * materialScore) + (5 * mobilityScore) + (8 * kingSafetyScore) + (2 * pawnStructureScore);
+        // offense: what this node's move earned, and how many captures we could make
+        double damageDealtInThisNode = game.getBoard().getPointsEarned(node.getMaxPlayer());
+        if (node.getMove().getType() == MoveType.PROMOTEPAWNMOVE) {
+            damageDealtInThisNode += Piece.getPointValue(((PromotePawnMove) node.getMove()).getPromotedPieceType());
+        }
+        double offenseHeuristicValue = damageDealtInThisNode + attackMap.getNumThreats(maxColor);
 
-        // Ensure the heuristic value is within the bounds [-Double.MAX_VALUE, Double.MAX_VALUE]
-        heuristicValue = Math.max(-Double.MAX_VALUE, Math.min(Double.MAX_VALUE, heuristicValue));
+        // defense: our pieces, what surrounds our king, and how many captures the opponent could make
+        double defenseHeuristicValue = DefaultHeuristics.DefensiveHeuristics.getNumberOfMaxPlayersAlivePieces(node)
+            + DefaultHeuristics.DefensiveHeuristics.getClampedPieceValueTotalSurroundingMaxPlayersKing(node)
+            + attackMap.getNumThreats(maxColor ^ 1);
 
-        return heuristicValue;
+        return offenseHeuristicValue + defenseHeuristicValue
+            + DefaultHeuristics.getNonlinearPieceCombinationMaxPlayerHeuristicValue(node);
     }
 
     /**
@@ -75,125 +128,6 @@ public class CustomHeuristics extends Object {
         boolean kingExists = game.getBoard().getPieces(minPlayer, PieceType.KING).isEmpty();
         return kingExists;
     }
-
-    private static double evaluateMaterial(Game game, Player maxPlayer, Player minPlayer) {
-        int maxMaterial = 0;
-        int minMaterial = 0;
-
-        for (Piece piece : game.getBoard().getPieces(maxPlayer)) {
-            maxMaterial += Piece.getPointValue(piece.getType());
-        }
-
-        for (Piece piece : game.getBoard().getPieces(minPlayer)) {
-            minMaterial += Piece.getPointValue(piece.getType());
-        }
-
-        return maxMaterial - minMaterial;
-    }
-
-    private static double evaluateMobility(Game game, Player maxPlayer, Player minPlayer) {
-        int maxMobility = 0;
-        int minMobility = 0;
-
-        for (Piece piece : game.getBoard().getPieces(maxPlayer)) {
-            maxMobility += piece.getAllMoves(game).size();
-        }
-
-        for (Piece piece : game.getBoard().getPieces(minPlayer)) {
-            minMobility += piece.getAllMoves(game).size();
-        }
-
-        return maxMobility - minMobility;
-    }
-
-    private static double evaluateKingSafety(Game game, Player maxPlayer, Player minPlayer) {
-        Piece maxKing = game.getBoard().getPieces(maxPlayer, PieceType.KING).iterator().next();
-        Piece minKing = game.getBoard().getPieces(minPlayer, PieceType.KING).iterator().next();
-
-        int maxKingSafety = calculateKingSafety(game, maxKing);
-        int minKingSafety = calculateKingSafety(game, minKing);
-
-        return minKingSafety - maxKingSafety; // Higher value if opponent's king is less safe
-    }
-
-    private static int calculateKingSafety(Game game, Piece king) {
-        int safetyScore = 0;
-        Coordinate kingPosition = game.getCurrentPosition(king);
-
-        // Evaluate the area around the king
-        for (Direction dir : Direction.values()) {
-            Coordinate neighbor = kingPosition.getNeighbor(dir);
-            if (game.getBoard().isInbounds(neighbor)) {
-                if (game.getBoard().isPositionOccupied(neighbor)) {
-                    Piece adjacentPiece = game.getBoard().getPieceAtPosition(neighbor);
-                    if (!king.isEnemyPiece(adjacentPiece)) {
-                        // Friendly piece near the king increases safety
-                        safetyScore += 2;
-                    } else {
-                        // Enemy piece near the king decreases safety
-                        safetyScore -= 3;
-                    }
-                } else {
-                    // Empty squares near the king decrease safety slightly
-                    safetyScore -= 1;
-                }
-            }
-        }
-        return safetyScore;
-    }
-
-    private static double evaluatePawnStructure(Game game, Player maxPlayer, Player minPlayer) {
-        int maxPawnStructure = calculatePawnStructure(game, maxPlayer);
-        int minPawnStructure = calculatePawnStructure(game, minPlayer);
-
-        return maxPawnStructure - minPawnStructure;
-    }
-
-    private static int calculatePawnStructure(Game game, Player player) {
-        int pawnStructureScore = 0;
-
-        for (Piece pawn : game.getBoard().getPieces(player, PieceType.PAWN)) {
-            Coordinate pawnPosition = game.getCurrentPosition(pawn);
-
-			// penalize doubled pawns
-			if (isDoubledPawn(game, pawn, player)) {
-				pawnStructureScore -= 2;
-			}
-			
-			// penalize isolated pawns
-			if (isIsolatedPawn(game, pawn, player)) {
-				pawnStructureScore -= 3;
-			}
-		}
-
-		return pawnStructureScore;
-    }
-
-	private static boolean isDoubledPawn(Game game, Piece pawn, Player player) {
-		Coordinate pawnPosition = game.getCurrentPosition(pawn);
-		for (Piece otherPawn : game.getBoard().getPieces(player, PieceType.PAWN)) {
-			if (!pawn.equals(otherPawn) && game.getCurrentPosition(otherPawn).getXPosition() == pawnPosition.getXPosition()) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private static boolean isIsolatedPawn(Game game, Piece pawn, Player player) {
-		Coordinate pawnPosition = game.getCurrentPosition(pawn);
-		for (int dx = -1; dx <= 1; dx += 2) {
-			int neighborF = pawnPosition.getXPosition() + dx;
-			Coordinate neighbor = new Coordinate(neighborF, pawnPosition.getYPosition());
-			if (game.getBoard().isInbounds(neighbor)) {
-				for (Piece neighborPawn : game.getBoard().getPieces(player, PieceType.PAWN)) {
-					if (!pawn.equals(neighborPawn) && game.getCurrentPosition(neighborPawn).getXPosition() == neighborF) {
-						return false;
-					}
-				}
-			}
-		}
-		return true;
-	}
 }
 
 // Offensive Heuristics: 
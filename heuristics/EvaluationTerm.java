@@ -0,0 +1,47 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.AttackMap;
+
+
+/**
+ * One term of a FusedEvaluator.
+ *
+ * The evaluator walks the board once and hands every piece to every registered term, so a term must not scan the
+ * board itself: it accumulates whatever it needs per piece, then turns that into a score in finish.
+ * Terms are shared between threads and must keep no state of their own. Per-evaluation state lives in the
+ * accumulators array the evaluator passes in (getNumAccumulators ints, zeroed before every evaluation).
+ */
+public interface EvaluationTerm
+{
+
+	/**
+	 * Name of the term, used as its key in weights files and in profiler reports.
+	 */
+	public String getName();
+
+	/**
+	 * How many ints of per-evaluation state the term needs.
+	 */
+	public int getNumAccumulators();
+
+	/**
+	 * Called once per piece on the board.
+	 * @param attackMap the attack map of the position being evaluated (its position is attackMap.getPosition())
+	 * @param square where the piece stands
+	 * @param piece the piece (Position.makePiece encoding, never EMPTY)
+	 * @param accumulators the term's per-evaluation state
+	 */
+	public void visitPiece(AttackMap attackMap, int square, int piece, int[] accumulators);
+
+	/**
+	 * Called once every piece has been visited.
+	 * @return the (unweighted) value of the term for maxColor
+	 */
+	public int finish(AttackMap attackMap, int maxColor, int[] accumulators);
+
+}
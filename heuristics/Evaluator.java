@@ -0,0 +1,24 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+
+
+/**
+ * Static evaluation of a standalone Position from the point of view of one side.
+ */
+public interface Evaluator
+{
+
+	/**
+	 * @param position the position to evaluate
+	 * @param maxColor the color (Position.WHITE or Position.BLACK) of the MAX player
+	 * @return how good the position is for the MAX player (higher is better), in centipawns below Scores.MATE_BOUND
+	 */
+	public int evaluate(Position position, int maxColor);
+
+}
@@ -0,0 +1,308 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Properties;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.terms.KingSafetyTerm;
+import src.pas.chess.heuristics.terms.MaterialTerm;
+import src.pas.chess.heuristics.terms.MobilityTerm;
+import src.pas.chess.heuristics.terms.PawnStructureTerm;
+import src.pas.chess.heuristics.terms.PieceSquareTerm;
+import src.pas.chess.instrumentation.HeuristicsProfiler;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.Position;
+
+
+/**
+ * An evaluator built from a registry of EvaluationTerms that all share a single pass over the board:
+ * the attack map is computed once, then every piece is handed to every term, then the terms' values are combined
+ * with their weights. Adding a term costs one more callback per piece rather than another scan of the board.
+ *
+ * Scores are integer centipawns (see Scores): the weighted sum of the terms is in utility units, where a pawn is worth
+ * MATERIAL_WEIGHT, and is rounded to centipawns once at the end.
+ *
+ * Weights are kept in a primitive array indexed like the terms. They can be changed with setWeight/setWeights
+ * or loaded from a weights file of name=value lines (see loadWeights). Terms should be registered and weights set
+ * before the evaluator is shared between threads.
+ */
+public class FusedEvaluator
+    extends Object
+    implements Evaluator
+{
+
+	public static final String WEIGHTS_PROPERTY = "chess.heuristics.weights";
+
+	public static final double MATERIAL_WEIGHT = 12;
+	public static final double MOBILITY_WEIGHT = 5;
+	public static final double KING_SAFETY_WEIGHT = 8;
+	public static final double PAWN_STRUCTURE_WEIGHT = 2;
+	public static final double PIECE_SQUARE_WEIGHT = MATERIAL_WEIGHT / 100; // the tables are in centipawns
+
+	private EvaluationTerm[] terms;
+	private double[] weights;
+	private final ThreadLocal<int[][]> accumulators; // [term][accumulator], one set per thread
+
+	public FusedEvaluator()
+	{
+		this.terms = new EvaluationTerm[0];
+		this.weights = new double[0];
+		this.accumulators = ThreadLocal.withInitial(() -> new int[0][]);
+	}
+
+	/**
+	 * The evaluator CustomHeuristics uses: material, mobility, king safety, pawn structure and piece-square tables
+	 * with their default weights, overridden by the weights file named by -Dchess.heuristics.weights if there is one.
+	 */
+	public static FusedEvaluator createDefault()
+	{
+		FusedEvaluator evaluator = new FusedEvaluator();
+		evaluator.register(new MaterialTerm(), FusedEvaluator.MATERIAL_WEIGHT);
+		evaluator.register(new MobilityTerm(), FusedEvaluator.MOBILITY_WEIGHT);
+		evaluator.register(new KingSafetyTerm(), FusedEvaluator.KING_SAFETY_WEIGHT);
+		evaluator.register(new PawnStructureTerm(), FusedEvaluator.PAWN_STRUCTURE_WEIGHT);
+		evaluator.register(new PieceSquareTerm(), FusedEvaluator.PIECE_SQUARE_WEIGHT);
+
+		String weightsFile = System.getProperty(FusedEvaluator.WEIGHTS_PROPERTY);
+		if(weightsFile != null)
+		{
+			try
+			{
+				evaluator.loadWeights(weightsFile);
+			} catch(IOException e)
+			{
+				System.err.println("FusedEvaluator.createDefault [ERROR]: cannot load weights from " + weightsFile + ", using the defaults");
+				e.printStackTrace();
+			}
+		}
+		return evaluator;
+	}
+
+	/**
+	 * Add a term to the evaluation.
+	 * @return the index of the term (and of its weight)
+	 */
+	public int register(EvaluationTerm term, double weight)
+	{
+		int termIdx = this.terms.length;
+		this.terms = Arrays.copyOf(this.terms, termIdx + 1);
+		this.weights = Arrays.copyOf(this.weights, termIdx + 1);
+		this.terms[termIdx] = term;
+		this.weights[termIdx] = weight;
+		return termIdx;
+	}
+
+	public int getNumTerms() { return this.terms.length; }
+	public EvaluationTerm getTerm(int termIdx) { return this.terms[termIdx]; }
+	public double getWeight(int termIdx) { return this.weights[termIdx]; }
+	public void setWeight(int termIdx, double weight) { this.weights[termIdx] = weight; }
+
+	/**
+	 * @return a copy of the weights, indexed like the terms
+	 */
+	public double[] getWeights() { return Arrays.copyOf(this.weights, this.weights.length); }
+
+	public void setWeights(double[] weights)
+	{
+		if(weights.length != this.terms.length)
+		{
+			throw new IllegalArgumentException("expected " + this.terms.length + " weights but got " + weights.length);
+		}
+		System.arraycopy(weights, 0, this.weights, 0, weights.length);
+	}
+
+	/**
+	 * @return the index of the term with this name, or -1 if there is none
+	 */
+	public int indexOf(String termName)
+	{
+		for(int termIdx = 0; termIdx < this.terms.length; ++termIdx)
+		{
+			if(this.terms[termIdx].getName().equals(termName))
+			{
+				return termIdx;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Read weights from a file of name=value lines (java.util.Properties format). Terms that the file does not
+	 * mention keep their current weight, names that match no registered term are reported and ignored.
+	 */
+	public void loadWeights(String filePath)
+        throws IOException
+	{
+		Properties properties = new Properties();
+		try(Reader reader = new FileReader(filePath))
+		{
+			properties.load(reader);
+		}
+		for(String termName : properties.stringPropertyNames())
+		{
+			int termIdx = this.indexOf(termName);
+			if(termIdx < 0)
+			{
+				System.err.println("FusedEvaluator.loadWeights [WARNING]: no term named " + termName + " in " + filePath);
+				continue;
+			}
+			this.setWeight(termIdx, Double.parseDouble(properties.getProperty(termName).trim()));
+		}
+	}
+
+	/**
+	 * Write the weights as name=value lines in registration order, in the format loadWeights reads.
+	 * @param comment written as a leading # line if not null
+	 */
+	public void saveWeights(String filePath, String comment)
+        throws IOException
+	{
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(filePath)))
+		{
+			if(comment != null)
+			{
+				writer.write("# " + comment);
+				writer.newLine();
+			}
+			for(int termIdx = 0; termIdx < this.terms.length; ++termIdx)
+			{
+				writer.write(this.terms[termIdx].getName() + "=" + this.weights[termIdx]);
+				writer.newLine();
+			}
+		}
+	}
+
+	@Override
+	public int evaluate(Position position, int maxColor)
+	{
+		return this.evaluate(AttackMap.of(position), maxColor);
+	}
+
+	/**
+	 * Evaluate the position an attack map was computed for, reusing the map.
+	 */
+	public int evaluate(AttackMap attackMap, int maxColor)
+	{
+		int[][] accumulators = this.getAccumulators();
+		Position position = attackMap.getPosition();
+		EvaluationTerm[] terms = this.terms;
+
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			int piece = position.getPieceAt(square);
+			if(piece != Position.EMPTY)
+			{
+				for(int termIdx = 0; termIdx < terms.length; ++termIdx)
+				{
+					terms[termIdx].visitPiece(attackMap, square, piece, accumulators[termIdx]);
+				}
+			}
+		}
+
+		double score = 0.0;
+		for(int termIdx = 0; termIdx < terms.length; ++termIdx)
+		{
+			score += this.weights[termIdx] * terms[termIdx].finish(attackMap, maxColor, accumulators[termIdx]);
+		}
+		return Scores.toCentipawns(score);
+	}
+
+	/**
+	 * The raw (unweighted) value of every term for position: evaluate(position, maxColor) is their dot product with
+	 * the weights. This is what tools fitting the weights need.
+	 * @param termValues where to write the values, term i at termValues[offset + i]
+	 */
+	public void evaluateTerms(Position position, int maxColor, int[] termValues, int offset)
+	{
+		AttackMap attackMap = AttackMap.of(position);
+		int[][] accumulators = this.getAccumulators();
+		EvaluationTerm[] terms = this.terms;
+
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			int piece = position.getPieceAt(square);
+			if(piece != Position.EMPTY)
+			{
+				for(int termIdx = 0; termIdx < terms.length; ++termIdx)
+				{
+					terms[termIdx].visitPiece(attackMap, square, piece, accumulators[termIdx]);
+				}
+			}
+		}
+		for(int termIdx = 0; termIdx < terms.length; ++termIdx)
+		{
+			termValues[offset + termIdx] = terms[termIdx].finish(attackMap, maxColor, accumulators[termIdx]);
+		}
+	}
+
+	/**
+	 * Same as evaluate(Position, int), but every term gets its own pass over the board so it can be timed on its own.
+	 * Building the attack map is reported as a term of its own (slot 0), term i is reported in slot i + 1.
+	 */
+	public int evaluateProfiled(Position position, int maxColor)
+	{
+		long startTime = System.nanoTime();
+		AttackMap attackMap = AttackMap.of(position);
+		HeuristicsProfiler.recordTerm(0, "attack_map", System.nanoTime() - startTime, 0.0);
+		return this.evaluateProfiled(attackMap, maxColor);
+	}
+
+	public int evaluateProfiled(AttackMap attackMap, int maxColor)
+	{
+		int[][] accumulators = this.getAccumulators();
+		Position position = attackMap.getPosition();
+
+		double score = 0.0;
+		for(int termIdx = 0; termIdx < this.terms.length; ++termIdx)
+		{
+			long startTime = System.nanoTime();
+			EvaluationTerm term = this.terms[termIdx];
+			for(int square = 0; square < Position.NUM_SQUARES; ++square)
+			{
+				int piece = position.getPieceAt(square);
+				if(piece != Position.EMPTY)
+				{
+					term.visitPiece(attackMap, square, piece, accumulators[termIdx]);
+				}
+			}
+			double termScore = this.weights[termIdx] * term.finish(attackMap, maxColor, accumulators[termIdx]);
+			HeuristicsProfiler.recordTerm(termIdx + 1, term.getName(), System.nanoTime() - startTime, termScore);
+			score += termScore;
+		}
+		HeuristicsProfiler.recordScore(score);
+		return Scores.toCentipawns(score);
+	}
+
+	/**
+	 * The calling thread's accumulators, zeroed and sized for the registered terms.
+	 */
+	private int[][] getAccumulators()
+	{
+		int[][] accumulators = this.accumulators.get();
+		if(accumulators.length != this.terms.length)
+		{
+			accumulators = new int[this.terms.length][];
+			for(int termIdx = 0; termIdx < this.terms.length; ++termIdx)
+			{
+				accumulators[termIdx] = new int[this.terms[termIdx].getNumAccumulators()];
+			}
+			this.accumulators.set(accumulators);
+		} else
+		{
+			for(int[] termAccumulators : accumulators)
+			{
+				Arrays.fill(termAccumulators, 0);
+			}
+		}
+		return accumulators;
+	}
+
+}
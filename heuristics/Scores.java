@@ -0,0 +1,82 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The integer score domain of the evaluators and of PositionSearcher: centipawns for the MAX player, with mates
+ * encoded at the ends of the range.
+ *
+ * A position where MAX mates in N plies from the root scores MATE - N, one where MAX is mated in N plies -(MATE - N),
+ * so shorter mates are preferred and the distance can be read back from the score (see getMatePlies). Static
+ * evaluations are clamped below MATE_BOUND, so they can never be taken for a mate. INFINITY is above every score and
+ * serves as the initial window.
+ *
+ * The framework's agents work in double utilities, where a pawn is worth FusedEvaluator.MATERIAL_WEIGHT and a
+ * captured king WIN_UTILITY. toUtility and toCentipawns convert between the two; searches convert once,
+ * at the root.
+ */
+public class Scores
+    extends Object
+{
+
+	public static final int INFINITY = 32000;
+	public static final int MATE = 31000;
+	public static final int MAX_MATE_PLIES = 1000;
+	public static final int MATE_BOUND = MATE - MAX_MATE_PLIES; // every score at or beyond +-MATE_BOUND is a mate
+	public static final int DRAW = 0;
+
+	public static final double WIN_UTILITY = Double.MAX_VALUE / 2;
+	public static final double CENTIPAWN_UTILITY = FusedEvaluator.MATERIAL_WEIGHT / 100;
+
+	/**
+	 * The score of MAX delivering mate ply plies from the root.
+	 */
+	public static int mateIn(int ply) { return MATE - ply; }
+
+	/**
+	 * The score of MAX being mated ply plies from the root.
+	 */
+	public static int matedIn(int ply) { return -MATE + ply; }
+
+	public static boolean isMate(int score) { return score >= MATE_BOUND || score <= -MATE_BOUND; }
+
+	/**
+	 * @param score a mate score (see isMate)
+	 * @return how many plies from the root the mate happens
+	 */
+	public static int getMatePlies(int score) { return MATE - Math.abs(score); }
+
+	/**
+	 * The framework utility of a score: centipawns scaled to utility units, mates to +-WIN_UTILITY.
+	 */
+	public static double toUtility(int score)
+	{
+		if(score >= MATE_BOUND)
+		{
+			return WIN_UTILITY;
+		} else if(score <= -MATE_BOUND)
+		{
+			return -WIN_UTILITY;
+		}
+		return score * CENTIPAWN_UTILITY;
+	}
+
+	/**
+	 * A static evaluation in utility units, rounded to centipawns and clamped out of the mate range.
+	 */
+	public static int toCentipawns(double utility)
+	{
+		return Scores.clamp(Math.round(utility / CENTIPAWN_UTILITY));
+	}
+
+	private static int clamp(long centipawns)
+	{
+		return (int)Math.max(-MATE_BOUND + 1, Math.min(MATE_BOUND - 1, centipawns));
+	}
+
+}
@@ -0,0 +1,150 @@
+package src.pas.chess.heuristics.nnue;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * The hidden layer of an NnueNetwork for one position, from both perspectives.
+ *
+ * refresh computes it from scratch (one row of feature weights per piece). After that, a move only changes the
+ * handful of features of the pieces it moves, captures or promotes, so copyAndUpdate derives a child's accumulator
+ * from its parent's in a single pass that adds and subtracts two to four rows of feature weights.
+ */
+public class NnueAccumulator
+    extends Object
+{
+
+	private final NnueNetwork network;
+	private final short[][] values; // [perspective][neuron]
+
+	public NnueAccumulator(NnueNetwork network)
+	{
+		this.network = network;
+		this.values = new short[2][network.getHiddenSize()];
+	}
+
+	public NnueNetwork getNetwork() { return this.network; }
+	public short[] getValues(int perspective) { return this.values[perspective]; }
+
+	public void refresh(Position position)
+	{
+		for(int perspective = Position.WHITE; perspective <= Position.BLACK; ++perspective)
+		{
+			System.arraycopy(this.network.getFeatureBiases(), 0, this.values[perspective], 0, this.network.getHiddenSize());
+		}
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			int piece = position.getPieceAt(square);
+			if(piece != Position.EMPTY)
+			{
+				this.addPiece(piece, square);
+			}
+		}
+	}
+
+	/**
+	 * Make this the accumulator of the position reached by playing move in before.
+	 * The copy from the parent and the feature updates are fused into one pass over each perspective's neurons.
+	 * @param parent the accumulator of before
+	 * @param before the position the move is played from (not modified)
+	 * @param move a move generated for before
+	 */
+	public void copyAndUpdate(NnueAccumulator parent, Position before, int move)
+	{
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		int piece = before.getPieceAt(from);
+		int color = Position.colorOf(piece);
+		int movedPiece = Moves.isPromotion(move) ? Position.makePiece(color, Moves.getPromotion(move)) : piece;
+
+		for(int perspective = Position.WHITE; perspective <= Position.BLACK; ++perspective)
+		{
+			short[] source = parent.values[perspective];
+			short[] target = this.values[perspective];
+			int removed = NnueNetwork.getFeatureIndex(perspective, piece, from);
+			int added = NnueNetwork.getFeatureIndex(perspective, movedPiece, to);
+
+			if(Moves.isCastle(move))
+			{
+				int rookFrom = to > from ? to + 1 : to - 2;
+				int rookTo = to > from ? to - 1 : to + 1;
+				int rook = before.getPieceAt(rookFrom);
+				this.update(source, target, added, NnueNetwork.getFeatureIndex(perspective, rook, rookTo),
+                    removed, NnueNetwork.getFeatureIndex(perspective, rook, rookFrom));
+			} else if(Moves.isCapture(move))
+			{
+				int capturedSquare = Moves.isEnPassant(move) ? (color == Position.WHITE ? to - 8 : to + 8) : to;
+				this.update(source, target, added, removed,
+                    NnueNetwork.getFeatureIndex(perspective, before.getPieceAt(capturedSquare), capturedSquare));
+			} else
+			{
+				this.update(source, target, added, removed);
+			}
+		}
+	}
+
+	// target = source + row(added) - row(removed), and the variants for captures and castling.
+
+	private void update(short[] source, short[] target, int added, int removed)
+	{
+		short[] featureWeights = this.network.getFeatureWeights();
+		int hiddenSize = this.network.getHiddenSize();
+		int addedOffset = added * hiddenSize;
+		int removedOffset = removed * hiddenSize;
+		for(int i = 0; i < hiddenSize; ++i)
+		{
+			target[i] = (short)(source[i] + featureWeights[addedOffset + i] - featureWeights[removedOffset + i]);
+		}
+	}
+
+	private void update(short[] source, short[] target, int added, int removed, int otherRemoved)
+	{
+		short[] featureWeights = this.network.getFeatureWeights();
+		int hiddenSize = this.network.getHiddenSize();
+		int addedOffset = added * hiddenSize;
+		int removedOffset = removed * hiddenSize;
+		int otherRemovedOffset = otherRemoved * hiddenSize;
+		for(int i = 0; i < hiddenSize; ++i)
+		{
+			target[i] = (short)(source[i] + featureWeights[addedOffset + i]
+                - featureWeights[removedOffset + i] - featureWeights[otherRemovedOffset + i]);
+		}
+	}
+
+	private void update(short[] source, short[] target, int added, int otherAdded, int removed, int otherRemoved)
+	{
+		short[] featureWeights = this.network.getFeatureWeights();
+		int hiddenSize = this.network.getHiddenSize();
+		int addedOffset = added * hiddenSize;
+		int otherAddedOffset = otherAdded * hiddenSize;
+		int removedOffset = removed * hiddenSize;
+		int otherRemovedOffset = otherRemoved * hiddenSize;
+		for(int i = 0; i < hiddenSize; ++i)
+		{
+			target[i] = (short)(source[i] + featureWeights[addedOffset + i] + featureWeights[otherAddedOffset + i]
+                - featureWeights[removedOffset + i] - featureWeights[otherRemovedOffset + i]);
+		}
+	}
+
+	private void addPiece(int piece, int square)
+	{
+		short[] featureWeights = this.network.getFeatureWeights();
+		int hiddenSize = this.network.getHiddenSize();
+		for(int perspective = Position.WHITE; perspective <= Position.BLACK; ++perspective)
+		{
+			short[] accumulator = this.values[perspective];
+			int offset = NnueNetwork.getFeatureIndex(perspective, piece, square) * hiddenSize;
+			for(int i = 0; i < hiddenSize; ++i)
+			{
+				accumulator[i] += featureWeights[offset + i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package src.pas.chess.heuristics.nnue;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Evaluation by an NnueNetwork. The network already outputs centipawns, so its output is the score (see Scores).
+ *
+ * evaluate(Position, int) refreshes an accumulator from scratch, which is fine at the root or in tools. Searches should
+ * keep one NnueAccumulator per ply, update it with copyAndUpdate as they descend and call evaluate(accumulator, ...).
+ *
+ * Optional: the searches only use it when -Dchess.nnue.weights names a weights file (see getDefault).
+ */
+public class NnueEvaluator
+    extends Object
+    implements Evaluator
+{
+
+	public static final String WEIGHTS_PROPERTY = "chess.nnue.weights";
+
+	private static class DefaultHolder
+        extends Object
+	{
+		private static final NnueEvaluator DEFAULT = NnueEvaluator.loadDefault();
+	}
+
+	private final NnueNetwork network;
+	private final ThreadLocal<NnueAccumulator> scratchAccumulators;
+
+	public NnueEvaluator(NnueNetwork network)
+	{
+		this.network = network;
+		this.scratchAccumulators = ThreadLocal.withInitial(() -> new NnueAccumulator(network));
+	}
+
+	public NnueNetwork getNetwork() { return this.network; }
+
+	/**
+	 * The evaluator for the weights file named by -Dchess.nnue.weights, loaded on first use.
+	 * @return the evaluator, or null if no weights file was given or it cannot be loaded
+	 */
+	public static NnueEvaluator getDefault() { return DefaultHolder.DEFAULT; }
+
+	private static NnueEvaluator loadDefault()
+	{
+		String weightsFile = System.getProperty(NnueEvaluator.WEIGHTS_PROPERTY);
+		if(weightsFile == null)
+		{
+			return null;
+		}
+		try
+		{
+			return new NnueEvaluator(NnueNetwork.load(weightsFile));
+		} catch(IOException e)
+		{
+			System.err.println("NnueEvaluator.loadDefault [ERROR]: cannot load network from " + weightsFile + ", using CustomHeuristics");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public NnueAccumulator newAccumulator() { return new NnueAccumulator(this.getNetwork()); }
+
+	@Override
+	public int evaluate(Position position, int maxColor)
+	{
+		NnueAccumulator accumulator = this.scratchAccumulators.get();
+		accumulator.refresh(position);
+		return this.evaluate(accumulator, position, maxColor);
+	}
+
+	/**
+	 * @param accumulator an accumulator that is up to date for position
+	 */
+	public int evaluate(NnueAccumulator accumulator, Position position, int maxColor)
+	{
+		int sideToMove = position.getSideToMove();
+		int centipawns = this.getNetwork().evaluate(accumulator.getValues(sideToMove), accumulator.getValues(sideToMove ^ 1));
+		centipawns = Math.max(-Scores.MATE_BOUND + 1, Math.min(Scores.MATE_BOUND - 1, centipawns));
+		return sideToMove == maxColor ? centipawns : -centipawns;
+	}
+
+}
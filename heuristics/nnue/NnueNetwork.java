@@ -0,0 +1,174 @@
+package src.pas.chess.heuristics.nnue;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+
+
+/**
+ * The weights of a small quantised NNUE-style network: 768 piece-square inputs per perspective feed a hidden layer
+ * of hiddenSize int16 neurons (the accumulator), whose clipped outputs for the side to move and for the other side
+ * go through a single int8 output neuron.
+ *
+ * Input features are indexed relative to the perspective: (own/enemy, piece type, square), with the board flipped
+ * for black, so one set of feature weights serves both perspectives.
+ *
+ * Weights file layout (little endian):
+ *   int32 MAGIC, int32 VERSION, int32 hiddenSize,
+ *   int16 featureBiases[hiddenSize], int16 featureWeights[NUM_FEATURES][hiddenSize],
+ *   int8 outputWeights[2 * hiddenSize] (side to move first), int32 outputBias, int32 outputScale
+ *
+ * The file is memory-mapped and copied once into plain arrays: the hot loops then run over contiguous short/byte
+ * arrays, which HotSpot's superword pass vectorises without any API beyond Java 8.
+ */
+public class NnueNetwork
+    extends Object
+{
+
+	public static final int MAGIC = 0x45554E4E; // "NNUE" read little endian
+	public static final int VERSION = 1;
+
+	public static final int NUM_PIECE_TYPES = 6;
+	public static final int NUM_FEATURES = 2 * NUM_PIECE_TYPES * Position.NUM_SQUARES;
+
+	// quantisation: accumulators are clipped to [0, CLIP], output weights are scaled by OUTPUT_QUANTISATION
+	public static final int CLIP = 127;
+	public static final int OUTPUT_QUANTISATION = 64;
+
+	private final int hiddenSize;
+	private final short[] featureBiases;
+	private final short[] featureWeights; // feature-major: the hiddenSize weights of feature f start at f * hiddenSize
+	private final byte[] outputWeights;
+	private final int outputBias;
+	private final int outputScale;
+
+	public NnueNetwork(int hiddenSize,
+                       short[] featureBiases,
+                       short[] featureWeights,
+                       byte[] outputWeights,
+                       int outputBias,
+                       int outputScale)
+	{
+		if(featureBiases.length != hiddenSize || featureWeights.length != NUM_FEATURES * hiddenSize
+            || outputWeights.length != 2 * hiddenSize)
+		{
+			throw new IllegalArgumentException("layer sizes do not match hiddenSize=" + hiddenSize);
+		}
+		this.hiddenSize = hiddenSize;
+		this.featureBiases = featureBiases;
+		this.featureWeights = featureWeights;
+		this.outputWeights = outputWeights;
+		this.outputBias = outputBias;
+		this.outputScale = outputScale;
+	}
+
+	public int getHiddenSize() { return this.hiddenSize; }
+	short[] getFeatureBiases() { return this.featureBiases; }
+	short[] getFeatureWeights() { return this.featureWeights; }
+
+	/**
+	 * Load a network from a weights file (see the class comment for the layout).
+	 */
+	public static NnueNetwork load(String filePath)
+        throws IOException
+	{
+		try(RandomAccessFile file = new RandomAccessFile(filePath, "r");
+            FileChannel channel = file.getChannel())
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if(buffer.getInt() != NnueNetwork.MAGIC || buffer.getInt() != NnueNetwork.VERSION)
+			{
+				throw new IOException(filePath + " is not a version " + NnueNetwork.VERSION + " NNUE weights file");
+			}
+			int hiddenSize = buffer.getInt();
+			long expectedSize = 12L + 2L * hiddenSize + 2L * NUM_FEATURES * hiddenSize + 2L * hiddenSize + 8L;
+			if(hiddenSize <= 0 || channel.size() != expectedSize)
+			{
+				throw new IOException(filePath + " has size " + channel.size() + " but hiddenSize=" + hiddenSize
+                    + " needs " + expectedSize + " bytes");
+			}
+
+			short[] featureBiases = new short[hiddenSize];
+			short[] featureWeights = new short[NUM_FEATURES * hiddenSize];
+			byte[] outputWeights = new byte[2 * hiddenSize];
+			buffer.asShortBuffer().get(featureBiases);
+			buffer.position(buffer.position() + 2 * hiddenSize);
+			buffer.asShortBuffer().get(featureWeights);
+			buffer.position(buffer.position() + 2 * featureWeights.length);
+			buffer.get(outputWeights);
+			int outputBias = buffer.getInt();
+			int outputScale = buffer.getInt();
+			return new NnueNetwork(hiddenSize, featureBiases, featureWeights, outputWeights, outputBias, outputScale);
+		}
+	}
+
+	/**
+	 * Write the network in the format load reads.
+	 */
+	public void save(String filePath)
+        throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(12 + 2 * this.featureBiases.length + 2 * this.featureWeights.length
+            + this.outputWeights.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(NnueNetwork.MAGIC).putInt(NnueNetwork.VERSION).putInt(this.hiddenSize);
+		for(short bias : this.featureBiases) { buffer.putShort(bias); }
+		for(short weight : this.featureWeights) { buffer.putShort(weight); }
+		buffer.put(this.outputWeights);
+		buffer.putInt(this.outputBias).putInt(this.outputScale);
+		buffer.flip();
+
+		try(RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+            FileChannel channel = file.getChannel())
+		{
+			channel.truncate(0);
+			while(buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Index of the feature "piece on square" as seen from perspective's side of the board.
+	 */
+	public static int getFeatureIndex(int perspective, int piece, int square)
+	{
+		int relativeColor = Position.colorOf(piece) == perspective ? 0 : 1;
+		int relativeSquare = perspective == Position.WHITE ? square : square ^ 56;
+		return ((relativeColor * NUM_PIECE_TYPES + Position.typeOf(piece) - 1) << 6) | relativeSquare;
+	}
+
+	/**
+	 * Run the output layer.
+	 * @param us the accumulator of the side to move's perspective
+	 * @param them the accumulator of the other perspective
+	 * @return the evaluation in centipawns from the side to move's point of view
+	 */
+	public int evaluate(short[] us, short[] them)
+	{
+		int hiddenSize = this.hiddenSize;
+		byte[] outputWeights = this.outputWeights;
+		int sum = 0;
+		for(int i = 0; i < hiddenSize; ++i)
+		{
+			sum += Math.min(Math.max(us[i], 0), CLIP) * outputWeights[i];
+		}
+		for(int i = 0; i < hiddenSize; ++i)
+		{
+			sum += Math.min(Math.max(them[i], 0), CLIP) * outputWeights[hiddenSize + i];
+		}
+		return (int)(((long)sum + this.outputBias) * this.outputScale / (CLIP * OUTPUT_QUANTISATION));
+	}
+
+}
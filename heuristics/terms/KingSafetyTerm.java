@@ -0,0 +1,67 @@
+package src.pas.chess.heuristics.terms;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.EvaluationTerm;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Neighbouring friendly pieces make a king safer, enemy pieces and empty squares less safe,
+ * and every enemy attack on a square next to the king counts against it as well.
+ * The value is the opponent's king safety minus our own, i.e. higher when the opponent's king is less safe.
+ */
+public class KingSafetyTerm
+    extends Object
+    implements EvaluationTerm
+{
+
+	public static final String NAME = "king_safety";
+
+	@Override
+	public String getName() { return KingSafetyTerm.NAME; }
+
+	@Override
+	public int getNumAccumulators() { return 2; } // king safety per color
+
+	@Override
+	public void visitPiece(AttackMap attackMap, int square, int piece, int[] accumulators)
+	{
+		if(Position.typeOf(piece) != Position.KING)
+		{
+			return;
+		}
+
+		int color = Position.colorOf(piece);
+		Position position = attackMap.getPosition();
+		int safetyScore = 0;
+		for(int neighbor : MoveGenerator.KING_TARGETS[square])
+		{
+			int neighborPiece = position.getPieceAt(neighbor);
+			if(neighborPiece == Position.EMPTY)
+			{
+				safetyScore -= 1;
+			} else if(Position.colorOf(neighborPiece) == color)
+			{
+				safetyScore += 2;
+			} else
+			{
+				safetyScore -= 3;
+			}
+			safetyScore -= attackMap.getAttackerCount(color ^ 1, neighbor);
+		}
+		accumulators[color] = safetyScore;
+	}
+
+	@Override
+	public int finish(AttackMap attackMap, int maxColor, int[] accumulators)
+	{
+		return accumulators[maxColor ^ 1] - accumulators[maxColor];
+	}
+
+}
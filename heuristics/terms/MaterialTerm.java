@@ -0,0 +1,45 @@
+package src.pas.chess.heuristics.terms;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.EvaluationTerm;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Material balance. Piece values match Piece.getPointValue (the kings cancel out, so they are worth nothing here).
+ */
+public class MaterialTerm
+    extends Object
+    implements EvaluationTerm
+{
+
+	public static final String NAME = "material";
+
+	private static final int[] PIECE_POINT_VALUES = new int[] {0, 1, 3, 3, 5, 9, 0}; // indexed by Position piece type
+
+	public static int getPointValue(int pieceType) { return MaterialTerm.PIECE_POINT_VALUES[pieceType]; }
+
+	@Override
+	public String getName() { return MaterialTerm.NAME; }
+
+	@Override
+	public int getNumAccumulators() { return 2; } // material per color
+
+	@Override
+	public void visitPiece(AttackMap attackMap, int square, int piece, int[] accumulators)
+	{
+		accumulators[Position.colorOf(piece)] += PIECE_POINT_VALUES[Position.typeOf(piece)];
+	}
+
+	@Override
+	public int finish(AttackMap attackMap, int maxColor, int[] accumulators)
+	{
+		return accumulators[maxColor] - accumulators[maxColor ^ 1];
+	}
+
+}
@@ -0,0 +1,38 @@
+package src.pas.chess.heuristics.terms;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.EvaluationTerm;
+import src.pas.chess.position.AttackMap;
+
+
+/**
+ * Difference in the number of pseudo-legal moves. The attack map already counted them while it was built,
+ * so there is nothing to do per piece.
+ */
+public class MobilityTerm
+    extends Object
+    implements EvaluationTerm
+{
+
+	public static final String NAME = "mobility";
+
+	@Override
+	public String getName() { return MobilityTerm.NAME; }
+
+	@Override
+	public int getNumAccumulators() { return 0; }
+
+	@Override
+	public void visitPiece(AttackMap attackMap, int square, int piece, int[] accumulators) {}
+
+	@Override
+	public int finish(AttackMap attackMap, int maxColor, int[] accumulators)
+	{
+		return attackMap.getMobility(maxColor) - attackMap.getMobility(maxColor ^ 1);
+	}
+
+}
@@ -0,0 +1,164 @@
+package src.pas.chess.heuristics.terms;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.EvaluationTerm;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Pawn structure from per-file summaries. While visiting we only record, for each side and file, how many pawns
+ * stand there and how far the frontmost and the rearmost of them have advanced. Everything else is derived from those
+ * 48 ints in finish, so the cost is one pass over the pawns plus a constant amount of work per file:
+ *  - doubled: more than one friendly pawn on the file (every pawn on the file is penalised)
+ *  - isolated: no friendly pawn on either neighbouring file (every pawn on the file is penalised)
+ *  - passed: no enemy pawn in front of the file's frontmost pawn on its own or a neighbouring file
+ *    (bonus grows with how far the pawn has advanced)
+ *  - backward: the file's rearmost pawn has friendly pawns on a neighbouring file, but all of them are ahead of it,
+ *    and the square in front of it is attacked by an enemy pawn
+ *
+ * Advancement is counted from each side's own back rank (0 to 7), so white and black share the same code.
+ */
+public class PawnStructureTerm
+    extends Object
+    implements EvaluationTerm
+{
+
+	public static final String NAME = "pawn_structure";
+
+	public static final int DOUBLED_PAWN_PENALTY = 2;
+	public static final int ISOLATED_PAWN_PENALTY = 3;
+	public static final int BACKWARD_PAWN_PENALTY = 2;
+	public static final int[] PASSED_PAWN_BONUS = new int[] {0, 1, 1, 2, 3, 5, 8, 0}; // indexed by advancement
+
+	// accumulator layout, each block indexed by color * BOARD_SIZE + file
+	private static final int COUNTS = 0;
+	private static final int FRONTMOST = 2 * Position.BOARD_SIZE;  // 1 + advancement of the frontmost pawn, 0 if none
+	private static final int REARMOST = 4 * Position.BOARD_SIZE;   // BOARD_SIZE - advancement of the rearmost pawn, 0 if none
+	private static final int NUM_ACCUMULATORS = 6 * Position.BOARD_SIZE;
+
+	@Override
+	public String getName() { return PawnStructureTerm.NAME; }
+
+	@Override
+	public int getNumAccumulators() { return PawnStructureTerm.NUM_ACCUMULATORS; }
+
+	private static int getAdvancement(int color, int rank)
+	{
+		return color == Position.WHITE ? rank : Position.BOARD_SIZE - 1 - rank;
+	}
+
+	private static int getRank(int color, int advancement)
+	{
+		return color == Position.WHITE ? advancement : Position.BOARD_SIZE - 1 - advancement;
+	}
+
+	@Override
+	public void visitPiece(AttackMap attackMap, int square, int piece, int[] accumulators)
+	{
+		if(Position.typeOf(piece) != Position.PAWN)
+		{
+			return;
+		}
+		int color = Position.colorOf(piece);
+		int idx = color * Position.BOARD_SIZE + Position.fileOf(square);
+		int advancement = PawnStructureTerm.getAdvancement(color, Position.rankOf(square));
+
+		accumulators[COUNTS + idx] += 1;
+		accumulators[FRONTMOST + idx] = Math.max(accumulators[FRONTMOST + idx], 1 + advancement);
+		accumulators[REARMOST + idx] = Math.max(accumulators[REARMOST + idx], Position.BOARD_SIZE - advancement);
+	}
+
+	@Override
+	public int finish(AttackMap attackMap, int maxColor, int[] accumulators)
+	{
+		return PawnStructureTerm.getPawnStructure(attackMap.getPosition(), accumulators, maxColor)
+            - PawnStructureTerm.getPawnStructure(attackMap.getPosition(), accumulators, maxColor ^ 1);
+	}
+
+	private static int getPawnStructure(Position position, int[] accumulators, int color)
+	{
+		int offset = color * Position.BOARD_SIZE;
+		int enemyOffset = (color ^ 1) * Position.BOARD_SIZE;
+		int pawnStructureScore = 0;
+		for(int file = 0; file < Position.BOARD_SIZE; ++file)
+		{
+			int numPawns = accumulators[COUNTS + offset + file];
+			if(numPawns == 0)
+			{
+				continue;
+			}
+			int firstFile = Math.max(file - 1, 0);
+			int lastFile = Math.min(file + 1, Position.BOARD_SIZE - 1);
+
+			if(numPawns > 1)
+			{
+				pawnStructureScore -= DOUBLED_PAWN_PENALTY * numPawns;
+			}
+
+			// look at the neighbouring files: are there friendly pawns there, and is one of them level with or behind
+			// our rearmost pawn (so it could still support it)?
+			int rearmost = Position.BOARD_SIZE - accumulators[REARMOST + offset + file];
+			boolean hasNeighbor = false;
+			boolean hasSupport = false;
+			for(int neighborFile = firstFile; neighborFile <= lastFile; ++neighborFile)
+			{
+				if(neighborFile != file && accumulators[COUNTS + offset + neighborFile] > 0)
+				{
+					hasNeighbor = true;
+					hasSupport |= Position.BOARD_SIZE - accumulators[REARMOST + offset + neighborFile] <= rearmost;
+				}
+			}
+			if(!hasNeighbor)
+			{
+				pawnStructureScore -= ISOLATED_PAWN_PENALTY * numPawns;
+			} else if(!hasSupport && PawnStructureTerm.isStopSquareAttacked(position, color, file, rearmost))
+			{
+				pawnStructureScore -= BACKWARD_PAWN_PENALTY;
+			}
+
+			// an enemy pawn with enemy advancement e stands at our advancement 7 - e, so the enemy pawn furthest up
+			// the board from our point of view is their rearmost one (stored as 8 - e, i.e. at our advancement stored - 1)
+			int frontmost = accumulators[FRONTMOST + offset + file] - 1;
+			boolean isPassed = true;
+			for(int neighborFile = firstFile; neighborFile <= lastFile && isPassed; ++neighborFile)
+			{
+				int enemyRearmost = accumulators[REARMOST + enemyOffset + neighborFile];
+				isPassed = enemyRearmost == 0 || enemyRearmost - 1 <= frontmost;
+			}
+			if(isPassed)
+			{
+				pawnStructureScore += PASSED_PAWN_BONUS[frontmost];
+			}
+		}
+		return pawnStructureScore;
+	}
+
+	/**
+	 * Is the square in front of color's pawn (on file, at advancement) attacked by an enemy pawn?
+	 */
+	private static boolean isStopSquareAttacked(Position position, int color, int file, int advancement)
+	{
+		if(advancement >= Position.BOARD_SIZE - 2)
+		{
+			return false;
+		}
+		int stopSquare = Position.square(file, PawnStructureTerm.getRank(color, advancement + 1));
+		int enemyPawn = Position.makePiece(color ^ 1, Position.PAWN);
+		// an enemy pawn attacks the stop square iff one of ours standing there would attack the enemy pawn
+		for(int square : MoveGenerator.PAWN_ATTACKS[color][stopSquare])
+		{
+			if(position.getPieceAt(square) == enemyPawn)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
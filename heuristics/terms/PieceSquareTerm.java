@@ -0,0 +1,38 @@
+package src.pas.chess.heuristics.terms;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.EvaluationTerm;
+import src.pas.chess.position.AttackMap;
+
+
+/**
+ * Tapered piece-square score in centipawns (see PieceSquareTables). Position keeps the table sums and the game
+ * phase up to date as pieces move, so there is nothing to do per piece: finish only blends the two sums.
+ */
+public class PieceSquareTerm
+    extends Object
+    implements EvaluationTerm
+{
+
+	public static final String NAME = "piece_square";
+
+	@Override
+	public String getName() { return PieceSquareTerm.NAME; }
+
+	@Override
+	public int getNumAccumulators() { return 0; }
+
+	@Override
+	public void visitPiece(AttackMap attackMap, int square, int piece, int[] accumulators) {}
+
+	@Override
+	public int finish(AttackMap attackMap, int maxColor, int[] accumulators)
+	{
+		return attackMap.getPosition().getPieceSquareScore(maxColor);
+	}
+
+}
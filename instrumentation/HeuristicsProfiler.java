@@ -0,0 +1,142 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Sampling profiler for the terms of the evaluation.
+ *
+ * When enabled, 1 in every sampleRate leaf evaluations is timed term by term. For every term we accumulate the time
+ * spent computing it and the size of its (weighted) contribution to the final score, so the report shows what each
+ * term costs next to how much it actually moves the evaluation. Terms are identified by a slot (0 to MAX_TERMS - 1)
+ * and named by whoever records them.
+ *
+ * Off by default. Turn it on with -Dchess.heuristics.profile.sampleRate=N (the report is printed to stderr when the
+ * JVM exits) or programmatically with setSampleRate. When off, the only cost on the evaluation path is one field read.
+ */
+public class HeuristicsProfiler
+    extends Object
+{
+
+	public static final String SAMPLE_RATE_PROPERTY = "chess.heuristics.profile.sampleRate";
+
+	public static final int MAX_TERMS = 32;
+
+	private static volatile int sampleRate = Integer.getInteger(HeuristicsProfiler.SAMPLE_RATE_PROPERTY, 0);
+
+	private static final LongAdder numSamples = new LongAdder();
+	private static final String[] termNames = new String[MAX_TERMS]; // null for slots nobody has recorded
+	private static final LongAdder[] termNanos = new LongAdder[MAX_TERMS];
+	private static final DoubleAdder[] termAbsContributions = new DoubleAdder[MAX_TERMS];
+	private static final DoubleAdder absScores = new DoubleAdder();
+
+	static
+	{
+		for(int term = 0; term < MAX_TERMS; ++term)
+		{
+			termNanos[term] = new LongAdder();
+			termAbsContributions[term] = new DoubleAdder();
+		}
+
+		if(HeuristicsProfiler.sampleRate > 0)
+		{
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(HeuristicsProfiler.report())));
+		}
+	}
+
+	public static int getSampleRate() { return HeuristicsProfiler.sampleRate; }
+
+	/**
+	 * @param sampleRate profile 1 in every sampleRate evaluations (0 turns the profiler off)
+	 */
+	public static void setSampleRate(int sampleRate) { HeuristicsProfiler.sampleRate = sampleRate; }
+
+	/**
+	 * Should the current evaluation be profiled?
+	 */
+	public static boolean shouldSample()
+	{
+		int rate = HeuristicsProfiler.sampleRate;
+		return rate > 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+	}
+
+	/**
+	 * Record one term of a sampled evaluation.
+	 * @param term the term's slot
+	 * @param name the term's name, shown in the report
+	 * @param nanos how long the term took to compute
+	 * @param weightedValue the term's contribution to the score (i.e. already multiplied by its weight)
+	 */
+	public static void recordTerm(int term, String name, long nanos, double weightedValue)
+	{
+		termNames[term] = name;
+		termNanos[term].add(nanos);
+		termAbsContributions[term].add(Math.abs(weightedValue));
+	}
+
+	/**
+	 * Record the final score of a sampled evaluation (call once per sample, after its terms).
+	 */
+	public static void recordScore(double score)
+	{
+		numSamples.increment();
+		absScores.add(Math.abs(score));
+	}
+
+	public static void reset()
+	{
+		numSamples.reset();
+		absScores.reset();
+		for(int term = 0; term < MAX_TERMS; ++term)
+		{
+			termNanos[term].reset();
+			termAbsContributions[term].reset();
+		}
+	}
+
+	/**
+	 * A table with one row per term: share of the sampled evaluation time, mean time, mean |contribution|,
+	 * and share of the total |contribution|.
+	 */
+	public static String report()
+	{
+		long samples = numSamples.sum();
+		long totalNanos = 0;
+		double totalAbsContribution = 0.0;
+		for(int term = 0; term < MAX_TERMS; ++term)
+		{
+			totalNanos += termNanos[term].sum();
+			totalAbsContribution += termAbsContributions[term].sum();
+		}
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("HeuristicsProfiler: ").append(samples).append(" sampled evaluations (1 in ")
+            .append(HeuristicsProfiler.getSampleRate()).append("), mean |score|=")
+            .append(String.format("%.2f", samples > 0 ? absScores.sum() / samples : 0.0)).append('\n');
+		builder.append(String.format("%-16s %10s %12s %16s %16s%n", "term", "cost_share", "mean_ns", "mean_|contrib|", "contrib_share"));
+		for(int term = 0; term < MAX_TERMS; ++term)
+		{
+			if(termNames[term] == null)
+			{
+				continue;
+			}
+			long nanos = termNanos[term].sum();
+			double absContribution = termAbsContributions[term].sum();
+			builder.append(String.format("%-16s %9.1f%% %12.0f %16.2f %15.1f%%%n",
+                termNames[term],
+                totalNanos > 0 ? 100.0 * nanos / totalNanos : 0.0,
+                samples > 0 ? (double)nanos / samples : 0.0,
+                samples > 0 ? absContribution / samples : 0.0,
+                totalAbsContribution > 0 ? 100.0 * absContribution / totalAbsContribution : 0.0));
+		}
+		return builder.toString();
+	}
+
+}
@@ -37,7 +37,7 @@ import edu.bu.chess.utils.Triple;
 
 
 // JAVA PROJECT IMPORTS
-import src.pas.chess.heuristics.DefaultHeuristics;
+import src.pas.chess.heuristics.CustomHeuristics;
 
 
 public class MinimaxAgent
@@ -75,7 +75,7 @@ public class MinimaxAgent
 			} else if(depth <= 0) // reached the end of the depth!
 			{
 				// assign heuristic value to the child as its utility
-				node.setMaxPlayerUtilityValue(DefaultHeuristics.getMaxPlayerHeuristicValue(node));
+				node.setMaxPlayerUtilityValue(CustomHeuristics.getDefaultMaxPlayerHeuristicValue(node));
 				bestChild = node;
 			} else // we can get the children of this node and find its best value
 			{
@@ -4,52 +4,169 @@ package src.pas.chess.moveorder;
 import edu.bu.chess.search.DFSTreeNode;
 import edu.bu.chess.game.move.Move;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.StaticExchange;
+
 public class CustomMoveOrderer extends Object {
 
+    private static final int GOOD_CAPTURE_KEY = 1 << 20; // ahead of promotions, quiet moves (0) and losing captures (< 0)
+    private static final int PROMOTION_KEY = 1;
+
+    /**
+     * What order(parent, nodes) works in, one per thread so ordering allocates no positions or move lists.
+     */
+    private static class Scratch extends Object {
+        private final Position before = new Position();
+        private final Position after = new Position();
+        private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        private final int[] gains = StaticExchange.newGains();
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCHES = ThreadLocal.withInitial(Scratch::new);
+
     /**
      * This method performs move ordering for Alpha-Beta pruning.
      * The goal is to see nodes which are beneficial first, so we can prune as much as possible during the search.
      * We prioritize capture moves, promotion moves, and finally quiet moves.
      * @param nodes. The nodes to order (these are children of a DFSTreeNode) that we are about to consider in the search.
-     * @return The ordered nodes.
+     * @return The ordered nodes, in a new list the caller may change.
      */
     public static List<DFSTreeNode> order(List<DFSTreeNode> nodes) {
-        List<DFSTreeNode> captureNodes = new LinkedList<>(); // capture moves (highest priority)
-        List<DFSTreeNode> promotionNodes = new LinkedList<>(); // promotion moves (medium priority)
-        List<DFSTreeNode> otherNodes = new LinkedList<>(); // other moves (lowest priority)
+        DFSTreeNode[] orderedNodes = nodes.toArray(new DFSTreeNode[nodes.size()]);
+        int[] keys = new int[orderedNodes.length]; // higher keys are searched first, 0 for quiet moves
 
 		// loop through each node
-        for (DFSTreeNode node : nodes) {
+        for (int nodeIdx = 0; nodeIdx < orderedNodes.length; ++nodeIdx) {
 			// get move associated with current node
-            Move move = node.getMove();
+            Move move = orderedNodes[nodeIdx].getMove();
 			// check if the node has a valid move assoicated with it
             if (move != null) {
 				// check the type of move
                 switch (move.getType()) {
-					// if the move is a capture move, add it to the captureNodes list
+					// capture moves have the highest priority
                     case CAPTUREMOVE:
-                        captureNodes.add(node);
+                        keys[nodeIdx] = 2;
                         break;
-                    case PROMOTEPAWNMOVE:  // if move is a pawn promotion move, add to promotionNodes
-                        promotionNodes.add(node);
+                    case PROMOTEPAWNMOVE:  // pawn promotions come next
+                        keys[nodeIdx] = 1;
                         break;
                     default:
-                        otherNodes.add(node); // any other type of node just add to this (regular non-capturing ones)
-                        break;
+                        break; // any other type of node stays a quiet move (regular non-capturing ones)
                 }
-            } else {
-				// if no valid move for the node, treat as a quiet node 
-                otherNodes.add(node);
             }
         }
 
         // Order: captures -> promotions -> other
-        captureNodes.addAll(promotionNodes);
-        captureNodes.addAll(otherNodes);
+        sortByKey(orderedNodes, keys);
+        return new ArrayList<DFSTreeNode>(Arrays.asList(orderedNodes));
+    }
+
+    /**
+     * Same idea, but captures are ranked by static exchange evaluation (see StaticExchange) in the parent's position:
+     * captures that win or hold material come first, best first, then promotions, then quiet moves, and the captures
+     * that lose material come last, so QxP defended by a pawn no longer gets searched before PxQ.
+     * The parent is only converted to a Position (and its moves generated) if it has a capture child, once per call.
+     * @param parent The node whose children are being ordered.
+     * @param nodes. The children of parent.
+     * @return The ordered nodes, in a new list the caller may change.
+     */
+    public static List<DFSTreeNode> order(DFSTreeNode parent, List<DFSTreeNode> nodes) {
+        Scratch scratch = SCRATCHES.get();
+        int numMoves = -1; // the parent's moves are not generated yet
+
+        // Order: winning and even captures (best first) -> promotions -> other -> losing captures (least bad first)
+        DFSTreeNode[] orderedNodes = nodes.toArray(new DFSTreeNode[nodes.size()]);
+        int[] keys = new int[orderedNodes.length];
+        for (int nodeIdx = 0; nodeIdx < orderedNodes.length; ++nodeIdx) {
+            DFSTreeNode node = orderedNodes[nodeIdx];
+            Move move = node.getMove();
+            if (move == null) {
+                continue;
+            }
+            switch (move.getType()) {
+                case CAPTUREMOVE:
+                    if (numMoves < 0) {
+                        GameAdapter.toPosition(parent.getGame(), scratch.before);
+                        numMoves = MoveGenerator.generateMoves(scratch.before, scratch.moves, 0);
+                    }
+                    GameAdapter.toPosition(node.getGame(), scratch.after);
+                    int exchangeValue = getExchangeValue(scratch.before, scratch.moves, numMoves, scratch.after, scratch.gains);
+                    keys[nodeIdx] = exchangeValue >= 0 ? GOOD_CAPTURE_KEY + exchangeValue : exchangeValue;
+                    break;
+                case PROMOTEPAWNMOVE:
+                    keys[nodeIdx] = PROMOTION_KEY;
+                    break;
+                default:
+                    break;
+            }
+        }
 
-        return captureNodes;
+        sortByKey(orderedNodes, keys);
+        return new ArrayList<DFSTreeNode>(Arrays.asList(orderedNodes));
+    }
+
+    /**
+     * The SEE value of the capture leading from before to after (0 if it cannot be told), what order(parent, nodes)
+     * ranks a capture child by. The capture is found by comparing the two boards: it moves a piece of the side to move
+     * off the one square it leaves empty and onto the one square it now holds (an en passant victim's square empties
+     * too, but it held an enemy pawn).
+     * @param moves the moves of before, from MoveGenerator.generateMoves
+     * @param gains StaticExchange's scratch, see StaticExchange.newGains
+     */
+    public static int getExchangeValue(Position before, int[] moves, int numMoves, Position after, int[] gains) {
+        int mover = before.getSideToMove();
+        int from = Position.NO_SQUARE;
+        int to = Position.NO_SQUARE;
+        for (int square = 0; square < Position.NUM_SQUARES; ++square) {
+            int pieceBefore = before.getPieceAt(square);
+            int pieceAfter = after.getPieceAt(square);
+            if (pieceBefore == pieceAfter) {
+                continue;
+            }
+            if (pieceAfter == Position.EMPTY) {
+                if (Position.colorOf(pieceBefore) == mover) {
+                    from = square;
+                }
+            } else if (Position.colorOf(pieceAfter) == mover) {
+                to = square;
+            }
+        }
+
+        for (int moveIdx = 0; moveIdx < numMoves; ++moveIdx) {
+            int move = moves[moveIdx];
+            if (Moves.getFrom(move) == from && Moves.getTo(move) == to && Moves.isCapture(move)
+                    && (!Moves.isPromotion(move) || Moves.getPromotion(move) == Position.typeOf(after.getPieceAt(to)))) {
+                return StaticExchange.evaluate(before, move, gains);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sort nodes by decreasing key (keys[i] belongs to nodes[i] and is moved along with it), in place.
+     * The sort is stable, so nodes with equal keys stay in the order the game generated them.
+     * An insertion sort: a node has a few dozen children at most.
+     */
+    private static void sortByKey(DFSTreeNode[] nodes, int[] keys) {
+        for (int nodeIdx = 1; nodeIdx < nodes.length; ++nodeIdx) {
+            DFSTreeNode node = nodes[nodeIdx];
+            int key = keys[nodeIdx];
+            int insertIdx = nodeIdx;
+            while (insertIdx > 0 && keys[insertIdx - 1] < key) {
+                nodes[insertIdx] = nodes[insertIdx - 1];
+                keys[insertIdx] = keys[insertIdx - 1];
+                insertIdx -= 1;
+            }
+            nodes[insertIdx] = node;
+            keys[insertIdx] = key;
+        }
     }
 }
@@ -0,0 +1,242 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+
+
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Everything the evaluation wants to know about who attacks what, computed in a single pass over the pieces.
+ *
+ * For each side we keep, per square, how many of its pieces attack that square and a bitset (bit i = square i)
+ * of which squares those attackers stand on, plus the union of all attacked squares. The same pass also counts
+ * each side's pseudo-legal moves (exactly what MoveGenerator.generatePieceMoves would produce, castling excluded),
+ * so mobility, threats and king safety can all be read off one map instead of generating moves once per term.
+ *
+ * A map is reusable: compute overwrites it. of(Position) and of(Game) hand out a per-thread map, so the evaluation
+ * does not allocate per leaf; the returned map is only valid until the next call to of on the same thread.
+ */
+public class AttackMap
+    extends Object
+{
+
+	private static final ThreadLocal<AttackMap> THREAD_MAPS = ThreadLocal.withInitial(AttackMap::new);
+
+	private final int[][] attackerCounts;  // [color][square]
+	private final long[][] attackers;      // [color][square] -> bitset of the squares attacking it
+	private final long[] attackedSquares;  // [color] -> bitset of every square the side attacks
+	private final int[] mobility;          // [color]
+	private final Position position;       // what the map was last computed for
+
+	public AttackMap()
+	{
+		this.attackerCounts = new int[2][Position.NUM_SQUARES];
+		this.attackers = new long[2][Position.NUM_SQUARES];
+		this.attackedSquares = new long[2];
+		this.mobility = new int[2];
+		this.position = new Position();
+	}
+
+	/**
+	 * The calling thread's map, recomputed for position.
+	 */
+	public static AttackMap of(Position position)
+	{
+		AttackMap attackMap = AttackMap.THREAD_MAPS.get();
+		attackMap.compute(position);
+		return attackMap;
+	}
+
+	/**
+	 * The calling thread's map, recomputed for a library game. The game is read into the map's own Position, so the
+	 * map keeps no reference to it. Nothing is cached between calls: a Game can be changed in place, so the same
+	 * object is no proof of the same position. An evaluation asks for its node's map once and hands it to every term.
+	 */
+	public static AttackMap of(Game game)
+	{
+		AttackMap attackMap = AttackMap.THREAD_MAPS.get();
+		GameAdapter.toPosition(game, attackMap.position);
+		attackMap.computeAttacks();
+		return attackMap;
+	}
+
+	/**
+	 * @return the position the map was computed for (owned by the map, do not modify)
+	 */
+	public Position getPosition() { return this.position; }
+
+	public int getAttackerCount(int color, int square) { return this.attackerCounts[color][square]; }
+	public long getAttackers(int color, int square) { return this.attackers[color][square]; }
+	public long getAttackedSquares(int color) { return this.attackedSquares[color]; }
+	public boolean isAttacked(int color, int square) { return (this.attackedSquares[color] & (1L << square)) != 0; }
+	public int getMobility(int color) { return this.mobility[color]; }
+
+	/**
+	 * How many (attacker, target) pairs color has against enemy pieces, i.e. the number of captures color could make
+	 * if it were its turn (a pawn capturing onto the last rank counts once).
+	 */
+	public int getNumThreats(int color)
+	{
+		int numThreats = 0;
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			int piece = this.position.getPieceAt(square);
+			if(piece != Position.EMPTY && Position.colorOf(piece) != color)
+			{
+				numThreats += this.attackerCounts[color][square];
+			}
+		}
+		return numThreats;
+	}
+
+	/**
+	 * How many enemy attacks land on the squares around color's king.
+	 */
+	public int getKingZoneAttacks(int color)
+	{
+		int kingSquare = this.position.getKingSquare(color);
+		if(kingSquare == Position.NO_SQUARE)
+		{
+			return 0;
+		}
+		int numAttacks = 0;
+		for(int neighbor : MoveGenerator.KING_TARGETS[kingSquare])
+		{
+			numAttacks += this.attackerCounts[color ^ 1][neighbor];
+		}
+		return numAttacks;
+	}
+
+	public void compute(Position position)
+	{
+		this.position.copyFrom(position);
+		this.computeAttacks();
+	}
+
+	private void computeAttacks()
+	{
+		for(int color = Position.WHITE; color <= Position.BLACK; ++color)
+		{
+			Arrays.fill(this.attackerCounts[color], 0);
+			Arrays.fill(this.attackers[color], 0L);
+			this.attackedSquares[color] = 0L;
+			this.mobility[color] = 0;
+		}
+
+		Position position = this.position;
+		for(int from = 0; from < Position.NUM_SQUARES; ++from)
+		{
+			int piece = position.getPieceAt(from);
+			if(piece == Position.EMPTY)
+			{
+				continue;
+			}
+			int color = Position.colorOf(piece);
+			switch(Position.typeOf(piece))
+			{
+			case Position.PAWN:
+				this.addPawn(from, color);
+				break;
+			case Position.KNIGHT:
+				this.addSteps(from, color, MoveGenerator.KNIGHT_TARGETS[from]);
+				break;
+			case Position.KING:
+				this.addSteps(from, color, MoveGenerator.KING_TARGETS[from]);
+				break;
+			case Position.BISHOP:
+				this.addRays(from, color, MoveGenerator.FIRST_DIAGONAL_DIRECTION, MoveGenerator.NUM_DIRECTIONS);
+				break;
+			case Position.ROOK:
+				this.addRays(from, color, 0, MoveGenerator.FIRST_DIAGONAL_DIRECTION);
+				break;
+			case Position.QUEEN:
+				this.addRays(from, color, 0, MoveGenerator.NUM_DIRECTIONS);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void addAttack(int from, int to, int color)
+	{
+		this.attackerCounts[color][to] += 1;
+		this.attackers[color][to] |= 1L << from;
+		this.attackedSquares[color] |= 1L << to;
+	}
+
+	private void addSteps(int from, int color, int[] targets)
+	{
+		for(int to : targets)
+		{
+			this.addAttack(from, to, color);
+			int target = this.position.getPieceAt(to);
+			if(target == Position.EMPTY || Position.colorOf(target) != color)
+			{
+				this.mobility[color] += 1;
+			}
+		}
+	}
+
+	private void addRays(int from, int color, int firstDirection, int lastDirection)
+	{
+		for(int direction = firstDirection; direction < lastDirection; ++direction)
+		{
+			for(int to : MoveGenerator.RAYS[from][direction])
+			{
+				this.addAttack(from, to, color);
+				int target = this.position.getPieceAt(to);
+				if(target == Position.EMPTY)
+				{
+					this.mobility[color] += 1;
+				} else
+				{
+					if(Position.colorOf(target) != color)
+					{
+						this.mobility[color] += 1;
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	private void addPawn(int from, int color)
+	{
+		// promotions generate one move per promotion piece (queen, rook, bishop, knight)
+		int forward = color == Position.WHITE ? 8 : -8;
+		int startRank = color == Position.WHITE ? 1 : 6;
+		int promotionRank = color == Position.WHITE ? 7 : 0;
+		int movesPerTarget = Position.rankOf(from + forward) == promotionRank ? 4 : 1;
+
+		int to = from + forward;
+		if(this.position.isEmpty(to))
+		{
+			this.mobility[color] += movesPerTarget;
+			if(Position.rankOf(from) == startRank && this.position.isEmpty(to + forward))
+			{
+				this.mobility[color] += 1;
+			}
+		}
+
+		for(int target : MoveGenerator.PAWN_ATTACKS[color][from])
+		{
+			this.addAttack(from, target, color);
+			int piece = this.position.getPieceAt(target);
+			if(piece != Position.EMPTY && Position.colorOf(piece) != color)
+			{
+				this.mobility[color] += movesPerTarget;
+			} else if(target == this.position.getEnPassantSquare())
+			{
+				this.mobility[color] += 1;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * One Extended Position Description (EPD) record: the first four FEN fields followed by opcode/operand operations,
+ * e.g.
+ *
+ *   r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; id "ruy.1";
+ *
+ * Plain FEN lines (with move counters) are accepted too, so the same loader reads both kinds of files.
+ * The operations we care about are bm (best moves), am (moves to avoid) and id. Everything else is kept verbatim
+ * so a record can be written back out unchanged. A bm or am move that is not legal in the position rejects the record
+ * with an IllegalArgumentException, as Fen rejects a bad position, so a broken test suite fails to load instead of
+ * scoring as solved.
+ */
+public class Epd
+    extends Object
+{
+
+	public static final String BEST_MOVES = "bm";
+	public static final String AVOID_MOVES = "am";
+	public static final String ID = "id";
+	public static final String HALFMOVE_CLOCK = "hmvc";
+	public static final String FULLMOVE_NUMBER = "fmvn";
+
+	private final Position position;
+	private final Map<String, String> operations;
+	private int[] bestMoves;   // resolved from SAN on first use
+	private int[] avoidMoves;
+
+	public Epd(Position position, Map<String, String> operations)
+	{
+		this.position = position;
+		this.operations = operations;
+		this.bestMoves = null;
+		this.avoidMoves = null;
+	}
+
+	public Position getPosition() { return this.position; }
+	public Map<String, String> getOperations() { return this.operations; }
+
+	public String getOperation(String opcode) { return this.getOperations().get(opcode); }
+	public String getId() { return this.getOperation(Epd.ID); }
+
+	public int[] getBestMoves()
+	{
+		if(this.bestMoves == null)
+		{
+			this.bestMoves = this.getMoves(Epd.BEST_MOVES);
+		}
+		return this.bestMoves;
+	}
+
+	public int[] getAvoidMoves()
+	{
+		if(this.avoidMoves == null)
+		{
+			this.avoidMoves = this.getMoves(Epd.AVOID_MOVES);
+		}
+		return this.avoidMoves;
+	}
+
+	/**
+	 * Does the move satisfy this record? It has to be one of the bm moves (if any) and none of the am moves.
+	 * Records without either operation say nothing about moves, so every move passes.
+	 */
+	public boolean isSolvedBy(int move)
+	{
+		int[] bestMoves = this.getBestMoves();
+		if(bestMoves.length > 0 && !Epd.contains(bestMoves, move))
+		{
+			return false;
+		}
+		return !Epd.contains(this.getAvoidMoves(), move);
+	}
+
+	public boolean hasMoveOperations()
+	{
+		return this.getOperations().containsKey(Epd.BEST_MOVES) || this.getOperations().containsKey(Epd.AVOID_MOVES);
+	}
+
+	/**
+	 * The moves of a bm or am operation. Every SAN has to be a legal move of the position: one that is not would
+	 * otherwise just drop out, and a bm left with no moves would accept every move.
+	 * @throws IllegalArgumentException if the operation is empty or one of its moves is not legal here
+	 */
+	private int[] getMoves(String opcode)
+	{
+		String operand = this.getOperation(opcode);
+		if(operand == null)
+		{
+			return new int[0];
+		}
+		if(operand.trim().isEmpty())
+		{
+			throw new IllegalArgumentException("Epd.getMoves [ERROR]: no moves in " + opcode + " of epd=" + this);
+		}
+		String[] sans = operand.trim().split("\\s+");
+		int[] moves = new int[sans.length];
+		for(int sanIdx = 0; sanIdx < sans.length; ++sanIdx)
+		{
+			moves[sanIdx] = San.parse(this.getPosition(), sans[sanIdx]);
+			if(moves[sanIdx] == Moves.NO_MOVE)
+			{
+				throw new IllegalArgumentException("Epd.getMoves [ERROR]: " + sans[sanIdx] + " in " + opcode
+                    + " is not a legal move in epd=" + this);
+			}
+		}
+		return moves;
+	}
+
+	private static boolean contains(int[] moves, int move)
+	{
+		for(int candidate : moves)
+		{
+			if(candidate == move)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static Epd parse(String line)
+	{
+		Position position = new Position();
+		int idx = Fen.parse(line, 0, position);
+
+		// operations: opcode operand* ; where an operand may be a quoted string containing spaces or semicolons
+		Map<String, String> operations = new LinkedHashMap<String, String>();
+		int length = line.length();
+		idx = Fen.skipWhitespace(line, idx);
+		while(idx < length)
+		{
+			int opcodeStart = idx;
+			while(idx < length && !Character.isWhitespace(line.charAt(idx)) && line.charAt(idx) != ';')
+			{
+				idx += 1;
+			}
+			String opcode = line.substring(opcodeStart, idx);
+
+			StringBuilder operand = new StringBuilder();
+			boolean isQuoted = false;
+			for(; idx < length && (isQuoted || line.charAt(idx) != ';'); ++idx)
+			{
+				char c = line.charAt(idx);
+				if(c == '"')
+				{
+					isQuoted = !isQuoted;
+				} else
+				{
+					operand.append(c);
+				}
+			}
+			idx = Fen.skipWhitespace(line, idx + 1); // past the ';'
+
+			if(!opcode.isEmpty())
+			{
+				operations.put(opcode, operand.toString().trim());
+			}
+		}
+
+		if(operations.containsKey(Epd.HALFMOVE_CLOCK))
+		{
+			position.setHalfmoveClock(Integer.parseInt(operations.get(Epd.HALFMOVE_CLOCK)));
+		}
+		if(operations.containsKey(Epd.FULLMOVE_NUMBER))
+		{
+			position.setFullmoveNumber(Integer.parseInt(operations.get(Epd.FULLMOVE_NUMBER)));
+		}
+		Epd record = new Epd(position, operations);
+		record.getBestMoves(); // a move that does not parse fails the record now, not when it is scored
+		record.getAvoidMoves();
+		return record;
+	}
+
+	/**
+	 * Load every record of an EPD (or FEN-per-line) file. Empty lines and lines starting with '#' are skipped.
+	 */
+	public static List<Epd> load(BufferedReader reader)
+        throws IOException
+	{
+		List<Epd> records = new ArrayList<Epd>();
+		String line = null;
+		while((line = reader.readLine()) != null)
+		{
+			line = line.trim();
+			if(!line.isEmpty() && !line.startsWith("#"))
+			{
+				records.add(Epd.parse(line));
+			}
+		}
+		return records;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder(128);
+		Fen.appendPosition(this.getPosition(), builder);
+		for(Map.Entry<String, String> operation : this.getOperations().entrySet())
+		{
+			builder.append(' ').append(operation.getKey());
+			if(!operation.getValue().isEmpty())
+			{
+				boolean needsQuotes = operation.getValue().indexOf(';') >= 0 || operation.getKey().equals(Epd.ID);
+				builder.append(' ');
+				if(needsQuotes) { builder.append('"'); }
+				builder.append(operation.getValue());
+				if(needsQuotes) { builder.append('"'); }
+			}
+			builder.append(';');
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,333 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation (FEN).
+ *
+ * Parsing scans the characters in place and writes straight into a Position, so parsing into a reused Position
+ * allocates nothing. The move counters are optional so four-field records (as in EPD files) parse too.
+ *
+ * Records the move generator cannot work with are rejected with an IllegalArgumentException: ranks that are not
+ * exactly eight squares wide, anything but one king per side, pawns on the first or eighth rank, a side to move other
+ * than w or b, unknown castling characters, a castling right whose king or rook is not on its starting square, and an
+ * en passant square that is not right behind a pawn of the side that just moved, with both it and the square the pawn
+ * came from empty (the third rank with black to move, the sixth with white).
+ */
+public class Fen
+    extends Object
+{
+
+	public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final String PIECE_CHARS = " pnbrqk";
+
+	public static Position parse(String fen)
+	{
+		Position position = new Position();
+		Fen.parse(fen, 0, position);
+		return position;
+	}
+
+	/**
+	 * Parse a FEN record starting at offset into position (which is cleared first).
+	 * @return the index just past the last field consumed, so callers (e.g. Epd) can keep reading after it
+	 */
+	public static int parse(CharSequence fen, int offset, Position position)
+	{
+		position.clear();
+		int length = fen.length();
+		int idx = Fen.skipWhitespace(fen, offset);
+
+		// piece placement, rank 8 first
+		int rank = Position.BOARD_SIZE - 1;
+		int file = 0;
+		int numWhiteKings = 0;
+		int numBlackKings = 0;
+		for(; idx < length && !Character.isWhitespace(fen.charAt(idx)); ++idx)
+		{
+			char c = fen.charAt(idx);
+			if(c == '/')
+			{
+				if(file != Position.BOARD_SIZE)
+				{
+					throw Fen.error("rank " + (rank + 1) + " is not 8 squares wide", fen);
+				}
+				rank -= 1;
+				file = 0;
+			} else if(c >= '1' && c <= '8')
+			{
+				file += c - '0';
+				if(file > Position.BOARD_SIZE)
+				{
+					throw Fen.error("rank " + (rank + 1) + " is more than 8 squares wide", fen);
+				}
+			} else
+			{
+				int type = PIECE_CHARS.indexOf(Character.toLowerCase(c));
+				if(type <= 0 || file >= Position.BOARD_SIZE || rank < 0)
+				{
+					throw Fen.error("bad piece placement", fen);
+				}
+				if(type == Position.PAWN && (rank == 0 || rank == Position.BOARD_SIZE - 1))
+				{
+					throw Fen.error("pawn on rank " + (rank + 1), fen);
+				}
+				int color = Character.isUpperCase(c) ? Position.WHITE : Position.BLACK;
+				if(type == Position.KING)
+				{
+					numWhiteKings += color == Position.WHITE ? 1 : 0;
+					numBlackKings += color == Position.BLACK ? 1 : 0;
+				}
+				position.setPieceAt(Position.square(file, rank), Position.makePiece(color, type));
+				file += 1;
+			}
+		}
+		if(rank != 0)
+		{
+			throw Fen.error("expected 8 ranks", fen);
+		}
+		if(file != Position.BOARD_SIZE)
+		{
+			throw Fen.error("rank 1 is not 8 squares wide", fen);
+		}
+		if(numWhiteKings != 1 || numBlackKings != 1)
+		{
+			throw Fen.error("expected one king per side", fen);
+		}
+
+		// side to move
+		idx = Fen.skipWhitespace(fen, idx);
+		if(idx >= length)
+		{
+			throw Fen.error("missing side to move", fen);
+		}
+		char sideToMove = fen.charAt(idx);
+		if((sideToMove != 'w' && sideToMove != 'b') || !Fen.isTokenEnd(fen, idx + 1))
+		{
+			throw Fen.error("bad side to move", fen);
+		}
+		position.setSideToMove(sideToMove == 'b' ? Position.BLACK : Position.WHITE);
+		idx = Fen.skipToken(fen, idx);
+
+		// castling rights
+		idx = Fen.skipWhitespace(fen, idx);
+		if(idx >= length)
+		{
+			throw Fen.error("missing castling rights", fen);
+		}
+		int castlingRights = 0;
+		for(; idx < length && !Character.isWhitespace(fen.charAt(idx)); ++idx)
+		{
+			switch(fen.charAt(idx))
+			{
+			case 'K': castlingRights |= Position.WHITE_KINGSIDE; break;
+			case 'Q': castlingRights |= Position.WHITE_QUEENSIDE; break;
+			case 'k': castlingRights |= Position.BLACK_KINGSIDE; break;
+			case 'q': castlingRights |= Position.BLACK_QUEENSIDE; break;
+			case '-': break;
+			default: throw Fen.error("bad castling rights", fen);
+			}
+		}
+		if(!Fen.hasCastlingPieces(position, castlingRights))
+		{
+			throw Fen.error("castling right without its king and rook on their starting squares", fen);
+		}
+		position.setCastlingRights(castlingRights);
+
+		// en passant target
+		idx = Fen.skipWhitespace(fen, idx);
+		if(idx >= length)
+		{
+			throw Fen.error("missing en passant square", fen);
+		}
+		if(fen.charAt(idx) != '-')
+		{
+			char enPassantRank = position.getSideToMove() == Position.WHITE ? '6' : '3';
+			if(idx + 1 >= length || fen.charAt(idx) < 'a' || fen.charAt(idx) > 'h' || fen.charAt(idx + 1) != enPassantRank
+                || !Fen.isTokenEnd(fen, idx + 2))
+			{
+				throw Fen.error("bad en passant square", fen);
+			}
+			int enPassantSquare = Position.square(fen.charAt(idx) - 'a', fen.charAt(idx + 1) - '1');
+			if(!Fen.isEnPassantPossible(position, enPassantSquare))
+			{
+				throw Fen.error("en passant square not behind a pawn that just moved two squares", fen);
+			}
+			position.setEnPassantSquare(enPassantSquare);
+		} else if(!Fen.isTokenEnd(fen, idx + 1))
+		{
+			throw Fen.error("bad en passant square", fen);
+		}
+		idx = Fen.skipToken(fen, idx);
+
+		// optional move counters: only consume them if both are there and numeric
+		int halfmoveStart = Fen.skipWhitespace(fen, idx);
+		int halfmoveEnd = Fen.skipDigits(fen, halfmoveStart);
+		int fullmoveStart = Fen.skipWhitespace(fen, halfmoveEnd);
+		int fullmoveEnd = Fen.skipDigits(fen, fullmoveStart);
+		if(halfmoveEnd > halfmoveStart && Fen.isTokenEnd(fen, halfmoveEnd)
+            && fullmoveEnd > fullmoveStart && Fen.isTokenEnd(fen, fullmoveEnd))
+		{
+			position.setHalfmoveClock(Fen.parseInt(fen, halfmoveStart, halfmoveEnd));
+			position.setFullmoveNumber(Fen.parseInt(fen, fullmoveStart, fullmoveEnd));
+			idx = fullmoveEnd;
+		}
+		return idx;
+	}
+
+	/**
+	 * Are the king and rook of every castling right on their starting squares?
+	 */
+	private static boolean hasCastlingPieces(Position position, int castlingRights)
+	{
+		for(int right = Position.WHITE_KINGSIDE; right <= Position.BLACK_QUEENSIDE; right <<= 1)
+		{
+			if((castlingRights & right) == 0)
+			{
+				continue;
+			}
+			int color = right == Position.WHITE_KINGSIDE || right == Position.WHITE_QUEENSIDE ? Position.WHITE : Position.BLACK;
+			int rank = color == Position.WHITE ? 0 : Position.BOARD_SIZE - 1;
+			int rookFile = right == Position.WHITE_KINGSIDE || right == Position.BLACK_KINGSIDE ? Position.BOARD_SIZE - 1 : 0;
+			if(position.getPieceAt(Position.square(4, rank)) != Position.makePiece(color, Position.KING)
+                || position.getPieceAt(Position.square(rookFile, rank)) != Position.makePiece(color, Position.ROOK))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Could the side that just moved have pushed a pawn two squares over enPassantSquare? Its pawn must be right in
+	 * front of the square, and the square and the one the pawn came from must be empty.
+	 */
+	private static boolean isEnPassantPossible(Position position, int enPassantSquare)
+	{
+		int moverColor = position.getSideToMove() ^ 1;
+		int forward = moverColor == Position.WHITE ? Position.BOARD_SIZE : -Position.BOARD_SIZE;
+		return position.getPieceAt(enPassantSquare + forward) == Position.makePiece(moverColor, Position.PAWN)
+            && position.isEmpty(enPassantSquare)
+            && position.isEmpty(enPassantSquare - forward);
+	}
+
+	public static String toFen(Position position)
+	{
+		StringBuilder builder = new StringBuilder(90);
+		Fen.appendPosition(position, builder);
+		builder.append(' ').append(position.getHalfmoveClock()).append(' ').append(position.getFullmoveNumber());
+		return builder.toString();
+	}
+
+	/**
+	 * The first four FEN fields (placement, side to move, castling, en passant), which is also the start of an EPD record.
+	 */
+	public static void appendPosition(Position position, StringBuilder builder)
+	{
+		for(int rank = Position.BOARD_SIZE - 1; rank >= 0; --rank)
+		{
+			int numEmpty = 0;
+			for(int file = 0; file < Position.BOARD_SIZE; ++file)
+			{
+				int piece = position.getPieceAt(Position.square(file, rank));
+				if(piece == Position.EMPTY)
+				{
+					numEmpty += 1;
+					continue;
+				}
+				if(numEmpty > 0)
+				{
+					builder.append((char)('0' + numEmpty));
+					numEmpty = 0;
+				}
+				char c = PIECE_CHARS.charAt(Position.typeOf(piece));
+				builder.append(Position.colorOf(piece) == Position.WHITE ? Character.toUpperCase(c) : c);
+			}
+			if(numEmpty > 0)
+			{
+				builder.append((char)('0' + numEmpty));
+			}
+			if(rank > 0)
+			{
+				builder.append('/');
+			}
+		}
+
+		builder.append(position.getSideToMove() == Position.WHITE ? " w " : " b ");
+
+		int castlingRights = position.getCastlingRights();
+		if(castlingRights == 0)
+		{
+			builder.append('-');
+		} else
+		{
+			if((castlingRights & Position.WHITE_KINGSIDE) != 0) { builder.append('K'); }
+			if((castlingRights & Position.WHITE_QUEENSIDE) != 0) { builder.append('Q'); }
+			if((castlingRights & Position.BLACK_KINGSIDE) != 0) { builder.append('k'); }
+			if((castlingRights & Position.BLACK_QUEENSIDE) != 0) { builder.append('q'); }
+		}
+
+		builder.append(' ');
+		if(position.getEnPassantSquare() == Position.NO_SQUARE)
+		{
+			builder.append('-');
+		} else
+		{
+			builder.append(Moves.squareToString(position.getEnPassantSquare()));
+		}
+	}
+
+	static int skipWhitespace(CharSequence s, int idx)
+	{
+		while(idx < s.length() && Character.isWhitespace(s.charAt(idx)))
+		{
+			idx += 1;
+		}
+		return idx;
+	}
+
+	private static int skipToken(CharSequence s, int idx)
+	{
+		while(idx < s.length() && !Character.isWhitespace(s.charAt(idx)))
+		{
+			idx += 1;
+		}
+		return idx;
+	}
+
+	private static int skipDigits(CharSequence s, int idx)
+	{
+		while(idx < s.length() && s.charAt(idx) >= '0' && s.charAt(idx) <= '9')
+		{
+			idx += 1;
+		}
+		return idx;
+	}
+
+	private static boolean isTokenEnd(CharSequence s, int idx)
+	{
+		return idx >= s.length() || Character.isWhitespace(s.charAt(idx));
+	}
+
+	private static int parseInt(CharSequence s, int start, int end)
+	{
+		int value = 0;
+		for(int idx = start; idx < end; ++idx)
+		{
+			value = 10 * value + (s.charAt(idx) - '0');
+		}
+		return value;
+	}
+
+	private static IllegalArgumentException error(String message, CharSequence fen)
+	{
+		return new IllegalArgumentException("Fen.parse [ERROR]: " + message + " in fen=" + fen);
+	}
+
+}
@@ -0,0 +1,149 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.utils.Coordinate;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Read-only bridge from the chess library's Game to a standalone Position, so a live game can be exported as FEN
+ * or handed to anything that works on Positions.
+ *
+ * The library addresses squares as Coordinate(x, y) where x is the file and y is the row as drawn on the SEPIA map,
+ * with white's back rank on the last row. Whether coordinates start at 0 or 1 is read off the board once.
+ * Game does not expose castling rights or the en passant target, so castling rights are granted whenever the king
+ * and the rook still stand on their home squares, and the en passant square is left empty.
+ */
+public class GameAdapter
+    extends Object
+{
+
+	private static int coordinateOrigin = -1; // 0 or 1 once known
+
+	private static int getCoordinateOrigin(Game game)
+	{
+		if(GameAdapter.coordinateOrigin < 0)
+		{
+			GameAdapter.coordinateOrigin = game.getBoard().isInbounds(new Coordinate(0, 0)) ? 0 : 1;
+		}
+		return GameAdapter.coordinateOrigin;
+	}
+
+	public static int toSquare(Game game, Coordinate coordinate)
+	{
+		int origin = GameAdapter.getCoordinateOrigin(game);
+		return Position.square(coordinate.getXPosition() - origin,
+            Position.BOARD_SIZE - 1 - (coordinate.getYPosition() - origin));
+	}
+
+	public static Coordinate toCoordinate(Game game, int square)
+	{
+		int origin = GameAdapter.getCoordinateOrigin(game);
+		return new Coordinate(Position.fileOf(square) + origin,
+            Position.BOARD_SIZE - 1 - Position.rankOf(square) + origin);
+	}
+
+	public static int toPieceType(PieceType pieceType)
+	{
+		switch(pieceType)
+		{
+		case PAWN: return Position.PAWN;
+		case KNIGHT: return Position.KNIGHT;
+		case BISHOP: return Position.BISHOP;
+		case ROOK: return Position.ROOK;
+		case QUEEN: return Position.QUEEN;
+		case KING: return Position.KING;
+		default: return Position.EMPTY;
+		}
+	}
+
+	public static int getColor(Game game, Player player)
+	{
+		return player.equals(game.getPlayer(PlayerType.WHITE)) ? Position.WHITE : Position.BLACK;
+	}
+
+	public static Position toPosition(Game game)
+	{
+		Position position = new Position();
+		GameAdapter.toPosition(game, position);
+		return position;
+	}
+
+	/**
+	 * Overwrite position with the contents of game.
+	 */
+	public static void toPosition(Game game, Position position)
+	{
+		position.clear();
+		Player white = game.getPlayer(PlayerType.WHITE);
+		Player black = game.getPlayer(PlayerType.BLACK);
+		GameAdapter.addPieces(game, white, Position.WHITE, position);
+		GameAdapter.addPieces(game, black, Position.BLACK, position);
+		position.setSideToMove(game.getCurrentPlayer().equals(white) ? Position.WHITE : Position.BLACK);
+
+		int castlingRights = 0;
+		if(GameAdapter.isOnSquare(position, Position.WHITE, Position.KING, 4, 0))
+		{
+			if(GameAdapter.isOnSquare(position, Position.WHITE, Position.ROOK, 7, 0)) { castlingRights |= Position.WHITE_KINGSIDE; }
+			if(GameAdapter.isOnSquare(position, Position.WHITE, Position.ROOK, 0, 0)) { castlingRights |= Position.WHITE_QUEENSIDE; }
+		}
+		if(GameAdapter.isOnSquare(position, Position.BLACK, Position.KING, 4, 7))
+		{
+			if(GameAdapter.isOnSquare(position, Position.BLACK, Position.ROOK, 7, 7)) { castlingRights |= Position.BLACK_KINGSIDE; }
+			if(GameAdapter.isOnSquare(position, Position.BLACK, Position.ROOK, 0, 7)) { castlingRights |= Position.BLACK_QUEENSIDE; }
+		}
+		position.setCastlingRights(castlingRights);
+	}
+
+	/**
+	 * Recover which move leads from a position to a library Game, e.g. to turn the child a search picked
+	 * back into a move we can write down.
+	 * @param before the position before the move
+	 * @param after the library's game after the move
+	 * @return the legal move of before that produces after's board, or Moves.NO_MOVE if there is none
+	 */
+	public static int findMove(Position before, Game after)
+	{
+		return GameAdapter.findMove(before, GameAdapter.toPosition(after));
+	}
+
+	public static int findMove(Position before, Position after)
+	{
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(before, moves);
+		Position scratch = new Position();
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			scratch.copyFrom(before);
+			scratch.applyMove(moves[moveIdx]);
+			if(scratch.hasSameBoard(after))
+			{
+				return moves[moveIdx];
+			}
+		}
+		return Moves.NO_MOVE;
+	}
+
+	private static void addPieces(Game game, Player player, int color, Position position)
+	{
+		for(Piece piece : game.getBoard().getPieces(player))
+		{
+			position.setPieceAt(GameAdapter.toSquare(game, game.getCurrentPosition(piece)),
+                Position.makePiece(color, GameAdapter.toPieceType(piece.getType())));
+		}
+	}
+
+	private static boolean isOnSquare(Position position, int color, int type, int file, int rank)
+	{
+		return position.getPieceAt(Position.square(file, rank)) == Position.makePiece(color, type);
+	}
+
+}
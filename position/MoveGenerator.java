@@ -0,0 +1,336 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Move generation for Position. Targets for knights and kings and the rays for sliders are precomputed per square,
+ * so generation is table lookups plus a walk along each ray until it hits a piece.
+ *
+ * Moves are written into a caller-supplied int array (see Moves for the encoding). Generated moves are pseudo-legal:
+ * the caller still has to check that the mover's king is not left in check.
+ */
+public class MoveGenerator
+    extends Object
+{
+
+	public static final int MAX_MOVES = 256;
+
+	// ray directions as (file delta, rank delta). The first four are orthogonal, the last four diagonal.
+	private static final int[] DIRECTION_FILE_DELTAS = new int[] {0, 0, 1, -1, 1, 1, -1, -1};
+	private static final int[] DIRECTION_RANK_DELTAS = new int[] {1, -1, 0, 0, 1, -1, 1, -1};
+	public static final int NUM_DIRECTIONS = 8;
+	public static final int FIRST_DIAGONAL_DIRECTION = 4;
+
+	private static final int[] KNIGHT_FILE_DELTAS = new int[] {1, 2, 2, 1, -1, -2, -2, -1};
+	private static final int[] KNIGHT_RANK_DELTAS = new int[] {2, 1, -1, -2, -2, -1, 1, 2};
+
+	public static final int[][] KNIGHT_TARGETS = new int[Position.NUM_SQUARES][];
+	public static final int[][] KING_TARGETS = new int[Position.NUM_SQUARES][];
+	public static final int[][][] RAYS = new int[Position.NUM_SQUARES][NUM_DIRECTIONS][];
+	public static final int[][][] PAWN_ATTACKS = new int[2][Position.NUM_SQUARES][]; // squares a pawn of [color] on [square] attacks
+
+	static
+	{
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			int file = Position.fileOf(square);
+			int rank = Position.rankOf(square);
+
+			KNIGHT_TARGETS[square] = MoveGenerator.offsets(file, rank, KNIGHT_FILE_DELTAS, KNIGHT_RANK_DELTAS);
+			KING_TARGETS[square] = MoveGenerator.offsets(file, rank, DIRECTION_FILE_DELTAS, DIRECTION_RANK_DELTAS);
+			PAWN_ATTACKS[Position.WHITE][square] = MoveGenerator.offsets(file, rank, new int[] {-1, 1}, new int[] {1, 1});
+			PAWN_ATTACKS[Position.BLACK][square] = MoveGenerator.offsets(file, rank, new int[] {-1, 1}, new int[] {-1, -1});
+
+			for(int direction = 0; direction < NUM_DIRECTIONS; ++direction)
+			{
+				int length = 0;
+				int[] ray = new int[Position.BOARD_SIZE];
+				int f = file + DIRECTION_FILE_DELTAS[direction];
+				int r = rank + DIRECTION_RANK_DELTAS[direction];
+				while(MoveGenerator.isOnBoard(f, r))
+				{
+					ray[length++] = Position.square(f, r);
+					f += DIRECTION_FILE_DELTAS[direction];
+					r += DIRECTION_RANK_DELTAS[direction];
+				}
+				RAYS[square][direction] = Arrays.copyOf(ray, length);
+			}
+		}
+	}
+
+	private static boolean isOnBoard(int file, int rank)
+	{
+		return file >= 0 && file < Position.BOARD_SIZE && rank >= 0 && rank < Position.BOARD_SIZE;
+	}
+
+	private static int[] offsets(int file, int rank, int[] fileDeltas, int[] rankDeltas)
+	{
+		int length = 0;
+		int[] targets = new int[fileDeltas.length];
+		for(int i = 0; i < fileDeltas.length; ++i)
+		{
+			if(MoveGenerator.isOnBoard(file + fileDeltas[i], rank + rankDeltas[i]))
+			{
+				targets[length++] = Position.square(file + fileDeltas[i], rank + rankDeltas[i]);
+			}
+		}
+		return Arrays.copyOf(targets, length);
+	}
+
+	/**
+	 * Is the square attacked by any piece of the given color?
+	 */
+	public static boolean isSquareAttacked(Position position, int square, int byColor)
+	{
+		// a pawn of byColor attacks this square iff a pawn of the other color here would attack it
+		int pawn = Position.makePiece(byColor, Position.PAWN);
+		for(int from : PAWN_ATTACKS[byColor ^ 1][square])
+		{
+			if(position.getPieceAt(from) == pawn)
+			{
+				return true;
+			}
+		}
+
+		int knight = Position.makePiece(byColor, Position.KNIGHT);
+		for(int from : KNIGHT_TARGETS[square])
+		{
+			if(position.getPieceAt(from) == knight)
+			{
+				return true;
+			}
+		}
+
+		int king = Position.makePiece(byColor, Position.KING);
+		for(int from : KING_TARGETS[square])
+		{
+			if(position.getPieceAt(from) == king)
+			{
+				return true;
+			}
+		}
+
+		int queen = Position.makePiece(byColor, Position.QUEEN);
+		for(int direction = 0; direction < NUM_DIRECTIONS; ++direction)
+		{
+			int slider = Position.makePiece(byColor, direction < FIRST_DIAGONAL_DIRECTION ? Position.ROOK : Position.BISHOP);
+			for(int from : RAYS[square][direction])
+			{
+				int piece = position.getPieceAt(from);
+				if(piece != Position.EMPTY)
+				{
+					if(piece == slider || piece == queen)
+					{
+						return true;
+					}
+					break;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Generate all pseudo-legal moves for the side to move.
+	 * @param position the position to generate moves for
+	 * @param moves where to write the moves
+	 * @param numMoves index of the first free slot in moves
+	 * @return index of the first free slot after generation
+	 */
+	public static int generateMoves(Position position, int[] moves, int numMoves)
+	{
+		int color = position.getSideToMove();
+		for(int from = 0; from < Position.NUM_SQUARES; ++from)
+		{
+			int piece = position.getPieceAt(from);
+			if(piece != Position.EMPTY && Position.colorOf(piece) == color)
+			{
+				numMoves = MoveGenerator.generatePieceMoves(position, from, moves, numMoves);
+			}
+		}
+		return MoveGenerator.generateCastlingMoves(position, color, moves, numMoves);
+	}
+
+	/**
+	 * Generate the pseudo-legal moves of the piece on a single square (castling excluded).
+	 */
+	public static int generatePieceMoves(Position position, int from, int[] moves, int numMoves)
+	{
+		int piece = position.getPieceAt(from);
+		int color = Position.colorOf(piece);
+		switch(Position.typeOf(piece))
+		{
+		case Position.PAWN:
+			return MoveGenerator.generatePawnMoves(position, from, color, moves, numMoves);
+		case Position.KNIGHT:
+			return MoveGenerator.generateStepMoves(position, from, color, KNIGHT_TARGETS[from], moves, numMoves);
+		case Position.KING:
+			return MoveGenerator.generateStepMoves(position, from, color, KING_TARGETS[from], moves, numMoves);
+		case Position.BISHOP:
+			return MoveGenerator.generateSliderMoves(position, from, color, FIRST_DIAGONAL_DIRECTION, NUM_DIRECTIONS, moves, numMoves);
+		case Position.ROOK:
+			return MoveGenerator.generateSliderMoves(position, from, color, 0, FIRST_DIAGONAL_DIRECTION, moves, numMoves);
+		case Position.QUEEN:
+			return MoveGenerator.generateSliderMoves(position, from, color, 0, NUM_DIRECTIONS, moves, numMoves);
+		default:
+			return numMoves;
+		}
+	}
+
+	private static int generateStepMoves(Position position, int from, int color, int[] targets, int[] moves, int numMoves)
+	{
+		int piece = position.getPieceAt(from);
+		for(int to : targets)
+		{
+			int target = position.getPieceAt(to);
+			if(target == Position.EMPTY)
+			{
+				moves[numMoves++] = Moves.encode(from, to, piece, Position.EMPTY, Position.EMPTY, 0);
+			} else if(Position.colorOf(target) != color)
+			{
+				moves[numMoves++] = Moves.encode(from, to, piece, target, Position.EMPTY, Moves.CAPTURE);
+			}
+		}
+		return numMoves;
+	}
+
+	private static int generateSliderMoves(Position position, int from, int color, int firstDirection, int lastDirection,
+                                           int[] moves, int numMoves)
+	{
+		int piece = position.getPieceAt(from);
+		for(int direction = firstDirection; direction < lastDirection; ++direction)
+		{
+			for(int to : RAYS[from][direction])
+			{
+				int target = position.getPieceAt(to);
+				if(target == Position.EMPTY)
+				{
+					moves[numMoves++] = Moves.encode(from, to, piece, Position.EMPTY, Position.EMPTY, 0);
+				} else
+				{
+					if(Position.colorOf(target) != color)
+					{
+						moves[numMoves++] = Moves.encode(from, to, piece, target, Position.EMPTY, Moves.CAPTURE);
+					}
+					break;
+				}
+			}
+		}
+		return numMoves;
+	}
+
+	private static int generatePawnMoves(Position position, int from, int color, int[] moves, int numMoves)
+	{
+		int forward = color == Position.WHITE ? 8 : -8;
+		int startRank = color == Position.WHITE ? 1 : 6;
+		int promotionRank = color == Position.WHITE ? 7 : 0;
+		int pawn = Position.makePiece(color, Position.PAWN);
+
+		int to = from + forward;
+		if(position.isEmpty(to))
+		{
+			numMoves = MoveGenerator.addPawnMove(from, to, pawn, Position.EMPTY, 0, Position.rankOf(to) == promotionRank,
+                moves, numMoves);
+			if(Position.rankOf(from) == startRank && position.isEmpty(to + forward))
+			{
+				moves[numMoves++] = Moves.encode(from, to + forward, pawn, Position.EMPTY, Position.EMPTY, Moves.DOUBLE_PAWN_PUSH);
+			}
+		}
+
+		for(int target : PAWN_ATTACKS[color][from])
+		{
+			int piece = position.getPieceAt(target);
+			if(piece != Position.EMPTY && Position.colorOf(piece) != color)
+			{
+				numMoves = MoveGenerator.addPawnMove(from, target, pawn, piece, Moves.CAPTURE,
+                    Position.rankOf(target) == promotionRank, moves, numMoves);
+			} else if(target == position.getEnPassantSquare())
+			{
+				moves[numMoves++] = Moves.encode(from, target, pawn, Position.makePiece(color ^ 1, Position.PAWN), Position.EMPTY,
+                    Moves.CAPTURE | Moves.EN_PASSANT);
+			}
+		}
+		return numMoves;
+	}
+
+	private static int addPawnMove(int from, int to, int pawn, int captured, int flags, boolean isPromotion, int[] moves,
+                                   int numMoves)
+	{
+		if(isPromotion)
+		{
+			for(int promotion = Position.QUEEN; promotion >= Position.KNIGHT; --promotion)
+			{
+				moves[numMoves++] = Moves.encode(from, to, pawn, captured, promotion, flags);
+			}
+		} else
+		{
+			moves[numMoves++] = Moves.encode(from, to, pawn, captured, Position.EMPTY, flags);
+		}
+		return numMoves;
+	}
+
+	private static int generateCastlingMoves(Position position, int color, int[] moves, int numMoves)
+	{
+		int rights = position.getCastlingRights();
+		int kingSide = color == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+		int queenSide = color == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+		if((rights & (kingSide | queenSide)) == 0)
+		{
+			return numMoves;
+		}
+
+		int kingSquare = Position.square(4, color == Position.WHITE ? 0 : 7);
+		if(position.getPieceAt(kingSquare) != Position.makePiece(color, Position.KING)
+            || MoveGenerator.isSquareAttacked(position, kingSquare, color ^ 1))
+		{
+			return numMoves;
+		}
+
+		int rook = Position.makePiece(color, Position.ROOK);
+		if((rights & kingSide) != 0 && position.getPieceAt(kingSquare + 3) == rook
+            && position.isEmpty(kingSquare + 1) && position.isEmpty(kingSquare + 2)
+            && !MoveGenerator.isSquareAttacked(position, kingSquare + 1, color ^ 1)
+            && !MoveGenerator.isSquareAttacked(position, kingSquare + 2, color ^ 1))
+		{
+			moves[numMoves++] = Moves.encode(kingSquare, kingSquare + 2, Position.makePiece(color, Position.KING), Position.EMPTY,
+                Position.EMPTY, Moves.CASTLE);
+		}
+		if((rights & queenSide) != 0 && position.getPieceAt(kingSquare - 4) == rook
+            && position.isEmpty(kingSquare - 1) && position.isEmpty(kingSquare - 2) && position.isEmpty(kingSquare - 3)
+            && !MoveGenerator.isSquareAttacked(position, kingSquare - 1, color ^ 1)
+            && !MoveGenerator.isSquareAttacked(position, kingSquare - 2, color ^ 1))
+		{
+			moves[numMoves++] = Moves.encode(kingSquare, kingSquare - 2, Position.makePiece(color, Position.KING), Position.EMPTY,
+                Position.EMPTY, Moves.CASTLE);
+		}
+		return numMoves;
+	}
+
+	/**
+	 * Generate only the moves that do not leave the mover in check.
+	 * Not meant for the search hot path (it copies the position per move), but handy at the root and in tools.
+	 */
+	public static int generateLegalMoves(Position position, int[] moves)
+	{
+		int numPseudoLegalMoves = MoveGenerator.generateMoves(position, moves, 0);
+		int numLegalMoves = 0;
+		Position scratch = new Position();
+		for(int moveIdx = 0; moveIdx < numPseudoLegalMoves; ++moveIdx)
+		{
+			scratch.copyFrom(position);
+			scratch.applyMove(moves[moveIdx]);
+			if(!scratch.isInCheck(position.getSideToMove()))
+			{
+				moves[numLegalMoves++] = moves[moveIdx];
+			}
+		}
+		return numLegalMoves;
+	}
+
+}
@@ -0,0 +1,77 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Moves are packed into a single int so move lists are plain int arrays:
+ *
+ *   bits  0-5   from square
+ *   bits  6-11  to square
+ *   bits 12-14  promotion piece type (EMPTY if not a promotion)
+ *   bits 15-18  flags (capture, en passant, castle, double pawn push)
+ *   bits 19-22  moving piece (piece code, see Position)
+ *   bits 23-26  captured piece (EMPTY if not a capture, the pawn for en passant)
+ *
+ * Carrying the pieces means ordering and making a move need no board lookups. Two moves generated for the same
+ * position are equal exactly when their ints are.
+ *
+ * 0 is never a legal move (from == to), so it doubles as "no move".
+ */
+public class Moves
+    extends Object
+{
+
+	public static final int NO_MOVE = 0;
+
+	public static final int CAPTURE = 1 << 15;
+	public static final int EN_PASSANT = 1 << 16;
+	public static final int CASTLE = 1 << 17;
+	public static final int DOUBLE_PAWN_PUSH = 1 << 18;
+
+	private static final char[] PROMOTION_CHARS = new char[] {' ', ' ', 'n', 'b', 'r', 'q', ' '};
+
+	public static int encode(int from, int to, int piece, int captured, int promotion, int flags)
+	{
+		return from | (to << 6) | (promotion << 12) | flags | (piece << 19) | (captured << 23);
+	}
+
+	public static int getFrom(int move) { return move & 63; }
+	public static int getTo(int move) { return (move >>> 6) & 63; }
+	public static int getPromotion(int move) { return (move >>> 12) & 7; }
+	public static int getPiece(int move) { return (move >>> 19) & 15; }
+	public static int getCaptured(int move) { return (move >>> 23) & 15; }
+
+	public static boolean isCapture(int move) { return (move & CAPTURE) != 0; }
+	public static boolean isEnPassant(int move) { return (move & EN_PASSANT) != 0; }
+	public static boolean isCastle(int move) { return (move & CASTLE) != 0; }
+	public static boolean isDoublePawnPush(int move) { return (move & DOUBLE_PAWN_PUSH) != 0; }
+	public static boolean isPromotion(int move) { return getPromotion(move) != Position.EMPTY; }
+
+	public static String squareToString(int square)
+	{
+		return "" + (char)('a' + Position.fileOf(square)) + (char)('1' + Position.rankOf(square));
+	}
+
+	/**
+	 * Long algebraic (UCI) form, e.g. e2e4 or e7e8q.
+	 */
+	public static String toString(int move)
+	{
+		if(move == NO_MOVE)
+		{
+			return "0000";
+		}
+		String s = squareToString(getFrom(move)) + squareToString(getTo(move));
+		if(isPromotion(move))
+		{
+			s += PROMOTION_CHARS[getPromotion(move)];
+		}
+		return s;
+	}
+
+}
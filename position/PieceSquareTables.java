@@ -0,0 +1,153 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Middlegame and endgame piece-square tables for a tapered evaluation, plus the game phase weights.
+ *
+ * The tables are flat int arrays indexed by piece code * 64 + square, holding the positional bonus (in centipawns,
+ * material excluded) of that piece on that square from its owner's point of view. Black's entries are white's
+ * mirrored vertically, so looking up any piece is a single array read. Position keeps running sums of these
+ * tables and of the phase, updated on every piece it places or removes, so evaluating them costs nothing per leaf.
+ *
+ * The phase runs from MAX_PHASE (all minor and major pieces on the board) down to 0 (only kings and pawns):
+ * taper blends the middlegame and endgame scores accordingly.
+ */
+public class PieceSquareTables
+    extends Object
+{
+
+	public static final int NUM_PIECE_CODES = 16;
+	public static final int[] PHASE_WEIGHTS = new int[] {0, 0, 1, 1, 2, 4, 0}; // indexed by piece type
+	public static final int MAX_PHASE = 24;
+
+	// white's point of view, written rank 8 first so the tables read like a board (flipped when loaded)
+	private static final int[] PAWN_MIDDLEGAME = new int[] {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0};
+	private static final int[] PAWN_ENDGAME = new int[] {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0};
+	private static final int[] KNIGHT_TABLE = new int[] {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50};
+	private static final int[] BISHOP_TABLE = new int[] {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20};
+	private static final int[] ROOK_MIDDLEGAME = new int[] {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0};
+	private static final int[] ROOK_ENDGAME = new int[] {
+          5,   5,   5,   5,   5,   5,   5,   5,
+         10,  10,  10,  10,  10,  10,  10,  10,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0};
+	private static final int[] QUEEN_TABLE = new int[] {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20};
+	private static final int[] KING_MIDDLEGAME = new int[] {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20};
+	private static final int[] KING_ENDGAME = new int[] {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50};
+
+	public static final int[] MIDDLEGAME = new int[NUM_PIECE_CODES * Position.NUM_SQUARES];
+	public static final int[] ENDGAME = new int[NUM_PIECE_CODES * Position.NUM_SQUARES];
+
+	static
+	{
+		PieceSquareTables.load(Position.PAWN, PAWN_MIDDLEGAME, PAWN_ENDGAME);
+		PieceSquareTables.load(Position.KNIGHT, KNIGHT_TABLE, KNIGHT_TABLE);
+		PieceSquareTables.load(Position.BISHOP, BISHOP_TABLE, BISHOP_TABLE);
+		PieceSquareTables.load(Position.ROOK, ROOK_MIDDLEGAME, ROOK_ENDGAME);
+		PieceSquareTables.load(Position.QUEEN, QUEEN_TABLE, QUEEN_TABLE);
+		PieceSquareTables.load(Position.KING, KING_MIDDLEGAME, KING_ENDGAME);
+	}
+
+	private static void load(int type, int[] middlegame, int[] endgame)
+	{
+		int white = Position.makePiece(Position.WHITE, type);
+		int black = Position.makePiece(Position.BLACK, type);
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			// the source tables are written rank 8 first, so white's square s is entry s ^ 56 and black's is entry s
+			MIDDLEGAME[white * Position.NUM_SQUARES + square] = middlegame[square ^ 56];
+			ENDGAME[white * Position.NUM_SQUARES + square] = endgame[square ^ 56];
+			MIDDLEGAME[black * Position.NUM_SQUARES + square] = middlegame[square];
+			ENDGAME[black * Position.NUM_SQUARES + square] = endgame[square];
+		}
+	}
+
+	public static int getMiddlegame(int piece, int square) { return MIDDLEGAME[piece * Position.NUM_SQUARES + square]; }
+	public static int getEndgame(int piece, int square) { return ENDGAME[piece * Position.NUM_SQUARES + square]; }
+	public static int getPhaseWeight(int piece) { return PHASE_WEIGHTS[Position.typeOf(piece)]; }
+
+	/**
+	 * Blend a middlegame and an endgame score by phase (MAX_PHASE = pure middlegame, 0 = pure endgame).
+	 * The phase is clamped, since promotions can push the material above the starting amount.
+	 */
+	public static int taper(int middlegame, int endgame, int phase)
+	{
+		int clampedPhase = Math.min(phase, MAX_PHASE);
+		return (middlegame * clampedPhase + endgame * (MAX_PHASE - clampedPhase)) / MAX_PHASE;
+	}
+
+}
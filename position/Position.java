@@ -0,0 +1,396 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A standalone, mutable chess position that does not need SEPIA or the Planner singleton.
+ * The board is a flat array of 64 squares (a1 = 0, b1 = 1, ..., h8 = 63) holding small integer piece codes,
+ * so copying a position or looking up a square never allocates.
+ *
+ * Piece codes are (color << 3) | type, where type is one of PAWN..KING and color is WHITE or BLACK.
+ *
+ * Every piece placed or removed also updates running sums of the piece-square tables (per color, middlegame and
+ * endgame) and of the game phase, so a tapered positional score is available at any time without a board scan.
+ * The position's Zobrist hash (see Zobrist) is kept up to date the same way.
+ *
+ * A search can walk the tree on a single position: makeMove plays a move in place and pushes what the move destroys
+ * (captured piece, castling rights, en passant square, halfmove clock) on the position's undo stack, unmakeMove pops
+ * it and takes the move back. Neither allocates once the stack has grown to the search depth. The hash of every
+ * position before a move made this way stays on a second stack, so getHash(numPliesAgo) can look back along the line.
+ */
+public class Position
+    extends Object
+{
+
+	public static final int NUM_SQUARES = 64;
+	public static final int BOARD_SIZE = 8;
+
+	// colors
+	public static final int WHITE = 0;
+	public static final int BLACK = 1;
+
+	// piece types
+	public static final int EMPTY = 0;
+	public static final int PAWN = 1;
+	public static final int KNIGHT = 2;
+	public static final int BISHOP = 3;
+	public static final int ROOK = 4;
+	public static final int QUEEN = 5;
+	public static final int KING = 6;
+	public static final int NUM_PIECE_TYPES = 7; // including EMPTY so types can index arrays directly
+
+	// castling rights (bitmask)
+	public static final int WHITE_KINGSIDE = 1;
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+
+	public static final int NO_SQUARE = -1;
+
+	// castling rights that survive a move touching each square (moving the king or a rook, or capturing a rook)
+	private static final int[] CASTLING_MASK = new int[NUM_SQUARES];
+	static
+	{
+		for(int square = 0; square < NUM_SQUARES; ++square)
+		{
+			CASTLING_MASK[square] = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+		}
+		CASTLING_MASK[square(4, 0)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+		CASTLING_MASK[square(7, 0)] &= ~WHITE_KINGSIDE;
+		CASTLING_MASK[square(0, 0)] &= ~WHITE_QUEENSIDE;
+		CASTLING_MASK[square(4, 7)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+		CASTLING_MASK[square(7, 7)] &= ~BLACK_KINGSIDE;
+		CASTLING_MASK[square(0, 7)] &= ~BLACK_QUEENSIDE;
+	}
+
+	private final int[] board;
+	private final int[] kingSquares;
+	private int sideToMove;
+	private int castlingRights;
+	private int enPassantSquare;
+	private int halfmoveClock;
+	private int fullmoveNumber;
+	private final int[] middlegameScores; // [color] sum of PieceSquareTables.MIDDLEGAME over the color's pieces
+	private final int[] endgameScores;    // [color] sum of PieceSquareTables.ENDGAME over the color's pieces
+	private int phase;
+	private long hash;
+	private int[] undoStack;              // packed states saved by makeMove, see packUndo
+	private long[] hashStack;             // [undoIdx] the hash before the move that pushed undoStack[undoIdx]
+	private int undoSize;
+
+	public Position()
+	{
+		this.board = new int[NUM_SQUARES];
+		this.kingSquares = new int[] {NO_SQUARE, NO_SQUARE};
+		this.middlegameScores = new int[2];
+		this.endgameScores = new int[2];
+		this.phase = 0;
+		this.sideToMove = WHITE;
+		this.castlingRights = 0;
+		this.enPassantSquare = NO_SQUARE;
+		this.halfmoveClock = 0;
+		this.fullmoveNumber = 1;
+		this.hash = 0L;
+		this.undoStack = new int[16];
+		this.hashStack = new long[16];
+		this.undoSize = 0;
+	}
+
+	// square / piece helpers
+	public static int square(int file, int rank) { return (rank << 3) | file; }
+	public static int fileOf(int square) { return square & 7; }
+	public static int rankOf(int square) { return square >> 3; }
+	public static int makePiece(int color, int type) { return (color << 3) | type; }
+	public static int colorOf(int piece) { return piece >> 3; }
+	public static int typeOf(int piece) { return piece & 7; }
+
+	public int getPieceAt(int square) { return this.board[square]; }
+	public int getKingSquare(int color) { return this.kingSquares[color]; }
+	public int getSideToMove() { return this.sideToMove; }
+	public int getCastlingRights() { return this.castlingRights; }
+	public int getEnPassantSquare() { return this.enPassantSquare; }
+	public int getHalfmoveClock() { return this.halfmoveClock; }
+	public int getFullmoveNumber() { return this.fullmoveNumber; }
+
+	public boolean isEmpty(int square) { return this.board[square] == EMPTY; }
+
+	public int getMiddlegameScore(int color) { return this.middlegameScores[color]; }
+	public int getEndgameScore(int color) { return this.endgameScores[color]; }
+	public int getPhase() { return this.phase; }
+	public long getHash() { return this.hash; }
+
+	/**
+	 * The hash of the position numPliesAgo moves (made with makeMove) before this one.
+	 * @param numPliesAgo at most getNumUndoableMoves()
+	 */
+	public long getHash(int numPliesAgo)
+	{
+		return numPliesAgo == 0 ? this.hash : this.hashStack[this.undoSize - numPliesAgo];
+	}
+
+	/**
+	 * The tapered piece-square score of the position for color, in centipawns.
+	 */
+	public int getPieceSquareScore(int color)
+	{
+		return PieceSquareTables.taper(this.middlegameScores[color] - this.middlegameScores[color ^ 1],
+            this.endgameScores[color] - this.endgameScores[color ^ 1], this.phase);
+	}
+
+	public void setSideToMove(int sideToMove)
+	{
+		this.hash ^= Zobrist.getSideToMoveKey(this.sideToMove) ^ Zobrist.getSideToMoveKey(sideToMove);
+		this.sideToMove = sideToMove;
+	}
+
+	public void setCastlingRights(int castlingRights)
+	{
+		this.hash ^= Zobrist.getCastlingKey(this.castlingRights) ^ Zobrist.getCastlingKey(castlingRights);
+		this.castlingRights = castlingRights;
+	}
+
+	public void setEnPassantSquare(int enPassantSquare)
+	{
+		this.hash ^= Zobrist.getEnPassantKey(this.enPassantSquare) ^ Zobrist.getEnPassantKey(enPassantSquare);
+		this.enPassantSquare = enPassantSquare;
+	}
+
+	public void setHalfmoveClock(int halfmoveClock) { this.halfmoveClock = halfmoveClock; }
+	public void setFullmoveNumber(int fullmoveNumber) { this.fullmoveNumber = fullmoveNumber; }
+
+	public void setPieceAt(int square, int piece)
+	{
+		this.removePieceAt(square);
+		this.board[square] = piece;
+		if(piece != EMPTY)
+		{
+			int color = colorOf(piece);
+			this.hash ^= Zobrist.getPieceKey(piece, square);
+			this.middlegameScores[color] += PieceSquareTables.getMiddlegame(piece, square);
+			this.endgameScores[color] += PieceSquareTables.getEndgame(piece, square);
+			this.phase += PieceSquareTables.getPhaseWeight(piece);
+			if(typeOf(piece) == KING)
+			{
+				this.kingSquares[color] = square;
+			}
+		}
+	}
+
+	private void removePieceAt(int square)
+	{
+		int piece = this.board[square];
+		if(piece != EMPTY)
+		{
+			int color = colorOf(piece);
+			this.hash ^= Zobrist.getPieceKey(piece, square);
+			this.middlegameScores[color] -= PieceSquareTables.getMiddlegame(piece, square);
+			this.endgameScores[color] -= PieceSquareTables.getEndgame(piece, square);
+			this.phase -= PieceSquareTables.getPhaseWeight(piece);
+			if(typeOf(piece) == KING && this.kingSquares[color] == square)
+			{
+				this.kingSquares[color] = NO_SQUARE;
+			}
+			this.board[square] = EMPTY;
+		}
+	}
+
+	public void clear()
+	{
+		Arrays.fill(this.board, EMPTY);
+		this.kingSquares[WHITE] = NO_SQUARE;
+		this.kingSquares[BLACK] = NO_SQUARE;
+		Arrays.fill(this.middlegameScores, 0);
+		Arrays.fill(this.endgameScores, 0);
+		this.phase = 0;
+		this.sideToMove = WHITE;
+		this.castlingRights = 0;
+		this.enPassantSquare = NO_SQUARE;
+		this.halfmoveClock = 0;
+		this.fullmoveNumber = 1;
+		this.hash = 0L;
+		this.undoSize = 0;
+	}
+
+	public void copyFrom(Position other)
+	{
+		System.arraycopy(other.board, 0, this.board, 0, NUM_SQUARES);
+		this.kingSquares[WHITE] = other.kingSquares[WHITE];
+		this.kingSquares[BLACK] = other.kingSquares[BLACK];
+		this.middlegameScores[WHITE] = other.middlegameScores[WHITE];
+		this.middlegameScores[BLACK] = other.middlegameScores[BLACK];
+		this.endgameScores[WHITE] = other.endgameScores[WHITE];
+		this.endgameScores[BLACK] = other.endgameScores[BLACK];
+		this.phase = other.phase;
+		this.sideToMove = other.sideToMove;
+		this.castlingRights = other.castlingRights;
+		this.enPassantSquare = other.enPassantSquare;
+		this.halfmoveClock = other.halfmoveClock;
+		this.fullmoveNumber = other.fullmoveNumber;
+		this.hash = other.hash;
+		this.undoSize = 0; // moves made on other cannot be taken back here
+	}
+
+	public Position copy()
+	{
+		Position position = new Position();
+		position.copyFrom(this);
+		return position;
+	}
+
+	public boolean isInCheck(int color)
+	{
+		return this.kingSquares[color] != NO_SQUARE
+            && MoveGenerator.isSquareAttacked(this, this.kingSquares[color], color ^ 1);
+	}
+
+	/**
+	 * Play a (pseudo-legal) move in place. The caller is responsible for keeping a copy if it wants to go back.
+	 * @param move a move produced by MoveGenerator for this position
+	 */
+	public void applyMove(int move)
+	{
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		int piece = this.board[from];
+		int color = colorOf(piece);
+
+		this.halfmoveClock += 1;
+		if(typeOf(piece) == PAWN || Moves.isCapture(move))
+		{
+			this.halfmoveClock = 0;
+		}
+		this.setEnPassantSquare(NO_SQUARE);
+
+		if(Moves.isEnPassant(move))
+		{
+			// the captured pawn sits behind the target square
+			this.removePieceAt(color == WHITE ? to - 8 : to + 8);
+		}
+
+		this.removePieceAt(from);
+		this.setPieceAt(to, Moves.getPromotion(move) != EMPTY ? makePiece(color, Moves.getPromotion(move)) : piece);
+
+		if(Moves.isCastle(move))
+		{
+			// king already moved, now bring the rook to the other side of it
+			int rookFrom = to > from ? to + 1 : to - 2;
+			int rookTo = to > from ? to - 1 : to + 1;
+			this.setPieceAt(rookTo, this.board[rookFrom]);
+			this.removePieceAt(rookFrom);
+		} else if(Moves.isDoublePawnPush(move))
+		{
+			this.setEnPassantSquare((from + to) >> 1);
+		}
+
+		this.setCastlingRights(this.castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to]);
+		if(color == BLACK)
+		{
+			this.fullmoveNumber += 1;
+		}
+		this.setSideToMove(color ^ 1);
+	}
+
+	/**
+	 * Play a (pseudo-legal) move in place so that it can be taken back with unmakeMove.
+	 * @param move a move produced by MoveGenerator for this position
+	 */
+	public void makeMove(int move)
+	{
+		if(this.undoSize == this.undoStack.length)
+		{
+			this.undoStack = Arrays.copyOf(this.undoStack, this.undoSize * 2);
+			this.hashStack = Arrays.copyOf(this.hashStack, this.undoSize * 2);
+		}
+		this.hashStack[this.undoSize] = this.hash;
+		this.undoStack[this.undoSize++] = Position.packUndo(this.board[Moves.getTo(move)], this.castlingRights,
+            this.enPassantSquare, this.halfmoveClock);
+		this.applyMove(move);
+	}
+
+	/**
+	 * Take back the last move played with makeMove.
+	 * @param move that move
+	 */
+	public void unmakeMove(int move)
+	{
+		int undo = this.undoStack[--this.undoSize];
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		int color = this.sideToMove ^ 1;
+		int piece = Moves.getPromotion(move) != EMPTY ? makePiece(color, PAWN) : this.board[to];
+
+		if(Moves.isCastle(move))
+		{
+			int rookFrom = to > from ? to + 1 : to - 2;
+			int rookTo = to > from ? to - 1 : to + 1;
+			this.setPieceAt(rookFrom, this.board[rookTo]);
+			this.removePieceAt(rookTo);
+		}
+
+		this.removePieceAt(to);
+		this.setPieceAt(from, piece);
+		if(Moves.isEnPassant(move))
+		{
+			this.setPieceAt(color == WHITE ? to - 8 : to + 8, makePiece(color ^ 1, PAWN));
+		} else
+		{
+			this.setPieceAt(to, undo & 0xF);
+		}
+
+		this.castlingRights = (undo >>> 4) & 0xF;
+		this.enPassantSquare = ((undo >>> 8) & 0x7F) - 1;
+		this.halfmoveClock = undo >>> 16;
+		if(color == BLACK)
+		{
+			this.fullmoveNumber -= 1;
+		}
+		this.sideToMove = color;
+		this.hash = this.hashStack[this.undoSize];
+	}
+
+	/**
+	 * How many moves made with makeMove can still be taken back.
+	 */
+	public int getNumUndoableMoves() { return this.undoSize; }
+
+	// captured piece in bits 0-3, castling rights 4-7, en passant square + 1 in 8-14, halfmove clock from 16
+	private static int packUndo(int capturedPiece, int castlingRights, int enPassantSquare, int halfmoveClock)
+	{
+		return capturedPiece | (castlingRights << 4) | ((enPassantSquare + 1) << 8) | (halfmoveClock << 16);
+	}
+
+	/**
+	 * Do both positions have the same pieces on the same squares (ignoring side to move, castling and clocks)?
+	 */
+	public boolean hasSameBoard(Position other)
+	{
+		return Arrays.equals(this.board, other.board);
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof Position))
+		{
+			return false;
+		}
+		Position position = (Position)other;
+		return Arrays.equals(this.board, position.board)
+            && this.sideToMove == position.sideToMove
+            && this.castlingRights == position.castlingRights
+            && this.enPassantSquare == position.enPassantSquare;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Arrays.hashCode(this.board) * 31 + this.sideToMove;
+	}
+
+}
@@ -0,0 +1,137 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Standard Algebraic Notation (SAN), which is what EPD test suites use for their bm/am operands.
+ * This is load-time code (it generates the legal moves for every call), not something for the search.
+ */
+public class San
+    extends Object
+{
+
+	private static final String PIECE_LETTERS = "  NBRQK";
+	private static final String PROMOTION_LETTERS = "  NBRQ";
+
+	public static String toSan(Position position, int move)
+	{
+		int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+		int numLegalMoves = MoveGenerator.generateLegalMoves(position, legalMoves);
+		return San.toSan(position, move, legalMoves, numLegalMoves);
+	}
+
+	private static String toSan(Position position, int move, int[] legalMoves, int numLegalMoves)
+	{
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		int type = Position.typeOf(position.getPieceAt(from));
+
+		StringBuilder builder = new StringBuilder(8);
+		if(Moves.isCastle(move))
+		{
+			builder.append(to > from ? "O-O" : "O-O-O");
+		} else if(type == Position.PAWN)
+		{
+			if(Moves.isCapture(move))
+			{
+				builder.append((char)('a' + Position.fileOf(from))).append('x');
+			}
+			builder.append(Moves.squareToString(to));
+			if(Moves.isPromotion(move))
+			{
+				builder.append('=').append(PROMOTION_LETTERS.charAt(Moves.getPromotion(move)));
+			}
+		} else
+		{
+			builder.append(PIECE_LETTERS.charAt(type));
+
+			// disambiguate against other pieces of the same type that can reach the same square
+			boolean isAmbiguous = false;
+			boolean isFileShared = false;
+			boolean isRankShared = false;
+			for(int moveIdx = 0; moveIdx < numLegalMoves; ++moveIdx)
+			{
+				int otherFrom = Moves.getFrom(legalMoves[moveIdx]);
+				if(otherFrom != from && Moves.getTo(legalMoves[moveIdx]) == to
+                    && Position.typeOf(position.getPieceAt(otherFrom)) == type)
+				{
+					isAmbiguous = true;
+					isFileShared |= Position.fileOf(otherFrom) == Position.fileOf(from);
+					isRankShared |= Position.rankOf(otherFrom) == Position.rankOf(from);
+				}
+			}
+			if(isAmbiguous)
+			{
+				if(!isFileShared)
+				{
+					builder.append((char)('a' + Position.fileOf(from)));
+				} else if(!isRankShared)
+				{
+					builder.append((char)('1' + Position.rankOf(from)));
+				} else
+				{
+					builder.append(Moves.squareToString(from));
+				}
+			}
+
+			if(Moves.isCapture(move))
+			{
+				builder.append('x');
+			}
+			builder.append(Moves.squareToString(to));
+		}
+
+		// check / mate suffix
+		Position child = position.copy();
+		child.applyMove(move);
+		if(child.isInCheck(child.getSideToMove()))
+		{
+			int[] replies = new int[MoveGenerator.MAX_MOVES];
+			builder.append(MoveGenerator.generateLegalMoves(child, replies) == 0 ? '#' : '+');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Find the legal move written in SAN (or, as a fallback, long algebraic such as e2e4).
+	 * Check/mate markers and annotations (+, #, !, ?) are ignored, and 0-0 is accepted for O-O.
+	 * @return the move, or Moves.NO_MOVE if no legal move matches
+	 */
+	public static int parse(Position position, String san)
+	{
+		String wanted = San.normalize(san);
+		int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+		int numLegalMoves = MoveGenerator.generateLegalMoves(position, legalMoves);
+		for(int moveIdx = 0; moveIdx < numLegalMoves; ++moveIdx)
+		{
+			int move = legalMoves[moveIdx];
+			if(wanted.equals(San.normalize(San.toSan(position, move, legalMoves, numLegalMoves)))
+                || wanted.equals(Moves.toString(move)))
+			{
+				return move;
+			}
+		}
+		return Moves.NO_MOVE;
+	}
+
+	private static String normalize(String san)
+	{
+		StringBuilder builder = new StringBuilder(san.length());
+		for(int idx = 0; idx < san.length(); ++idx)
+		{
+			char c = san.charAt(idx);
+			if(c == '+' || c == '#' || c == '!' || c == '?')
+			{
+				continue;
+			}
+			builder.append(c == '0' ? 'O' : c);
+		}
+		return builder.toString();
+	}
+
+}
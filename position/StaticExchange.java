@@ -0,0 +1,190 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Static exchange evaluation (SEE): the material a capture wins or loses once every piece that can recapture on the
+ * target square has had its say, each side always recapturing with its least valuable attacker and free to stop
+ * whenever continuing would lose material.
+ *
+ * The attackers of the square are found from the board and an occupancy bitset (bit i = square i). Every piece
+ * that takes part is cleared from the occupancy, so sliders standing behind it (x-rays) join in on the next scan.
+ * Pins and checks are ignored, as usual for SEE, except that a king never recaptures onto a defended square.
+ *
+ * The exchange is worked out in a scratch array of MAX_EXCHANGE_LENGTH ints. Searches pass one of their own (see
+ * newGains), the other callers get a per-thread one, so evaluating a capture allocates nothing.
+ */
+public class StaticExchange
+    extends Object
+{
+
+	public static final int[] VALUES = new int[] {0, 100, 320, 330, 500, 900, 20000}; // centipawns, indexed by piece type
+	public static final int MAX_EXCHANGE_LENGTH = 32;
+
+	private static final ThreadLocal<int[]> THREAD_GAINS = ThreadLocal.withInitial(StaticExchange::newGains);
+
+	/**
+	 * A scratch array for evaluate(Position, int, int[]).
+	 */
+	public static int[] newGains() { return new int[MAX_EXCHANGE_LENGTH]; }
+
+	/**
+	 * @param position the position the move is played from (not modified)
+	 * @param move a capture or promotion of position (any other move is scored as if nothing was captured)
+	 * @return the material (in centipawns) the side to move gains by playing move, negative if it loses material
+	 */
+	public static int evaluate(Position position, int move)
+	{
+		return StaticExchange.evaluate(position, move, THREAD_GAINS.get());
+	}
+
+	/**
+	 * Same as evaluate(Position, int), working in gains (see newGains), which the caller owns.
+	 */
+	public static int evaluate(Position position, int move, int[] gains)
+	{
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		int mover = position.getPieceAt(from);
+
+		long occupied = StaticExchange.getOccupancy(position);
+		if(Moves.isEnPassant(move))
+		{
+			gains[0] = VALUES[Position.PAWN];
+			occupied &= ~(1L << (Position.colorOf(mover) == Position.WHITE ? to - 8 : to + 8));
+		} else
+		{
+			gains[0] = VALUES[Position.typeOf(position.getPieceAt(to))];
+		}
+		int attackerValue = VALUES[Position.typeOf(mover)];
+		if(Moves.isPromotion(move))
+		{
+			gains[0] += VALUES[Moves.getPromotion(move)] - VALUES[Position.PAWN];
+			attackerValue = VALUES[Moves.getPromotion(move)];
+		}
+
+		// gains[depth] is what the side that made capture number depth has won if the exchange stops right after it
+		int depth = 0;
+		int side = Position.colorOf(mover);
+		int attackerSquare = from;
+		do
+		{
+			depth += 1;
+			gains[depth] = attackerValue - gains[depth - 1]; // if the last capturer is taken in turn
+			occupied &= ~(1L << attackerSquare);
+			side ^= 1;
+			attackerSquare = StaticExchange.getLeastValuableAttacker(position, to, side, occupied);
+			if(attackerSquare != Position.NO_SQUARE)
+			{
+				attackerValue = VALUES[Position.typeOf(position.getPieceAt(attackerSquare))];
+			}
+		} while(attackerSquare != Position.NO_SQUARE && depth < MAX_EXCHANGE_LENGTH - 1);
+
+		while(--depth > 0)
+		{
+			gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+		}
+		return gains[0];
+	}
+
+	/**
+	 * Does move lose material according to SEE? Cheaper than evaluate when the capture obviously wins.
+	 */
+	public static boolean isLosing(Position position, int move)
+	{
+		return StaticExchange.isLosing(position, move, THREAD_GAINS.get());
+	}
+
+	public static boolean isLosing(Position position, int move, int[] gains)
+	{
+		int capturedType = Moves.isEnPassant(move) ? Position.PAWN : Position.typeOf(position.getPieceAt(Moves.getTo(move)));
+		if(!Moves.isPromotion(move)
+            && VALUES[capturedType] >= VALUES[Position.typeOf(position.getPieceAt(Moves.getFrom(move)))])
+		{
+			return false; // taking a piece at least as valuable as the capturer can never lose material
+		}
+		return StaticExchange.evaluate(position, move, gains) < 0;
+	}
+
+	private static long getOccupancy(Position position)
+	{
+		long occupied = 0L;
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			if(!position.isEmpty(square))
+			{
+				occupied |= 1L << square;
+			}
+		}
+		return occupied;
+	}
+
+	/**
+	 * The square of color's least valuable piece among occupied that attacks square, or Position.NO_SQUARE.
+	 */
+	private static int getLeastValuableAttacker(Position position, int square, int color, long occupied)
+	{
+		int pawn = Position.makePiece(color, Position.PAWN);
+		for(int from : MoveGenerator.PAWN_ATTACKS[color ^ 1][square]) // a pawn of color on from attacks square
+		{
+			if((occupied & (1L << from)) != 0 && position.getPieceAt(from) == pawn)
+			{
+				return from;
+			}
+		}
+
+		int knight = Position.makePiece(color, Position.KNIGHT);
+		for(int from : MoveGenerator.KNIGHT_TARGETS[square])
+		{
+			if((occupied & (1L << from)) != 0 && position.getPieceAt(from) == knight)
+			{
+				return from;
+			}
+		}
+
+		// the first occupied square of each ray, if it holds a slider moving along that ray
+		int bestSquare = Position.NO_SQUARE;
+		int bestValue = Integer.MAX_VALUE;
+		for(int direction = 0; direction < MoveGenerator.NUM_DIRECTIONS; ++direction)
+		{
+			int slider = direction < MoveGenerator.FIRST_DIAGONAL_DIRECTION ? Position.ROOK : Position.BISHOP;
+			for(int from : MoveGenerator.RAYS[square][direction])
+			{
+				if((occupied & (1L << from)) != 0)
+				{
+					int piece = position.getPieceAt(from);
+					int type = Position.typeOf(piece);
+					if(Position.colorOf(piece) == color && (type == slider || type == Position.QUEEN) && VALUES[type] < bestValue)
+					{
+						bestSquare = from;
+						bestValue = VALUES[type];
+					}
+					break;
+				}
+			}
+		}
+		if(bestSquare != Position.NO_SQUARE)
+		{
+			return bestSquare;
+		}
+
+		int king = Position.makePiece(color, Position.KING);
+		for(int from : MoveGenerator.KING_TARGETS[square])
+		{
+			if((occupied & (1L << from)) != 0 && position.getPieceAt(from) == king)
+			{
+				// the king may only take if nothing can take it back
+				long withoutKing = occupied & ~(1L << from);
+				return StaticExchange.getLeastValuableAttacker(position, square, color ^ 1, withoutKing) == Position.NO_SQUARE
+                    ? from : Position.NO_SQUARE;
+			}
+		}
+		return Position.NO_SQUARE;
+	}
+
+}
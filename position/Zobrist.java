@@ -0,0 +1,82 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import java.util.Random;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Zobrist keys: a 64-bit random number per (piece, square), per castling rights combination, per en passant file and
+ * one for black to move. The hash of a position is the XOR of the keys of everything in it, so playing a move only
+ * XORs in and out the keys of what the move changes. Position maintains its hash that way (see Position.getHash).
+ *
+ * The keys come from a fixed seed, so hashes are the same from one run to the next.
+ */
+public class Zobrist
+    extends Object
+{
+
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+
+	private static final long[] PIECE_KEYS = new long[PieceSquareTables.NUM_PIECE_CODES * Position.NUM_SQUARES];
+	private static final long[] CASTLING_KEYS = new long[16]; // indexed by castling rights, no rights hash to 0
+	private static final long[] EN_PASSANT_KEYS = new long[Position.BOARD_SIZE]; // indexed by file
+	private static final long BLACK_TO_MOVE_KEY;
+	static
+	{
+		Random random = new Random(Zobrist.SEED);
+		for(int piece = 0; piece < PieceSquareTables.NUM_PIECE_CODES; ++piece)
+		{
+			for(int square = 0; square < Position.NUM_SQUARES; ++square)
+			{
+				PIECE_KEYS[piece * Position.NUM_SQUARES + square] = piece != Position.EMPTY ? random.nextLong() : 0L;
+			}
+		}
+		for(int castlingRights = 1; castlingRights < CASTLING_KEYS.length; ++castlingRights)
+		{
+			CASTLING_KEYS[castlingRights] = random.nextLong();
+		}
+		for(int file = 0; file < EN_PASSANT_KEYS.length; ++file)
+		{
+			EN_PASSANT_KEYS[file] = random.nextLong();
+		}
+		BLACK_TO_MOVE_KEY = random.nextLong();
+	}
+
+	public static long getPieceKey(int piece, int square) { return PIECE_KEYS[piece * Position.NUM_SQUARES + square]; }
+	public static long getCastlingKey(int castlingRights) { return CASTLING_KEYS[castlingRights]; }
+	public static long getBlackToMoveKey() { return BLACK_TO_MOVE_KEY; }
+
+	/**
+	 * @param enPassantSquare a square or Position.NO_SQUARE (which hashes to 0)
+	 */
+	public static long getEnPassantKey(int enPassantSquare)
+	{
+		return enPassantSquare != Position.NO_SQUARE ? EN_PASSANT_KEYS[Position.fileOf(enPassantSquare)] : 0L;
+	}
+
+	public static long getSideToMoveKey(int sideToMove)
+	{
+		return sideToMove == Position.BLACK ? BLACK_TO_MOVE_KEY : 0L;
+	}
+
+	/**
+	 * The hash of position computed from scratch, what Position.getHash keeps up to date incrementally.
+	 */
+	public static long hash(Position position)
+	{
+		long hash = 0L;
+		for(int square = 0; square < Position.NUM_SQUARES; ++square)
+		{
+			hash ^= Zobrist.getPieceKey(position.getPieceAt(square), square);
+		}
+		return hash
+            ^ Zobrist.getSideToMoveKey(position.getSideToMove())
+            ^ Zobrist.getCastlingKey(position.getCastlingRights())
+            ^ Zobrist.getEnPassantKey(position.getEnPassantSquare());
+	}
+
+}
@@ -0,0 +1,251 @@
+package src.pas.chess.streaming;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.San;
+
+
+/**
+ * Writes the moves of a game to a file from a background thread, so the agent only pays for an enqueue on its move path.
+ *
+ * The writer thread drains whatever has queued up (up to BATCH_SIZE records at a time), formats it, writes it and
+ * flushes once per batch. Output can optionally be gzip compressed. close() drains the queue, finishes the file and
+ * fsyncs it, so call it once the game is over.
+ *
+ * If the writer thread fails (an I/O error, or anything else it throws), it stops and keeps what it failed with:
+ * the next recordMove, or close, throws it as the cause of an IOException, and nothing more is queued.
+ *
+ * The records are not in the format of the library's Streamer, which the agents used to stream their moves with:
+ * that format is the library's own, and streaming it means calling Streamer with the live Game on the move path, which
+ * is what this writer is there to avoid. Tools that read Streamer's files do not read these. The format is a CSV
+ * file with the header line HEADER:
+ *
+ * Each row is: the index of our move, the move in long algebraic notation, move in SAN, and the FEN of the position the move was played from.
+ * For example, after the header, "1,e2e4,e4,rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+ * The FEN's castling rights, halfmove clock and fullmove number are those of the position handed to recordMove: a
+ * Position read from a Game has no clocks of its own (0 and 1) and only the castling rights its board suggests, so the
+ * agents set all three from their PositionHistory first (see fillIn there).
+ *
+ * HEADER is the schema other tools rely on: the fen column is what positions files are cut from (TexelTuner's
+ * training positions once labelled with the game's result, openings for TournamentRunner and SelfPlaySimulator, and
+ * AllocationBudget's positions), all of which read it with Fen/Epd, e.g. "tail -n +2 game.csv | cut -d, -f4". No field
+ * contains a comma. Add columns at the end, never reorder or rename them, and keep the FEN complete.
+ */
+public class GameRecordWriter
+    extends Object
+{
+
+	public static final String HEADER = "move_idx,move_uci,move_san,fen";
+	public static final String COMPRESS_PROPERTY = "chess.streaming.compress";
+	public static final int BATCH_SIZE = 64;
+
+	private static class MoveRecord
+        extends Object
+	{
+		private final Position before;
+		private final Game after; // null when the move is known
+		private final int move;
+
+		public MoveRecord(Position before, Game after, int move)
+		{
+			this.before = before;
+			this.after = after;
+			this.move = move;
+		}
+
+		public Position getBefore() { return this.before; }
+		public Game getAfter() { return this.after; }
+		public int getMove() { return this.move; }
+	}
+
+	private static final MoveRecord END_OF_GAME = new MoveRecord(null, null, Moves.NO_MOVE);
+
+	private final BlockingQueue<MoveRecord> queue;
+	private final FileOutputStream fileStream;
+	private final GZIPOutputStream gzipStream; // null when not compressing
+	private final BufferedWriter writer;
+	private final Thread writerThread;
+	private volatile Throwable failure; // what stopped the writer thread, null while it runs
+	private int numMoves;
+
+	public GameRecordWriter(String filePath, boolean compress)
+        throws IOException
+	{
+		File file = new File(filePath);
+		File directory = file.getAbsoluteFile().getParentFile();
+		if(directory != null && !directory.exists())
+		{
+			directory.mkdirs();
+		}
+
+		this.queue = new LinkedBlockingQueue<MoveRecord>();
+		this.fileStream = new FileOutputStream(file);
+		this.gzipStream = compress ? new GZIPOutputStream(this.fileStream, 1 << 16) : null;
+		OutputStream outputStream = compress ? this.gzipStream : this.fileStream;
+		this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"), 1 << 16);
+		this.failure = null;
+		this.numMoves = 0;
+
+		this.writerThread = new Thread(this::drain, "GameRecordWriter");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Open a writer for filePath, compressing if -Dchess.streaming.compress=true (".gz" is appended to the path).
+	 * @return the writer, or null if there is nowhere to write or the file cannot be opened
+	 */
+	public static GameRecordWriter open(String filePath)
+	{
+		if(filePath == null)
+		{
+			return null;
+		}
+		boolean compress = Boolean.getBoolean(GameRecordWriter.COMPRESS_PROPERTY);
+		try
+		{
+			return new GameRecordWriter(compress ? filePath + ".gz" : filePath, compress);
+		} catch(IOException e)
+		{
+			System.err.println("GameRecordWriter.open [ERROR]: cannot record the game to path=" + filePath);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private BlockingQueue<MoveRecord> getQueue() { return this.queue; }
+	private BufferedWriter getWriter() { return this.writer; }
+
+	/**
+	 * Queue a move to be written. Only enqueues: all formatting and I/O happen on the writer thread.
+	 * @param before a snapshot of the position before the move, with its clocks (must not be modified afterwards)
+	 * @param after the game after the move (e.g. the game of the child node the search picked)
+	 * @throws IOException if the writer thread has failed, with what it failed with as the cause
+	 */
+	public void recordMove(Position before, Game after)
+        throws IOException
+	{
+		this.checkFailure();
+		this.getQueue().offer(new MoveRecord(before, after, Moves.NO_MOVE));
+	}
+
+	/**
+	 * Same as recordMove(Position, Game), for games played on Positions (see GameContext).
+	 * @param move the move played from before
+	 */
+	public void recordMove(Position before, int move)
+        throws IOException
+	{
+		this.checkFailure();
+		this.getQueue().offer(new MoveRecord(before, null, move));
+	}
+
+	/**
+	 * Write everything still queued, then flush, finish and fsync the file.
+	 * @throws IOException if the writer thread failed, with what it failed with as the cause
+	 */
+	public void close()
+        throws IOException
+	{
+		this.getQueue().offer(GameRecordWriter.END_OF_GAME);
+		try
+		{
+			this.writerThread.join();
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		this.checkFailure();
+	}
+
+	private void checkFailure()
+        throws IOException
+	{
+		Throwable failure = this.failure;
+		if(failure != null)
+		{
+			throw new IOException("GameRecordWriter: the writer thread failed, the record is incomplete", failure);
+		}
+	}
+
+	private void drain()
+	{
+		List<MoveRecord> batch = new ArrayList<MoveRecord>(GameRecordWriter.BATCH_SIZE);
+		boolean isGameOver = false;
+		try
+		{
+			this.getWriter().write(GameRecordWriter.HEADER);
+			this.getWriter().newLine();
+			while(!isGameOver)
+			{
+				batch.add(this.getQueue().take());
+				this.getQueue().drainTo(batch, GameRecordWriter.BATCH_SIZE - 1);
+				for(MoveRecord record : batch)
+				{
+					if(record == GameRecordWriter.END_OF_GAME)
+					{
+						isGameOver = true;
+						break;
+					}
+					this.write(record);
+				}
+				batch.clear();
+				this.getWriter().flush();
+			}
+
+			// game over: finish the file and make sure it is on disk before we let go of it
+			if(this.gzipStream != null)
+			{
+				this.gzipStream.finish();
+			}
+			this.fileStream.flush();
+			this.fileStream.getFD().sync();
+			this.getWriter().close();
+		} catch(InterruptedException e)
+		{
+			this.failure = e;
+			Thread.currentThread().interrupt();
+		} catch(Throwable e)
+		{
+			// anything, not just I/O errors: a writer that dies silently would leave the queue growing forever
+			this.failure = e;
+		} finally
+		{
+			this.getQueue().clear();
+		}
+	}
+
+	private void write(MoveRecord record)
+        throws IOException
+	{
+		int move = record.getAfter() != null ? GameAdapter.findMove(record.getBefore(), record.getAfter()) : record.getMove();
+		this.numMoves += 1;
+		this.getWriter().write(this.numMoves + "," +
+            (move == Moves.NO_MOVE ? "?" : Moves.toString(move)) + "," +
+            (move == Moves.NO_MOVE ? "?" : San.toSan(record.getBefore(), move)) + "," +
+            Fen.toFen(record.getBefore()));
+		this.getWriter().newLine();
+	}
+
+}
@@ -0,0 +1,70 @@
+package src.pas.chess.agents;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.planning.Planner;
+import edu.bu.chess.search.DFSTreeNode;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionHistory;
+
+
+/**
+ * The tree search called directly, without call(), the way DifferentialTester runs it. A Game only comes from the
+ * framework's Planner, so these are skipped when there is none (e.g. outside a SEPIA run).
+ */
+public class AlphaBetaSearcherTest
+    extends Object
+{
+
+	private static Game getGame()
+	{
+		try
+		{
+			Planner planner = Planner.getPlanner();
+			return planner != null ? planner.getGame() : null;
+		} catch(RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	private static DFSTreeNode newRootNode()
+	{
+		Game game = AlphaBetaSearcherTest.getGame();
+		Assume.assumeTrue(game != null);
+		return new DFSTreeNode(game, game.getCurrentPlayer());
+	}
+
+	@Test
+	public void searchesWithoutHistory()
+	{
+		DFSTreeNode rootNode = AlphaBetaSearcherTest.newRootNode();
+		AlphaBetaAgent.AlphaBetaSearcher searcher = new AlphaBetaAgent.AlphaBetaSearcher(rootNode, 2, 0);
+		DFSTreeNode bestChild = searcher.alphaBetaSearch(rootNode, 2, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		Assert.assertNotNull(bestChild);
+		Assert.assertNotNull(bestChild.getMove());
+	}
+
+	@Test
+	public void searchesWithEmptyHistory()
+	{
+		DFSTreeNode rootNode = AlphaBetaSearcherTest.newRootNode();
+		AlphaBetaAgent.AlphaBetaSearcher withoutHistory = new AlphaBetaAgent.AlphaBetaSearcher(rootNode, 2, 0);
+		double utility = withoutHistory.alphaBetaSearch(rootNode, 2, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)
+            .getMaxPlayerUtilityValue();
+
+		DFSTreeNode otherRootNode = new DFSTreeNode(rootNode.getGame(), rootNode.getMaxPlayer());
+		AlphaBetaAgent.AlphaBetaSearcher withHistory = new AlphaBetaAgent.AlphaBetaSearcher(otherRootNode, 2, 0);
+		withHistory.setHistory(new PositionHistory());
+		Assert.assertEquals(utility, withHistory.alphaBetaSearch(otherRootNode, 2, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)
+            .getMaxPlayerUtilityValue(), 0.0);
+	}
+
+}
@@ -0,0 +1,84 @@
+package src.pas.chess.debug;
+
+
+// SYSTEM IMPORTS
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Smoke test of the standalone mode of DifferentialTester: the reference minimax finds what it should, and the
+ * in-place search agrees with it on a handful of positions, with and without a transposition table.
+ */
+public class DifferentialTesterTest
+    extends Object
+{
+
+	public static final String[] POSITIONS = new String[] {
+		Fen.START_POSITION,
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+		"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+		"6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1",
+	};
+
+	@Test
+	public void minimaxFindsMateInOne()
+	{
+		PositionSearcher.SearchResult result = new DifferentialTester.MinimaxPositionSearcher(2)
+            .search(Fen.parse("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"));
+		Assert.assertEquals("a1a8", Moves.toString(result.getBestMove()));
+		Assert.assertEquals(Scores.mateIn(1), result.getScore());
+	}
+
+	@Test
+	public void minimaxScoresStalemateAsDraw()
+	{
+		Assert.assertEquals(Scores.DRAW, new DifferentialTester.MinimaxPositionSearcher(2)
+            .search(Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1")).getScore());
+	}
+
+	private static void assertNoMismatches(int depth, boolean useTranspositionTable)
+        throws Exception
+	{
+		List<Position> positions = new ArrayList<Position>();
+		for(String fen : POSITIONS)
+		{
+			positions.add(Fen.parse(fen));
+		}
+		DifferentialTester tester = new DifferentialTester(depth, 2);
+		try
+		{
+			Assert.assertEquals(new ArrayList<DifferentialTester.Mismatch>(), tester.runPositions(positions, useTranspositionTable));
+		} finally
+		{
+			tester.shutdown();
+		}
+	}
+
+	@Test
+	public void positionSearcherAgreesWithMinimax()
+        throws Exception
+	{
+		DifferentialTesterTest.assertNoMismatches(2, false);
+	}
+
+	@Test
+	public void positionSearcherWithTranspositionTableAgreesWithMinimax()
+        throws Exception
+	{
+		DifferentialTesterTest.assertNoMismatches(3, true);
+	}
+
+}
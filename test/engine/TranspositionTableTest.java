@@ -0,0 +1,70 @@
+package src.pas.chess.engine;
+
+
+// SYSTEM IMPORTS
+import org.junit.Assert;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Position;
+
+
+public class TranspositionTableTest
+    extends Object
+{
+
+	@Test
+	public void storesAndProbes()
+	{
+		TranspositionTable table = new TranspositionTable(1);
+		long hash = Fen.parse(Fen.START_POSITION).getHash();
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		MoveGenerator.generateLegalMoves(Fen.parse(Fen.START_POSITION), moves);
+
+		Assert.assertEquals(TranspositionTable.NO_ENTRY, table.probe(hash));
+		table.store(hash, moves[3], -57, 6, TranspositionTable.BOUND_LOWER);
+		long entry = table.probe(hash);
+		Assert.assertNotEquals(TranspositionTable.NO_ENTRY, entry);
+		Assert.assertEquals(moves[3], TranspositionTable.getMove(entry));
+		Assert.assertEquals(-57, TranspositionTable.getScore(entry));
+		Assert.assertEquals(6, TranspositionTable.getDepth(entry));
+		Assert.assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.getBound(entry));
+		Assert.assertEquals(TranspositionTable.NO_ENTRY, table.probe(hash ^ 1L));
+
+		table.clear();
+		Assert.assertEquals(TranspositionTable.NO_ENTRY, table.probe(hash));
+	}
+
+	@Test
+	public void mateScoresAreRelativeToTheNode()
+	{
+		// a mate 5 plies from the root, found at ply 2, is a mate in 3 from the node, wherever it is met again
+		int score = Scores.mateIn(5);
+		int tableScore = TranspositionTable.toTableScore(score, 2);
+		Assert.assertEquals(score, TranspositionTable.fromTableScore(tableScore, 2));
+		Assert.assertEquals(Scores.mateIn(7), TranspositionTable.fromTableScore(tableScore, 4));
+		Assert.assertEquals(Scores.matedIn(7), TranspositionTable.fromTableScore(TranspositionTable.toTableScore(Scores.matedIn(5), 2), 4));
+		Assert.assertEquals(123, TranspositionTable.fromTableScore(TranspositionTable.toTableScore(123, 2), 9));
+	}
+
+	@Test
+	public void searchGivesSameScoreWithAndWithoutTable()
+	{
+		for(String fen : new String[] {Fen.START_POSITION, "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"})
+		{
+			Position position = Fen.parse(fen);
+			PositionSearcher withoutTable = new PositionSearcher(3, null);
+			withoutTable.setTranspositionTable(null);
+			withoutTable.setQuiescent(false);
+			PositionSearcher withTable = new PositionSearcher(3, null);
+			withTable.setTranspositionTable(new TranspositionTable(1));
+			withTable.setQuiescent(false);
+			Assert.assertEquals(fen, withoutTable.search(position).getScore(), withTable.search(position).getScore());
+		}
+	}
+
+}
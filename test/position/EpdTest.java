@@ -0,0 +1,81 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+
+
+public class EpdTest
+    extends Object
+{
+
+	public static final String RUY_LOPEZ = "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; am d4; id \"ruy.1\";";
+
+	@Test
+	public void parsesOperations()
+	{
+		Epd record = Epd.parse(RUY_LOPEZ);
+		Assert.assertEquals("ruy.1", record.getId());
+		Assert.assertEquals(1, record.getBestMoves().length);
+		Assert.assertEquals("f1b5", Moves.toString(record.getBestMoves()[0]));
+		Assert.assertEquals("d2d4", Moves.toString(record.getAvoidMoves()[0]));
+		Assert.assertEquals(RUY_LOPEZ, record.toString());
+	}
+
+	@Test
+	public void solvedOnlyByBestMoves()
+	{
+		Epd record = Epd.parse(RUY_LOPEZ);
+		Position position = record.getPosition();
+		Assert.assertTrue(record.isSolvedBy(San.parse(position, "Bb5")));
+		Assert.assertFalse(record.isSolvedBy(San.parse(position, "Bc4")));
+		Assert.assertFalse(record.isSolvedBy(San.parse(position, "d4")));
+	}
+
+	@Test
+	public void readsMoveCounters()
+	{
+		Epd record = Epd.parse("4k3/8/8/8/8/8/8/4K3 b - - hmvc 12; fmvn 40;");
+		Assert.assertEquals(12, record.getPosition().getHalfmoveClock());
+		Assert.assertEquals(40, record.getPosition().getFullmoveNumber());
+		Assert.assertFalse(record.hasMoveOperations());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsIllegalBestMove()
+	{
+		Epd.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb6; id \"bad\";");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnparsableAvoidMove()
+	{
+		Epd.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; am Qxx;");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyBestMoves()
+	{
+		Epd.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm ;");
+	}
+
+	@Test
+	public void loadSkipsBlankLinesAndComments()
+        throws IOException
+	{
+		String file = "# a suite\n\n" + RUY_LOPEZ + "\n" + Fen.START_POSITION + "\n";
+		List<Epd> records = Epd.load(new BufferedReader(new StringReader(file)));
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals(Fen.parse(Fen.START_POSITION), records.get(1).getPosition());
+	}
+
+}
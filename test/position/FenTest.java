@@ -0,0 +1,134 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import org.junit.Assert;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Fen round trips and the records it has to reject (see the class comment of Fen).
+ */
+public class FenTest
+    extends Object
+{
+
+	private static void assertRejected(String fen)
+	{
+		try
+		{
+			Fen.parse(fen);
+			Assert.fail("accepted " + fen);
+		} catch(IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void roundTrips()
+	{
+		String[] fens = new String[] {
+			Fen.START_POSITION,
+			PerftTest.KIWIPETE,
+			PerftTest.ENDGAME,
+			PerftTest.PROMOTIONS,
+			PerftTest.CASTLING_CHECKS,
+			"rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3",
+			"rnbqkbnr/pppp1ppp/8/8/4pP2/8/PPPPP1PP/RNBQKBNR b KQkq f3 0 2",
+			"4k3/8/8/8/8/8/8/4K2R w K - 37 81",
+		};
+		for(String fen : fens)
+		{
+			Assert.assertEquals(fen, Fen.toFen(Fen.parse(fen)));
+		}
+	}
+
+	@Test
+	public void hashMatchesPlayedMoves()
+	{
+		Position played = Fen.parse(Fen.START_POSITION);
+		for(String san : new String[] {"e4", "d5", "e5", "f5"})
+		{
+			played.applyMove(San.parse(played, san));
+		}
+		Position parsed = Fen.parse(Fen.toFen(played));
+		Assert.assertEquals(played, parsed);
+		Assert.assertEquals(played.getHash(), parsed.getHash());
+		Assert.assertEquals("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3", Fen.toFen(parsed));
+	}
+
+	@Test
+	public void moveCountersAreOptional()
+	{
+		Position position = Fen.parse("4k3/8/8/8/8/8/8/4K3 b - -");
+		Assert.assertEquals(Position.BLACK, position.getSideToMove());
+		Assert.assertEquals(0, position.getHalfmoveClock());
+		Assert.assertEquals(1, position.getFullmoveNumber());
+	}
+
+	@Test
+	public void parsesIntoReusedPosition()
+	{
+		Position position = Fen.parse(PerftTest.KIWIPETE);
+		Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 1", 0, position);
+		Assert.assertEquals(Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), position);
+		Assert.assertEquals(Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 1").getHash(), position.getHash());
+	}
+
+	@Test
+	public void rejectsBadBoards()
+	{
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/4K2 w - - 0 1");        // rank 1 is 7 squares
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/4K4 w - - 0 1");        // rank 1 is 9 squares
+		FenTest.assertRejected("4k3/8/8/8/8/8/4K3 w - - 0 1");          // 7 ranks
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/8 w - - 0 1");          // no white king
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/3KK3 w - - 0 1");       // two white kings
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/P3K3 w - - 0 1");       // pawn on rank 1
+		FenTest.assertRejected("4k2P/8/8/8/8/8/8/4K3 w - - 0 1");       // pawn on rank 8
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/4K3 x - - 0 1");        // side to move
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/4K3 w X - 0 1");        // castling character
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/4K3 w");                // missing fields
+	}
+
+	@Test
+	public void rejectsCastlingRightsWithoutKingAndRook()
+	{
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/4K3 w K - 0 1");        // no rook on h1
+		FenTest.assertRejected("4k3/8/8/8/8/8/8/R3K3 w K - 0 1");       // the rook is on a1
+		FenTest.assertRejected("r3k3/8/8/8/8/8/8/3K3R w Kq - 0 1");     // the king is not on e1
+		FenTest.assertRejected("r2k4/8/8/8/8/8/8/4K2R w Kq - 0 1");     // nor on e8
+		Fen.parse("r3k3/8/8/8/8/8/8/4K2R w Kq - 0 1");
+	}
+
+	@Test
+	public void rejectsEnPassantWithoutDoublePush()
+	{
+		FenTest.assertRejected("4k3/8/8/3PN3/8/8/8/4K3 w - e6 0 1");    // White's own knight in front of e6
+		FenTest.assertRejected("4k3/8/8/3Pn3/8/8/8/4K3 w - e6 0 1");    // a knight, not a pawn
+		FenTest.assertRejected("4k3/4p3/8/3Pp3/8/8/8/4K3 w - e6 0 1");  // e7 is not empty
+		FenTest.assertRejected("4k3/8/4p3/3Pp3/8/8/8/4K3 w - e6 0 1");  // e6 is not empty
+		FenTest.assertRejected("4k3/8/8/3Pp3/8/8/8/4K3 w - e3 0 1");    // wrong rank for white to move
+		FenTest.assertRejected("4k3/8/8/8/3pP3/8/8/4K3 b - e6 0 1");    // wrong rank for black to move
+		Fen.parse("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1");
+		Fen.parse("4k3/8/8/8/3pP3/8/8/4K3 b - e3 0 1");
+	}
+
+	@Test
+	public void noCastlingWithoutRook()
+	{
+		// a right set directly, bypassing Fen's checks, still needs its rook
+		Position position = Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 1");
+		position.setCastlingRights(Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateMoves(position, moves, 0);
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			Assert.assertFalse(Moves.toString(moves[moveIdx]), Moves.isCastle(moves[moveIdx]));
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import org.junit.Assert;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Move generation checked by perft: the number of leaf nodes of the legal move tree to a fixed depth, against the
+ * published counts for the standard test positions (see https://www.chessprogramming.org/Perft_Results). Between them
+ * they cover castling through and out of check, en passant (including the discovered checks it can open), promotions
+ * and pins. Every move is made and unmade on one Position, which has to come back exactly as it was.
+ */
+public class PerftTest
+    extends Object
+{
+
+	public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+	public static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+	public static final String PROMOTIONS = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+	public static final String CASTLING_CHECKS = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+	/**
+	 * The number of leaves depth plies below position, which is restored after every move.
+	 */
+	public static long perft(Position position, int depth)
+	{
+		if(depth == 0)
+		{
+			return 1;
+		}
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateMoves(position, moves, 0);
+		int sideToMove = position.getSideToMove();
+		long numLeaves = 0;
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			Position before = position.copy();
+			position.makeMove(moves[moveIdx]);
+			if(!position.isInCheck(sideToMove))
+			{
+				numLeaves += PerftTest.perft(position, depth - 1);
+			}
+			position.unmakeMove(moves[moveIdx]);
+			Assert.assertEquals("unmake " + Moves.toString(moves[moveIdx]) + " in " + Fen.toFen(before), before, position);
+			Assert.assertEquals(before.getHash(), position.getHash());
+			Assert.assertEquals(before.getHalfmoveClock(), position.getHalfmoveClock());
+		}
+		return numLeaves;
+	}
+
+	private static void assertPerft(String fen, long... expectedNumLeaves)
+	{
+		Position position = Fen.parse(fen);
+		for(int depth = 1; depth <= expectedNumLeaves.length; ++depth)
+		{
+			Assert.assertEquals(fen + " at depth " + depth, expectedNumLeaves[depth - 1], PerftTest.perft(position, depth));
+		}
+		Assert.assertEquals(Fen.parse(fen).getHash(), position.getHash());
+	}
+
+	@Test
+	public void startPosition()
+	{
+		PerftTest.assertPerft(Fen.START_POSITION, 20, 400, 8902, 197281);
+	}
+
+	@Test
+	public void kiwipete()
+	{
+		PerftTest.assertPerft(KIWIPETE, 48, 2039, 97862);
+	}
+
+	@Test
+	public void endgame()
+	{
+		PerftTest.assertPerft(ENDGAME, 14, 191, 2812, 43238);
+	}
+
+	@Test
+	public void promotions()
+	{
+		PerftTest.assertPerft(PROMOTIONS, 6, 264, 9467);
+	}
+
+	@Test
+	public void castlingChecks()
+	{
+		PerftTest.assertPerft(CASTLING_CHECKS, 44, 1486, 62379);
+	}
+
+	@Test
+	public void generateLegalMovesMatchesPerft()
+	{
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		for(String fen : new String[] {Fen.START_POSITION, KIWIPETE, ENDGAME, PROMOTIONS, CASTLING_CHECKS})
+		{
+			Position position = Fen.parse(fen);
+			Assert.assertEquals(fen, PerftTest.perft(position, 1), MoveGenerator.generateLegalMoves(position, moves));
+		}
+	}
+
+	@Test
+	public void applyMoveMatchesMakeMove()
+	{
+		Position position = Fen.parse(KIWIPETE);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			Position applied = position.copy();
+			applied.applyMove(moves[moveIdx]);
+			Position made = position.copy();
+			made.makeMove(moves[moveIdx]);
+			Assert.assertEquals(Moves.toString(moves[moveIdx]), made, applied);
+			Assert.assertEquals(Fen.parse(Fen.toFen(applied)).getHash(), applied.getHash());
+		}
+	}
+
+}
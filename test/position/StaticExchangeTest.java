@@ -0,0 +1,50 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import org.junit.Assert;
+import org.junit.Test;
+
+
+// JAVA PROJECT IMPORTS
+
+
+public class StaticExchangeTest
+    extends Object
+{
+
+	private static int evaluate(String fen, String san)
+	{
+		Position position = Fen.parse(fen);
+		return StaticExchange.evaluate(position, San.parse(position, san));
+	}
+
+	@Test
+	public void undefendedPiece()
+	{
+		Assert.assertEquals(StaticExchange.VALUES[Position.KNIGHT], StaticExchangeTest.evaluate("4k3/8/8/3n4/4P3/8/8/4K3 w - - 0 1", "exd5"));
+	}
+
+	@Test
+	public void defendedPawnTakenByQueen()
+	{
+		Assert.assertEquals(StaticExchange.VALUES[Position.PAWN] - StaticExchange.VALUES[Position.QUEEN],
+            StaticExchangeTest.evaluate("4k3/8/4p3/3p4/8/8/3Q4/4K3 w - - 0 1", "Qxd5"));
+	}
+
+	@Test
+	public void xrayRecapture()
+	{
+		// Rxd5 exd5 Rxd5: the second rook behind the first wins a pawn and a knight for a rook
+		Assert.assertEquals(StaticExchange.VALUES[Position.KNIGHT] - StaticExchange.VALUES[Position.ROOK] + StaticExchange.VALUES[Position.PAWN],
+            StaticExchangeTest.evaluate("4k3/8/4p3/3n4/8/8/3R4/3RK3 w - - 0 1", "Rxd5"));
+	}
+
+	@Test
+	public void enPassant()
+	{
+		Assert.assertEquals(StaticExchange.VALUES[Position.PAWN],
+            StaticExchangeTest.evaluate("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1", "dxe6"));
+	}
+
+}
@@ -0,0 +1,276 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.moveorder.CustomMoveOrderer;
+import src.pas.chess.position.Epd;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.StaticExchange;
+
+
+/**
+ * Allocation regression check: runs the hot paths of the search over a set of positions, measures how many bytes each
+ * allocates per unit of work (per searched node, per evaluated leaf, per exchange evaluated) with the JVM's per-thread
+ * allocation counter, and fails when a path allocates more than its budget.
+ *
+ * The budgets are the constants below, committed with the code they hold to: a change that makes a path allocate more
+ * has to raise its budget in the same commit, so GC load cannot grow unnoticed. They are targets, not measurements: the
+ * work done per node, leaf or capture should allocate nothing, so a budget only leaves room for what a path allocates
+ * once per call (a search's result, say) spread over the work of that call. Each path is run a few times before it
+ * is measured so that the JIT (and its escape analysis) has settled.
+ *
+ * That per-call share shrinks as a search gets deeper, so bytes per node are only comparable at one depth: the searches
+ * run to SEARCH_DEPTH, which the budgets are set for. Move lists are generated outside of what a path measures.
+ *
+ * The paths are those of AlphaBetaAgent's in-place search (PositionSearcher), of CustomHeuristics on standalone
+ * positions, of static exchange evaluation, which ranks captures for both PositionSearcher and CustomMoveOrderer, and
+ * of CustomMoveOrderer.order's ranking of a capture child (CustomMoveOrderer.getExchangeValue).
+ * A DFSTreeNode needs a Game, which only SEPIA's Planner makes, so what order adds around that ranking (converting
+ * each node's Game and the lists of nodes) is not covered.
+ *
+ * Exits with status 1 if a budget is exceeded.
+ *
+ * usage: java src.pas.chess.tools.AllocationBudget <positionsFile|->
+ */
+public class AllocationBudget
+    extends Object
+{
+
+	public static final int SEARCH_DEPTH = 3; // the searches' depth (the quiescence search's is one less)
+	public static final int NUM_WARMUP_ROUNDS = 3;
+
+	// bytes per unit of work, see the class comment before raising one
+	public static final double SEARCH_BYTES_PER_NODE = 8;
+	public static final double QUIESCENCE_BYTES_PER_NODE = 16;
+	public static final double EVALUATION_BYTES_PER_LEAF = 8;
+	public static final double EXCHANGE_BYTES_PER_CAPTURE = 8;
+	public static final double ORDERING_BYTES_PER_CAPTURE = 8;
+
+	public static class Path
+        extends Object
+	{
+		private final String name;
+		private final String unit;
+		private final double budget;
+		private final ToLongFunction<Position> work; // runs the path on a position, returns the units of work done
+
+		public Path(String name, String unit, double budget, ToLongFunction<Position> work)
+		{
+			this.name = name;
+			this.unit = unit;
+			this.budget = budget;
+			this.work = work;
+		}
+
+		public String getName() { return this.name; }
+		public String getUnit() { return this.unit; }
+		public double getBudget() { return this.budget; }
+		public ToLongFunction<Position> getWork() { return this.work; }
+	}
+
+	private final List<Position> positions;
+	private final List<Path> paths;
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	public AllocationBudget(List<Position> positions)
+	{
+		this.positions = positions;
+		this.paths = AllocationBudget.makePaths();
+		this.threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		this.threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	public List<Position> getPositions() { return this.positions; }
+	public List<Path> getPaths() { return this.paths; }
+
+	/**
+	 * The measured paths. Every path reuses its searcher and scratch arrays across positions, so only what the path
+	 * allocates per unit of work is counted, not its setup.
+	 */
+	public static List<Path> makePaths()
+	{
+		List<Path> paths = new ArrayList<Path>();
+
+		PositionSearcher searcher = new PositionSearcher(SEARCH_DEPTH, null);
+		searcher.setTranspositionTable(null);
+		searcher.setQuiescent(false);
+		paths.add(new Path("search", "node", SEARCH_BYTES_PER_NODE,
+            position -> searcher.search(position).getNumNodes()));
+
+		PositionSearcher quiescenceSearcher = new PositionSearcher(SEARCH_DEPTH - 1, null);
+		quiescenceSearcher.setTranspositionTable(null);
+		quiescenceSearcher.setQuiescent(true);
+		paths.add(new Path("search.quiescence", "node", QUIESCENCE_BYTES_PER_NODE,
+            position -> quiescenceSearcher.search(position).getNumNodes()));
+
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		Position child = new Position();
+		paths.add(new Path("eval", "leaf", EVALUATION_BYTES_PER_LEAF, position -> {
+			int numMoves = AllocationBudget.generateLegalMoves(position, moves, child);
+			for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+			{
+				child.copyFrom(position);
+				child.applyMove(moves[moveIdx]);
+				CustomHeuristics.getMaxPlayerHeuristicValue(child, position.getSideToMove());
+			}
+			return numMoves;
+		}));
+
+		paths.add(new Path("moveorder.see", "capture", EXCHANGE_BYTES_PER_CAPTURE, position -> {
+			int numMoves = AllocationBudget.generateLegalMoves(position, moves, child);
+			long numCaptures = 0;
+			for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+			{
+				if(Moves.isCapture(moves[moveIdx]))
+				{
+					StaticExchange.evaluate(position, moves[moveIdx]);
+					numCaptures += 1;
+				}
+			}
+			return numCaptures;
+		}));
+
+		// what order(parent, nodes) does per capture child, on the parent's pseudo-legal moves as order has them
+		int[] gains = StaticExchange.newGains();
+		paths.add(new Path("moveorder.order", "capture", ORDERING_BYTES_PER_CAPTURE, position -> {
+			int numMoves = MoveGenerator.generateMoves(position, moves, 0);
+			long numCaptures = 0;
+			for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+			{
+				if(Moves.isCapture(moves[moveIdx]))
+				{
+					child.copyFrom(position);
+					child.applyMove(moves[moveIdx]);
+					CustomMoveOrderer.getExchangeValue(position, moves, numMoves, child, gains);
+					numCaptures += 1;
+				}
+			}
+			return numCaptures;
+		}));
+		return paths;
+	}
+
+	/**
+	 * MoveGenerator.generateLegalMoves in scratch instead of a position of its own, so that a path does not count it.
+	 */
+	private static int generateLegalMoves(Position position, int[] moves, Position scratch)
+	{
+		int numPseudoLegalMoves = MoveGenerator.generateMoves(position, moves, 0);
+		int numLegalMoves = 0;
+		for(int moveIdx = 0; moveIdx < numPseudoLegalMoves; ++moveIdx)
+		{
+			scratch.copyFrom(position);
+			scratch.applyMove(moves[moveIdx]);
+			if(!scratch.isInCheck(position.getSideToMove()))
+			{
+				moves[numLegalMoves++] = moves[moveIdx];
+			}
+		}
+		return numLegalMoves;
+	}
+
+	/**
+	 * Run path over every position, NUM_WARMUP_ROUNDS times unmeasured and then once measured.
+	 * @return the bytes the measured round allocated per unit of work
+	 */
+	public double measure(Path path)
+	{
+		for(int roundIdx = 0; roundIdx < AllocationBudget.NUM_WARMUP_ROUNDS; ++roundIdx)
+		{
+			this.run(path);
+		}
+		long threadId = Thread.currentThread().getId();
+		long bytesBefore = this.threadBean.getThreadAllocatedBytes(threadId);
+		long numUnits = this.run(path);
+		long bytesAfter = this.threadBean.getThreadAllocatedBytes(threadId);
+		return numUnits > 0 ? (bytesAfter - bytesBefore) / (double)numUnits : 0.0;
+	}
+
+	private long run(Path path)
+	{
+		long numUnits = 0;
+		for(Position position : this.getPositions())
+		{
+			numUnits += path.getWork().applyAsLong(position);
+		}
+		return numUnits;
+	}
+
+	/**
+	 * Measure every path and print one line per path.
+	 * @return whether every path stayed within its budget
+	 */
+	public boolean check()
+	{
+		boolean isWithinBudget = true;
+		for(Path path : this.getPaths())
+		{
+			double bytesPerUnit = this.measure(path);
+			boolean isPathWithinBudget = bytesPerUnit <= path.getBudget();
+			isWithinBudget &= isPathWithinBudget;
+			System.out.println(String.format("%-20s %10.1f bytes/%-8s budget %8.1f %s", path.getName(), bytesPerUnit,
+                path.getUnit(), path.getBudget(), isPathWithinBudget ? "ok" : "OVER BUDGET"));
+		}
+		return isWithinBudget;
+	}
+
+	public static List<Position> readPositions(BufferedReader reader)
+        throws IOException
+	{
+		List<Position> positions = new ArrayList<Position>();
+		String line = null;
+		while((line = reader.readLine()) != null)
+		{
+			line = line.trim();
+			if(!line.isEmpty() && !line.startsWith("#"))
+			{
+				positions.add(Epd.parse(line).getPosition());
+			}
+		}
+		return positions;
+	}
+
+	public static void main(String[] args)
+        throws IOException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("AllocationBudget.main [ERROR]: must specify a positions file (or - for stdin)");
+			System.exit(-1);
+		}
+
+		List<Position> positions = null;
+		try(BufferedReader reader = new BufferedReader(args[0].equals("-") ? new InputStreamReader(System.in) : new FileReader(args[0])))
+		{
+			positions = AllocationBudget.readPositions(reader);
+		}
+		if(positions.isEmpty())
+		{
+			System.err.println("AllocationBudget.main [ERROR]: no positions in " + args[0]);
+			System.exit(-1);
+		}
+
+		boolean isWithinBudget = new AllocationBudget(positions).check();
+		if(!isWithinBudget)
+		{
+			System.err.println("AllocationBudget.main [ERROR]: allocation budget exceeded");
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.position.Epd;
+import src.pas.chess.position.Moves;
+
+
+/**
+ * Headless batch analysis: reads one position (FEN or EPD) per line, searches every position to a fixed depth
+ * in parallel on a fork-join pool, and streams one CSV row per position to stdout.
+ *
+ * Positions are read and searched in fixed-size chunks, so memory stays bounded no matter how large the input is,
+ * and rows come out in input order as soon as their chunk finishes.
+ * For EPD records the row also carries the record's id and whether the chosen move satisfies its bm/am operations
+ * (left blank when the record has neither).
+ *
+ * usage: java src.pas.chess.tools.BatchRunner <positionsFile|-> <maxDepth> [numThreads] [chunkSize]
+ */
+public class BatchRunner
+    extends Object
+{
+
+	public static final String HEADER = "position_idx,id,best_move,score,depth,nodes,runtime_ms,solved";
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	private final int maxDepth;
+	private final int chunkSize;
+	private final ForkJoinPool threadPool;
+
+	public BatchRunner(int maxDepth, int numThreads, int chunkSize)
+	{
+		this.maxDepth = maxDepth;
+		this.chunkSize = chunkSize;
+		this.threadPool = new ForkJoinPool(numThreads);
+	}
+
+	public int getMaxDepth() { return this.maxDepth; }
+	public int getChunkSize() { return this.chunkSize; }
+	private ForkJoinPool getThreadPool() { return this.threadPool; }
+
+	/**
+	 * Search every position read from reader and write one row per position to writer.
+	 * Lines that are empty or start with '#' are skipped, lines that fail to parse are reported on stderr.
+	 * @return the number of positions searched
+	 */
+	public long run(BufferedReader reader, BufferedWriter writer)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		writer.write(BatchRunner.HEADER);
+		writer.newLine();
+
+		Epd[] records = new Epd[this.getChunkSize()];
+		long[] positionIdxs = new long[this.getChunkSize()];
+		PositionSearcher.SearchResult[] results = new PositionSearcher.SearchResult[this.getChunkSize()];
+
+		long numPositions = 0;
+		long lineIdx = 0;
+		String line = null;
+		boolean isDone = false;
+		while(!isDone)
+		{
+			// fill a chunk
+			int chunkLength = 0;
+			while(chunkLength < this.getChunkSize() && (line = reader.readLine()) != null)
+			{
+				lineIdx += 1;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+				try
+				{
+					records[chunkLength] = Epd.parse(line);
+					positionIdxs[chunkLength] = numPositions++;
+					chunkLength += 1;
+				} catch(RuntimeException e)
+				{
+					System.err.println("BatchRunner.run [WARNING]: skipping line " + lineIdx + ": " + e.getMessage());
+				}
+			}
+			isDone = line == null;
+
+			// search the chunk in parallel
+			final int numToSearch = chunkLength;
+			this.getThreadPool().submit(() -> IntStream.range(0, numToSearch).parallel().forEach(
+                positionIdx -> results[positionIdx] = new PositionSearcher(this.getMaxDepth()).search(records[positionIdx].getPosition())
+            )).get();
+
+			// stream the results (in input order) and drop the chunk
+			for(int positionIdx = 0; positionIdx < chunkLength; ++positionIdx)
+			{
+				Epd record = records[positionIdx];
+				PositionSearcher.SearchResult result = results[positionIdx];
+				String id = record.getId() != null ? record.getId() : "";
+				String solved = record.hasMoveOperations() ? (record.isSolvedBy(result.getBestMove()) ? "1" : "0") : "";
+				writer.write(positionIdxs[positionIdx] + "," + id + "," + Moves.toString(result.getBestMove()) + "," + result.getUtility() +
+                    "," + result.getDepth() + "," + result.getNumNodes() + "," + result.getRuntimeInMS() + "," + solved);
+				writer.newLine();
+				records[positionIdx] = null;
+				results[positionIdx] = null;
+			}
+			writer.flush();
+		}
+		return numPositions;
+	}
+
+	public void shutdown()
+	{
+		this.getThreadPool().shutdown();
+	}
+
+	public static void main(String[] args)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("BatchRunner.main [ERROR]: must specify a positions file (or - for stdin) and a max depth, " +
+                "optionally followed by the number of threads and the chunk size");
+			System.exit(-1);
+		}
+
+		int maxDepth = Integer.parseInt(args[1]);
+		int numThreads = args.length >= 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int chunkSize = args.length >= 4 ? Integer.parseInt(args[3]) : BatchRunner.DEFAULT_CHUNK_SIZE;
+
+		BatchRunner runner = new BatchRunner(maxDepth, numThreads, chunkSize);
+		long startTime = System.nanoTime();
+		long numPositions = 0;
+		try(BufferedReader reader = new BufferedReader(args[0].equals("-") ? new InputStreamReader(System.in) : new FileReader(args[0]));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out)))
+		{
+			numPositions = runner.run(reader, writer);
+		} finally
+		{
+			runner.shutdown();
+		}
+		long runtimeInMS = (System.nanoTime() - startTime) / 1000000;
+		System.err.println("BatchRunner.main [INFO]: searched " + numPositions + " positions in " + runtimeInMS + "ms");
+	}
+
+}
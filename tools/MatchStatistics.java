@@ -0,0 +1,163 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Running statistics of a match between two engines, from the point of view of the first one: wins, draws and
+ * losses, the Elo difference they imply with its 95% confidence interval, and the log-likelihood ratio of a
+ * sequential probability ratio test (SPRT) between two Elo hypotheses.
+ *
+ * The LLR uses the usual normal approximation of the generalized SPRT on the logistic Elo model: with s the mean score
+ * and v the variance of a game's score, LLR = n (s1 - s0) (2 s - s0 - s1) / (2 v), where s0 and s1 are the expected
+ * scores under elo0 and elo1. The test accepts elo1 when the LLR reaches getUpperBound and elo0 at getLowerBound.
+ *
+ * Safe to update from several threads.
+ */
+public class MatchStatistics
+    extends Object
+{
+
+	private static final double Z_95 = 1.959963984540054;
+
+	private final double elo0;
+	private final double elo1;
+	private final double alpha; // probability of accepting elo1 when elo0 is true
+	private final double beta;  // probability of accepting elo0 when elo1 is true
+	private long numWins;
+	private long numDraws;
+	private long numLosses;
+
+	public MatchStatistics(double elo0, double elo1, double alpha, double beta)
+	{
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.numWins = 0;
+		this.numDraws = 0;
+		this.numLosses = 0;
+	}
+
+	public double getElo0() { return this.elo0; }
+	public double getElo1() { return this.elo1; }
+	public double getAlpha() { return this.alpha; }
+	public double getBeta() { return this.beta; }
+	public synchronized long getNumWins() { return this.numWins; }
+	public synchronized long getNumDraws() { return this.numDraws; }
+	public synchronized long getNumLosses() { return this.numLosses; }
+	public synchronized long getNumGames() { return this.numWins + this.numDraws + this.numLosses; }
+
+	/**
+	 * @param score the first engine's score in a game: 1, 0.5 or 0
+	 */
+	public synchronized void add(double score)
+	{
+		if(score > 0.5)
+		{
+			this.numWins += 1;
+		} else if(score < 0.5)
+		{
+			this.numLosses += 1;
+		} else
+		{
+			this.numDraws += 1;
+		}
+	}
+
+	public synchronized double getScore()
+	{
+		long numGames = this.getNumGames();
+		return numGames > 0 ? (this.numWins + 0.5 * this.numDraws) / numGames : 0.5;
+	}
+
+	/**
+	 * The variance of one game's score around the mean score.
+	 */
+	public synchronized double getScoreVariance()
+	{
+		long numGames = this.getNumGames();
+		if(numGames == 0)
+		{
+			return 0.0;
+		}
+		double score = this.getScore();
+		return (this.numWins * (1.0 - score) * (1.0 - score)
+            + this.numDraws * (0.5 - score) * (0.5 - score)
+            + this.numLosses * score * score) / numGames;
+	}
+
+	public synchronized double getElo()
+	{
+		return MatchStatistics.toElo(this.getScore());
+	}
+
+	/**
+	 * Half the width of the 95% confidence interval of getElo.
+	 */
+	public synchronized double getEloError()
+	{
+		long numGames = this.getNumGames();
+		if(numGames == 0)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double scoreError = Z_95 * Math.sqrt(this.getScoreVariance() / numGames);
+		double score = this.getScore();
+		return (MatchStatistics.toElo(score + scoreError) - MatchStatistics.toElo(score - scoreError)) / 2.0;
+	}
+
+	public synchronized double getLogLikelihoodRatio()
+	{
+		long numGames = this.getNumGames();
+		double variance = this.getScoreVariance();
+		if(numGames == 0 || variance == 0.0)
+		{
+			return 0.0;
+		}
+		double score0 = MatchStatistics.toScore(this.getElo0());
+		double score1 = MatchStatistics.toScore(this.getElo1());
+		return numGames * (score1 - score0) * (2.0 * this.getScore() - score0 - score1) / (2.0 * variance);
+	}
+
+	public double getLowerBound() { return Math.log(this.getBeta() / (1.0 - this.getAlpha())); }
+	public double getUpperBound() { return Math.log((1.0 - this.getBeta()) / this.getAlpha()); }
+
+	/**
+	 * Has the SPRT reached a decision (see getLowerBound and getUpperBound)?
+	 */
+	public synchronized boolean isDecided()
+	{
+		double llr = this.getLogLikelihoodRatio();
+		return llr <= this.getLowerBound() || llr >= this.getUpperBound();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		double llr = this.getLogLikelihoodRatio();
+		String decision = llr >= this.getUpperBound() ? "H1 accepted" : llr <= this.getLowerBound() ? "H0 accepted" : "continue";
+		return String.format("games %d W %d D %d L %d score %.3f elo %.1f +- %.1f LLR %.2f [%.2f, %.2f] (elo0 %.1f, elo1 %.1f) %s",
+            this.getNumGames(), this.numWins, this.numDraws, this.numLosses, this.getScore(), this.getElo(),
+            this.getEloError(), llr, this.getLowerBound(), this.getUpperBound(), this.getElo0(), this.getElo1(), decision);
+	}
+
+	/**
+	 * The Elo difference that makes score the expected score, clamped away from the infinities at 0 and 1.
+	 */
+	public static double toElo(double score)
+	{
+		double clampedScore = Math.max(1e-6, Math.min(1.0 - 1e-6, score));
+		return -400.0 * Math.log10(1.0 / clampedScore - 1.0);
+	}
+
+	public static double toScore(double elo)
+	{
+		return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+	}
+
+}
@@ -0,0 +1,267 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.agents.MinimaxAgent;
+import src.pas.chess.engine.GameContext;
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.engine.TimeManager;
+import src.pas.chess.engine.TranspositionTable;
+import src.pas.chess.engine.VirtualClock;
+import src.pas.chess.position.GameAdapter;
+import src.pas.chess.position.Position;
+import src.pas.chess.streaming.GameRecordWriter;
+
+
+/**
+ * Self-play without SEPIA's unit actions: a move goes straight from one side's search to the next position, instead of
+ * being turned into SEPIA Actions that middleStep replays through the Planner over many environment steps.
+ *
+ * Two ways to play:
+ * - on a framework Game (play(Game, ...)): every ply builds a DFSTreeNode for the side to move and runs the agent's own
+ *   searcher on it (AlphaBetaAgent.AlphaBetaSearcher or MinimaxAgent.MinimaxSearcher), and the next Game is the one
+ *   of the child it picked. A Game can only come from the Planner, so this is for code already running under SEPIA.
+ * - on a standalone Position (play(Position, ...), and main): each side searches with its own PositionSearcher,
+ *   the in-place searcher of AlphaBetaAgent, so games need nothing from SEPIA and run in parallel.
+ *
+ * Either way the game is tracked by a GameContext (rules, repetitions, result) and time is kept by a VirtualClock charged
+ * with the CPU time of each search: a side whose clock runs out loses on time. Each move's search is budgeted from its
+ * side's clock by a TimeManager (see TimeManager.forClock), as AlphaBetaAgent budgets its moves, so the time control
+ * decides how deep a side gets. A TimeManager runs on wall time, which is never less than the CPU time the clock is
+ * charged: on a busy machine a search stops within its budget early, never late. With -Dchess.search.hashMB, each side
+ * of each game searches with a transposition table of its own (TranspositionTable.newOfDefaultSize), kept for the whole
+ * game, so neither the opponent nor the games running alongside read its entries. Each game can be recorded with a
+ * GameRecordWriter, one file per game, and main prints one CSV row per game.
+ *
+ * usage: java src.pas.chess.tools.SelfPlaySimulator <openingsFile|-|startpos> <maxDepth> <initialTimeInMS> <incrementInMS> [numGames] [numThreads] [recordDirectory]
+ */
+public class SelfPlaySimulator
+    extends Object
+{
+
+	public static final String HEADER = "game_idx,result,termination,plies,white_time_left_ms,black_time_left_ms";
+	public static final String ALPHA_BETA_AGENT = "alphabeta";
+	public static final String MINIMAX_AGENT = "minimax";
+
+	private final String agentType;
+	private final int maxDepth;
+	private final long initialTimeInMS;
+	private final long incrementInMS;
+	private final int maxPlies;
+
+	/**
+	 * @param agentType ALPHA_BETA_AGENT or MINIMAX_AGENT, whose searcher plays games on a framework Game
+	 */
+	public SelfPlaySimulator(String agentType, int maxDepth, long initialTimeInMS, long incrementInMS, int maxPlies)
+	{
+		this.agentType = agentType;
+		this.maxDepth = maxDepth;
+		this.initialTimeInMS = initialTimeInMS;
+		this.incrementInMS = incrementInMS;
+		this.maxPlies = maxPlies;
+	}
+
+	public String getAgentType() { return this.agentType; }
+	public int getMaxDepth() { return this.maxDepth; }
+	public long getInitialTimeInMS() { return this.initialTimeInMS; }
+	public long getIncrementInMS() { return this.incrementInMS; }
+	public int getMaxPlies() { return this.maxPlies; }
+
+	/**
+	 * Play a game from start (a framework Game, e.g. the Planner's) with the agent's searcher on both sides.
+	 * @param recordWriter where to record the moves, or null
+	 * @return the finished game (its clock is left in clock)
+	 */
+	public GameContext play(Game start, VirtualClock clock, GameRecordWriter recordWriter)
+        throws Exception
+	{
+		Game game = start;
+		GameContext context = new GameContext(GameAdapter.toPosition(game), this.getMaxPlies());
+		TranspositionTable[] transpositionTables = new TranspositionTable[] {TranspositionTable.newOfDefaultSize(),
+            TranspositionTable.newOfDefaultSize()};
+		while(!context.isOver())
+		{
+			Position before = context.getPosition().copy();
+			int color = before.getSideToMove();
+			DFSTreeNode root = new DFSTreeNode(game, game.getCurrentPlayer());
+			TimeManager timeManager = TimeManager.forClock(clock.getTimeLeftInMS(color), clock.getIncrementInMS(), -1,
+                before.getFullmoveNumber());
+
+			long startTime = VirtualClock.getThreadCpuTimeInMS();
+			timeManager.start();
+			DFSTreeNode bestNode = this.search(root, context, timeManager, transpositionTables[color]);
+			if(!clock.charge(color, VirtualClock.getThreadCpuTimeInMS() - startTime))
+			{
+				context.forfeitOnTime(color);
+				break;
+			}
+
+			game = bestNode.getGame();
+			if(recordWriter != null)
+			{
+				recordWriter.recordMove(before, game);
+			}
+			context.play(GameAdapter.findMove(before, game));
+		}
+		return context;
+	}
+
+	/**
+	 * @param timeManager the move's budgets, for the searchers that take them (MinimaxSearcher always searches to maxDepth)
+	 * @param transpositionTable the side to move's table, for AlphaBetaSearcher's in-place search, or null
+	 */
+	private DFSTreeNode search(DFSTreeNode root, GameContext context, TimeManager timeManager,
+                               TranspositionTable transpositionTable)
+        throws Exception
+	{
+		if(this.getAgentType().equals(SelfPlaySimulator.MINIMAX_AGENT))
+		{
+			MinimaxAgent.MinimaxSearcher searcher = new MinimaxAgent.MinimaxSearcher(root, this.getMaxDepth());
+			searcher.call();
+			return searcher.getBestNode();
+		}
+		AlphaBetaAgent.AlphaBetaSearcher searcher = new AlphaBetaAgent.AlphaBetaSearcher(root, this.getMaxDepth());
+		searcher.setHistory(context.getHistory());
+		searcher.setTimeManager(timeManager);
+		searcher.setTranspositionTable(transpositionTable);
+		searcher.call();
+		return searcher.getBestNode();
+	}
+
+	/**
+	 * Play a game from start with a fresh PositionSearcher, and a fresh transposition table, on each side.
+	 * @param recordWriter where to record the moves, or null
+	 * @return the finished game (its clock is left in clock)
+	 * @throws IOException if recordWriter has failed
+	 */
+	public GameContext play(Position start, VirtualClock clock, GameRecordWriter recordWriter)
+        throws IOException
+	{
+		GameContext context = new GameContext(start, this.getMaxPlies());
+		PositionSearcher[] searchers = new PositionSearcher[] {new PositionSearcher(this.getMaxDepth()), new PositionSearcher(this.getMaxDepth())};
+		for(PositionSearcher searcher : searchers)
+		{
+			searcher.setHistory(context.getHistory());
+			searcher.setTranspositionTable(TranspositionTable.newOfDefaultSize());
+		}
+		while(!context.isOver())
+		{
+			Position position = context.getPosition();
+			int color = position.getSideToMove();
+			TimeManager timeManager = TimeManager.forClock(clock.getTimeLeftInMS(color), clock.getIncrementInMS(), -1,
+                position.getFullmoveNumber());
+			searchers[color].setTimeManager(timeManager);
+
+			long startTime = VirtualClock.getThreadCpuTimeInMS();
+			timeManager.start();
+			int move = searchers[color].search(position).getBestMove();
+			if(!clock.charge(color, VirtualClock.getThreadCpuTimeInMS() - startTime))
+			{
+				context.forfeitOnTime(color);
+				break;
+			}
+
+			if(recordWriter != null)
+			{
+				recordWriter.recordMove(position.copy(), move);
+			}
+			context.play(move);
+		}
+		return context;
+	}
+
+	/**
+	 * Play numGames games on standalone positions, game gameIdx from opening gameIdx, on numThreads threads.
+	 * @param recordDirectory where to write game_<gameIdx>.csv for every game, or null
+	 * @return one CSV row per game, in game order
+	 * @throws ExecutionException if a game failed, e.g. its record could not be written
+	 */
+	public String[] run(List<Position> openings, int numGames, int numThreads, String recordDirectory)
+        throws InterruptedException, ExecutionException
+	{
+		String[] rows = new String[numGames];
+		ForkJoinPool threadPool = new ForkJoinPool(numThreads);
+		try
+		{
+			threadPool.submit(() -> IntStream.range(0, numGames).parallel().forEach(gameIdx -> {
+				GameRecordWriter recordWriter = recordDirectory != null
+                    ? GameRecordWriter.open(recordDirectory + "/game_" + gameIdx + ".csv") : null;
+				VirtualClock clock = new VirtualClock(this.getInitialTimeInMS(), this.getIncrementInMS());
+				GameContext context;
+				try
+				{
+					context = this.play(openings.get(gameIdx % openings.size()), clock, recordWriter);
+					if(recordWriter != null)
+					{
+						recordWriter.close();
+					}
+				} catch(IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+				String result = context.getResult() == GameContext.WHITE_WINS ? "1-0"
+                    : context.getResult() == GameContext.BLACK_WINS ? "0-1" : "1/2-1/2";
+				rows[gameIdx] = gameIdx + "," + result + "," + context.getTermination() + "," + context.getNumPlies() + "," +
+                    clock.getTimeLeftInMS(Position.WHITE) + "," + clock.getTimeLeftInMS(Position.BLACK);
+			})).get();
+		} finally
+		{
+			threadPool.shutdown();
+		}
+		return rows;
+	}
+
+	public static void main(String[] args)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 4)
+		{
+			System.err.println("SelfPlaySimulator.main [ERROR]: must specify an openings file (- for stdin, startpos for the " +
+                "start position), a max depth, the initial time and the increment (in ms), optionally followed by the " +
+                "number of games, the number of threads and a directory to record the games in");
+			System.exit(-1);
+		}
+
+		List<Position> openings = TournamentRunner.readOpenings(args[0]);
+		if(openings.isEmpty())
+		{
+			System.err.println("SelfPlaySimulator.main [ERROR]: no openings in " + args[0]);
+			System.exit(-1);
+		}
+		int maxDepth = Integer.parseInt(args[1]);
+		long initialTimeInMS = Long.parseLong(args[2]);
+		long incrementInMS = Long.parseLong(args[3]);
+		int numGames = args.length >= 5 ? Integer.parseInt(args[4]) : openings.size();
+		int numThreads = args.length >= 6 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		String recordDirectory = args.length >= 7 ? args[6] : null;
+
+		SelfPlaySimulator simulator = new SelfPlaySimulator(SelfPlaySimulator.ALPHA_BETA_AGENT, maxDepth, initialTimeInMS,
+            incrementInMS, GameContext.DEFAULT_MAX_PLIES);
+		long startTime = System.nanoTime();
+		String[] rows = simulator.run(openings, numGames, numThreads, recordDirectory);
+		long runtimeInMS = (System.nanoTime() - startTime) / 1000000;
+
+		System.out.println(SelfPlaySimulator.HEADER);
+		for(String row : rows)
+		{
+			System.out.println(row);
+		}
+		System.err.println("SelfPlaySimulator.main [INFO]: played " + numGames + " games in " + runtimeInMS + "ms (" +
+            (runtimeInMS > 0 ? numGames * 3600000L / runtimeInMS : numGames) + " games/hour)");
+	}
+
+}
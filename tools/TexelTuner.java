@@ -0,0 +1,411 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.FusedEvaluator;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Texel-style tuning of the evaluation weights against game results.
+ *
+ * Reads one labelled position per line: a FEN (or EPD) record followed by the result of the game it was taken from,
+ * from white's point of view, either as 1-0 / 0-1 / 1/2-1/2 (bare or as a c9 operation) or as a number in [0, 1],
+ * optionally in brackets, e.g.
+ *
+ *   r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - c9 "1/2-1/2";
+ *   8/5k2/8/8/8/8/2K5/4R3 w - - 0 60 [1.0]
+ *
+ * The positions should be quiet, since the evaluation is applied to them as they are, without a search.
+ *
+ * The evaluation is linear in the weights, so every position is evaluated exactly once, into the raw values of the
+ * terms (FusedEvaluator.evaluateTerms), kept in one flat int array. The mean squared error
+ *
+ *   E = 1/N sum (result - sigmoid(K * eval))^2
+ *
+ * and its gradient with respect to the weights are then a single parallel reduction over that array on a fork-join
+ * pool, which is what keeps millions of positions down to minutes. K is fitted first for the starting weights
+ * (those of CustomHeuristics' evaluator, so -Dchess.heuristics.weights sets them), then the weights are optimised
+ * by gradient descent (Adam) with K fixed and the best ones are written as a weights file FusedEvaluator.loadWeights
+ * reads. Only the term weights are tuned, constants inside a term are not.
+ *
+ * usage: java src.pas.chess.tools.TexelTuner <positionsFile|-> <outputWeightsFile> [numIterations] [numThreads]
+ */
+public class TexelTuner
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_ITERATIONS = 1000;
+	public static final int LOAD_CHUNK_SIZE = 65536;
+	public static final int REDUCTION_BLOCK_SIZE = 16384;
+
+	// K is searched on a log scale between these, the evaluation is in utility units (about 12 per pawn)
+	public static final double MIN_SCALING = 1e-4;
+	public static final double MAX_SCALING = 10.0;
+	public static final int NUM_SCALING_STEPS = 60;
+
+	// Adam, in units of each weight's starting magnitude so that small and large weights move at the same pace
+	public static final double LEARNING_RATE = 0.01;
+	public static final double FIRST_MOMENT_DECAY = 0.9;
+	public static final double SECOND_MOMENT_DECAY = 0.999;
+	public static final double EPSILON = 1e-12;
+
+	private final FusedEvaluator evaluator;
+	private final int numTerms;
+	private final ForkJoinPool threadPool;
+	private int[] termValues;   // [position * numTerms + term]
+	private float[] results;    // [position], 1 for a white win, 0.5 for a draw, 0 for a black win
+	private int numPositions;
+
+	public TexelTuner(FusedEvaluator evaluator, int numThreads)
+	{
+		this.evaluator = evaluator;
+		this.numTerms = evaluator.getNumTerms();
+		this.threadPool = new ForkJoinPool(numThreads);
+		this.termValues = new int[0];
+		this.results = new float[0];
+		this.numPositions = 0;
+	}
+
+	public FusedEvaluator getEvaluator() { return this.evaluator; }
+	public int getNumTerms() { return this.numTerms; }
+	public int getNumPositions() { return this.numPositions; }
+	private ForkJoinPool getThreadPool() { return this.threadPool; }
+
+	/**
+	 * Read and evaluate every labelled position from reader. Lines are parsed and evaluated in parallel, a chunk
+	 * at a time, and only their term values and results are kept.
+	 * Lines that are empty or start with '#' are skipped, lines that fail to parse are reported on stderr.
+	 * @return the number of positions loaded
+	 */
+	public int load(BufferedReader reader)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		String[] lines = new String[TexelTuner.LOAD_CHUNK_SIZE];
+		boolean[] isValid = new boolean[TexelTuner.LOAD_CHUNK_SIZE];
+		int numTerms = this.getNumTerms();
+
+		String line = null;
+		boolean isDone = false;
+		while(!isDone)
+		{
+			int chunkLength = 0;
+			while(chunkLength < lines.length && (line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if(!line.isEmpty() && !line.startsWith("#"))
+				{
+					lines[chunkLength++] = line;
+				}
+			}
+			isDone = line == null;
+
+			// evaluate the chunk in parallel straight into the arrays, then squeeze out the lines that failed
+			int firstPositionIdx = this.numPositions;
+			this.ensureCapacity(firstPositionIdx + chunkLength);
+			final int numToLoad = chunkLength;
+			this.getThreadPool().submit(() -> IntStream.range(0, numToLoad).parallel().forEach(
+                lineIdx -> isValid[lineIdx] = this.parse(lines[lineIdx], firstPositionIdx + lineIdx)
+            )).get();
+
+			int positionIdx = firstPositionIdx;
+			for(int lineIdx = 0; lineIdx < chunkLength; ++lineIdx)
+			{
+				if(isValid[lineIdx])
+				{
+					if(positionIdx != firstPositionIdx + lineIdx)
+					{
+						System.arraycopy(this.termValues, (firstPositionIdx + lineIdx) * numTerms,
+                            this.termValues, positionIdx * numTerms, numTerms);
+						this.results[positionIdx] = this.results[firstPositionIdx + lineIdx];
+					}
+					positionIdx += 1;
+				} else
+				{
+					System.err.println("TexelTuner.load [WARNING]: skipping " + lines[lineIdx]);
+				}
+				lines[lineIdx] = null;
+			}
+			this.numPositions = positionIdx;
+		}
+		return this.numPositions;
+	}
+
+	/**
+	 * Parse one labelled position and store its term values (white is MAX) and result at positionIdx.
+	 * @return false if the line cannot be used
+	 */
+	private boolean parse(String line, int positionIdx)
+	{
+		try
+		{
+			Position position = new Position();
+			int idx = Fen.parse(line, 0, position);
+			double result = TexelTuner.parseResult(line.substring(idx));
+			if(Double.isNaN(result) || position.getKingSquare(Position.WHITE) == Position.NO_SQUARE
+                || position.getKingSquare(Position.BLACK) == Position.NO_SQUARE)
+			{
+				return false;
+			}
+			this.getEvaluator().evaluateTerms(position, Position.WHITE, this.termValues, positionIdx * this.getNumTerms());
+			this.results[positionIdx] = (float)result;
+			return true;
+		} catch(RuntimeException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * @return the game result written after a FEN (from white's point of view), or NaN if there is none
+	 */
+	public static double parseResult(String text)
+	{
+		if(text.contains("1/2-1/2"))
+		{
+			return 0.5;
+		} else if(text.contains("1-0"))
+		{
+			return 1.0;
+		} else if(text.contains("0-1"))
+		{
+			return 0.0;
+		}
+
+		String number = text.replaceAll("[\\[\\]\";]|c9", " ").trim();
+		try
+		{
+			double result = Double.parseDouble(number);
+			return result >= 0.0 && result <= 1.0 ? result : Double.NaN;
+		} catch(NumberFormatException e)
+		{
+			return Double.NaN;
+		}
+	}
+
+	private void ensureCapacity(int numPositions)
+	{
+		if(numPositions > this.results.length)
+		{
+			int capacity = Math.max(numPositions, 2 * this.results.length);
+			this.termValues = Arrays.copyOf(this.termValues, capacity * this.getNumTerms());
+			this.results = Arrays.copyOf(this.results, capacity);
+		}
+	}
+
+	/**
+	 * The mean squared error of the predictions sigmoid(scaling * eval) for the given weights, and optionally its
+	 * gradient with respect to the weights.
+	 * @return {error, dE/dw_0, ..., dE/dw_n-1} (the gradient entries are 0 if not requested)
+	 */
+	public double[] computeError(double[] weights, double scaling, boolean withGradient)
+        throws InterruptedException, ExecutionException
+	{
+		int numBlocks = (this.getNumPositions() + TexelTuner.REDUCTION_BLOCK_SIZE - 1) / TexelTuner.REDUCTION_BLOCK_SIZE;
+		double[] sums = this.getThreadPool().submit(() -> IntStream.range(0, numBlocks).parallel()
+            .mapToObj(blockIdx -> this.computeBlockError(blockIdx, weights, scaling, withGradient))
+            .reduce(new double[this.getNumTerms() + 1], TexelTuner::add)
+        ).get();
+
+		for(int idx = 0; idx < sums.length; ++idx)
+		{
+			sums[idx] /= Math.max(this.getNumPositions(), 1);
+		}
+		return sums;
+	}
+
+	private double[] computeBlockError(int blockIdx, double[] weights, double scaling, boolean withGradient)
+	{
+		int numTerms = this.getNumTerms();
+		int[] termValues = this.termValues;
+		float[] results = this.results;
+		double[] sums = new double[numTerms + 1];
+
+		int lastPositionIdx = Math.min((blockIdx + 1) * TexelTuner.REDUCTION_BLOCK_SIZE, this.getNumPositions());
+		for(int positionIdx = blockIdx * TexelTuner.REDUCTION_BLOCK_SIZE; positionIdx < lastPositionIdx; ++positionIdx)
+		{
+			int offset = positionIdx * numTerms;
+			double eval = 0.0;
+			for(int termIdx = 0; termIdx < numTerms; ++termIdx)
+			{
+				eval += weights[termIdx] * termValues[offset + termIdx];
+			}
+			double prediction = 1.0 / (1.0 + Math.exp(-scaling * eval));
+			double residual = results[positionIdx] - prediction;
+			sums[0] += residual * residual;
+
+			if(withGradient)
+			{
+				// d/dw_i (r - p)^2 = -2 (r - p) p (1 - p) K t_i
+				double slope = -2.0 * residual * prediction * (1.0 - prediction) * scaling;
+				for(int termIdx = 0; termIdx < numTerms; ++termIdx)
+				{
+					sums[termIdx + 1] += slope * termValues[offset + termIdx];
+				}
+			}
+		}
+		return sums;
+	}
+
+	private static double[] add(double[] left, double[] right)
+	{
+		double[] sum = new double[left.length];
+		for(int idx = 0; idx < sum.length; ++idx)
+		{
+			sum[idx] = left[idx] + right[idx];
+		}
+		return sum;
+	}
+
+	/**
+	 * Find the K that minimises the error of the given weights (golden section search over log K).
+	 */
+	public double fitScaling(double[] weights)
+        throws InterruptedException, ExecutionException
+	{
+		double invPhi = (Math.sqrt(5.0) - 1.0) / 2.0;
+		double low = Math.log(TexelTuner.MIN_SCALING);
+		double high = Math.log(TexelTuner.MAX_SCALING);
+		double left = high - invPhi * (high - low);
+		double right = low + invPhi * (high - low);
+		double leftError = this.computeError(weights, Math.exp(left), false)[0];
+		double rightError = this.computeError(weights, Math.exp(right), false)[0];
+		for(int step = 0; step < TexelTuner.NUM_SCALING_STEPS; ++step)
+		{
+			if(leftError < rightError)
+			{
+				high = right;
+				right = left;
+				rightError = leftError;
+				left = high - invPhi * (high - low);
+				leftError = this.computeError(weights, Math.exp(left), false)[0];
+			} else
+			{
+				low = left;
+				left = right;
+				leftError = rightError;
+				right = low + invPhi * (high - low);
+				rightError = this.computeError(weights, Math.exp(right), false)[0];
+			}
+		}
+		return Math.exp((low + high) / 2.0);
+	}
+
+	/**
+	 * Optimise the weights with K fixed, starting from initialWeights.
+	 * @return the weights with the lowest error seen
+	 */
+	public double[] tune(double[] initialWeights, double scaling, int numIterations)
+        throws InterruptedException, ExecutionException
+	{
+		int numTerms = this.getNumTerms();
+		double[] scales = new double[numTerms];
+		for(int termIdx = 0; termIdx < numTerms; ++termIdx)
+		{
+			scales[termIdx] = initialWeights[termIdx] != 0.0 ? Math.abs(initialWeights[termIdx]) : 1.0;
+		}
+
+		double[] weights = Arrays.copyOf(initialWeights, numTerms);
+		double[] bestWeights = Arrays.copyOf(initialWeights, numTerms);
+		double bestError = Double.POSITIVE_INFINITY;
+		double[] firstMoments = new double[numTerms];
+		double[] secondMoments = new double[numTerms];
+
+		for(int iteration = 1; iteration <= numIterations; ++iteration)
+		{
+			double[] errorAndGradient = this.computeError(weights, scaling, true);
+			if(errorAndGradient[0] < bestError)
+			{
+				bestError = errorAndGradient[0];
+				bestWeights = Arrays.copyOf(weights, numTerms);
+			}
+			if(iteration % 50 == 1 || iteration == numIterations)
+			{
+				System.err.println("TexelTuner.tune [INFO]: iteration " + iteration + " error " + errorAndGradient[0]
+                    + " weights " + Arrays.toString(weights));
+			}
+
+			for(int termIdx = 0; termIdx < numTerms; ++termIdx)
+			{
+				// the step is taken in units of the weight's scale, so the gradient is scaled the same way
+				double gradient = errorAndGradient[termIdx + 1] * scales[termIdx];
+				firstMoments[termIdx] = FIRST_MOMENT_DECAY * firstMoments[termIdx] + (1.0 - FIRST_MOMENT_DECAY) * gradient;
+				secondMoments[termIdx] = SECOND_MOMENT_DECAY * secondMoments[termIdx]
+                    + (1.0 - SECOND_MOMENT_DECAY) * gradient * gradient;
+				double firstMoment = firstMoments[termIdx] / (1.0 - Math.pow(FIRST_MOMENT_DECAY, iteration));
+				double secondMoment = secondMoments[termIdx] / (1.0 - Math.pow(SECOND_MOMENT_DECAY, iteration));
+				weights[termIdx] -= LEARNING_RATE * scales[termIdx] * firstMoment / (Math.sqrt(secondMoment) + EPSILON);
+			}
+		}
+
+		double finalError = this.computeError(weights, scaling, false)[0];
+		return finalError < bestError ? weights : bestWeights;
+	}
+
+	public void shutdown()
+	{
+		this.getThreadPool().shutdown();
+	}
+
+	public static void main(String[] args)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("TexelTuner.main [ERROR]: must specify a labelled positions file (or - for stdin) and the " +
+                "weights file to write, optionally followed by the number of iterations and the number of threads");
+			System.exit(-1);
+		}
+
+		int numIterations = args.length >= 3 ? Integer.parseInt(args[2]) : TexelTuner.DEFAULT_NUM_ITERATIONS;
+		int numThreads = args.length >= 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		FusedEvaluator evaluator = CustomHeuristics.getEvaluator();
+		TexelTuner tuner = new TexelTuner(evaluator, numThreads);
+		try
+		{
+			long startTime = System.nanoTime();
+			try(BufferedReader reader = new BufferedReader(args[0].equals("-") ? new InputStreamReader(System.in) : new FileReader(args[0])))
+			{
+				tuner.load(reader);
+			}
+			System.err.println("TexelTuner.main [INFO]: loaded " + tuner.getNumPositions() + " positions in "
+                + (System.nanoTime() - startTime) / 1000000 + "ms");
+			if(tuner.getNumPositions() == 0)
+			{
+				System.err.println("TexelTuner.main [ERROR]: no labelled positions in " + args[0]);
+				System.exit(-1);
+			}
+
+			double[] initialWeights = evaluator.getWeights();
+			double scaling = tuner.fitScaling(initialWeights);
+			double initialError = tuner.computeError(initialWeights, scaling, false)[0];
+			System.err.println("TexelTuner.main [INFO]: K=" + scaling + " initial error " + initialError);
+
+			double[] weights = tuner.tune(initialWeights, scaling, numIterations);
+			double error = tuner.computeError(weights, scaling, false)[0];
+			evaluator.setWeights(weights);
+			evaluator.saveWeights(args[1], "tuned on " + tuner.getNumPositions() + " positions, K=" + scaling
+                + ", error " + initialError + " -> " + error);
+			System.err.println("TexelTuner.main [INFO]: error " + initialError + " -> " + error + ", wrote " + args[1]
+                + " in " + (System.nanoTime() - startTime) / 1000000 + "ms");
+		} finally
+		{
+			tuner.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,295 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.engine.GameContext;
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.engine.TranspositionTable;
+import src.pas.chess.heuristics.nnue.NnueEvaluator;
+import src.pas.chess.heuristics.nnue.NnueNetwork;
+import src.pas.chess.position.Epd;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Headless engine-vs-engine match: plays games between two PositionSearcher configurations on a bounded thread pool
+ * and aggregates the results into Elo and SPRT statistics (see MatchStatistics).
+ *
+ * No game goes through SEPIA or the Planner singleton. Each game carries its own GameContext and its own two
+ * searchers (and transposition tables, if the engines use them), so games share nothing but the read-only evaluation
+ * weights and any number of them can be queued: only numThreads are in memory and running at a time.
+ *
+ * Every opening (one FEN or EPD per line of the openings file, or the start position) is played twice with the
+ * engines swapping colors. One CSV row per finished game goes to stdout, in completion order, and the match stops
+ * early once the SPRT has decided.
+ *
+ * An engine is given as comma separated options: depth=N (required), quiescence, hash=MB, nnue=weightsFile,
+ * e.g. depth=4,quiescence,hash=16.
+ *
+ * usage: java src.pas.chess.tools.TournamentRunner <openingsFile|-|startpos> <engineA> <engineB> [numGames] [numThreads] [elo0] [elo1]
+ */
+public class TournamentRunner
+    extends Object
+{
+
+	public static final String HEADER = "game_idx,white,black,result,termination,plies";
+	public static final double DEFAULT_ELO0 = 0.0;
+	public static final double DEFAULT_ELO1 = 5.0;
+	public static final double DEFAULT_ALPHA = 0.05;
+	public static final double DEFAULT_BETA = 0.05;
+
+	/**
+	 * How to build one side's searcher for a game.
+	 */
+	public static class EngineSpec
+        extends Object
+	{
+		private final String name;
+		private final int maxDepth;
+		private final boolean isQuiescent;
+		private final int hashInMB;
+		private final NnueEvaluator nnueEvaluator;
+
+		public EngineSpec(String name, int maxDepth, boolean isQuiescent, int hashInMB, NnueEvaluator nnueEvaluator)
+		{
+			this.name = name;
+			this.maxDepth = maxDepth;
+			this.isQuiescent = isQuiescent;
+			this.hashInMB = hashInMB;
+			this.nnueEvaluator = nnueEvaluator;
+		}
+
+		public String getName() { return this.name; }
+		public int getMaxDepth() { return this.maxDepth; }
+		public boolean isQuiescent() { return this.isQuiescent; }
+		public int getHashInMB() { return this.hashInMB; }
+		public NnueEvaluator getNnueEvaluator() { return this.nnueEvaluator; }
+
+		/**
+		 * A fresh searcher (with a fresh transposition table if the engine has one), for one game.
+		 */
+		public PositionSearcher newSearcher()
+		{
+			PositionSearcher searcher = new PositionSearcher(this.getMaxDepth(), this.getNnueEvaluator());
+			searcher.setQuiescent(this.isQuiescent());
+			searcher.setTranspositionTable(this.getHashInMB() > 0 ? new TranspositionTable(this.getHashInMB()) : null);
+			return searcher;
+		}
+
+		/**
+		 * @param options e.g. "depth=4,quiescence,hash=16,nnue=net.nnue"
+		 */
+		public static EngineSpec parse(String options)
+            throws IOException
+		{
+			int maxDepth = -1;
+			boolean isQuiescent = false;
+			int hashInMB = 0;
+			NnueEvaluator nnueEvaluator = null;
+			for(String option : options.split(","))
+			{
+				String[] keyAndValue = option.trim().split("=", 2);
+				switch(keyAndValue[0])
+				{
+				case "depth":
+					maxDepth = Integer.parseInt(keyAndValue[1]);
+					break;
+				case "quiescence":
+					isQuiescent = keyAndValue.length < 2 || Boolean.parseBoolean(keyAndValue[1]);
+					break;
+				case "hash":
+					hashInMB = Integer.parseInt(keyAndValue[1]);
+					break;
+				case "nnue":
+					nnueEvaluator = new NnueEvaluator(NnueNetwork.load(keyAndValue[1]));
+					break;
+				default:
+					throw new IllegalArgumentException("TournamentRunner.EngineSpec.parse [ERROR]: unknown option " + option);
+				}
+			}
+			if(maxDepth <= 0)
+			{
+				throw new IllegalArgumentException("TournamentRunner.EngineSpec.parse [ERROR]: " + options + " has no depth");
+			}
+			return new EngineSpec(options, maxDepth, isQuiescent, hashInMB, nnueEvaluator);
+		}
+	}
+
+	private final EngineSpec engineA;
+	private final EngineSpec engineB;
+	private final List<Position> openings;
+	private final int maxPlies;
+	private final ExecutorService threadPool;
+	private final MatchStatistics statistics;
+
+	public TournamentRunner(EngineSpec engineA, EngineSpec engineB, List<Position> openings, int numThreads,
+                            MatchStatistics statistics)
+	{
+		this.engineA = engineA;
+		this.engineB = engineB;
+		this.openings = openings;
+		this.maxPlies = GameContext.DEFAULT_MAX_PLIES;
+		this.threadPool = Executors.newFixedThreadPool(numThreads);
+		this.statistics = statistics;
+	}
+
+	public EngineSpec getEngineA() { return this.engineA; }
+	public EngineSpec getEngineB() { return this.engineB; }
+	public List<Position> getOpenings() { return this.openings; }
+	public int getMaxPlies() { return this.maxPlies; }
+	public MatchStatistics getStatistics() { return this.statistics; }
+	private ExecutorService getThreadPool() { return this.threadPool; }
+
+	/**
+	 * Play one game to the end, each side searching with its own searcher.
+	 */
+	public static GameContext play(Position opening, PositionSearcher whiteSearcher, PositionSearcher blackSearcher, int maxPlies)
+	{
+		GameContext context = new GameContext(opening, maxPlies);
+		whiteSearcher.setHistory(context.getHistory());
+		blackSearcher.setHistory(context.getHistory());
+		while(!context.isOver())
+		{
+			Position position = context.getPosition();
+			PositionSearcher searcher = position.getSideToMove() == Position.WHITE ? whiteSearcher : blackSearcher;
+			context.play(searcher.search(position).getBestMove());
+		}
+		return context;
+	}
+
+	/**
+	 * Play the match (numGames games, or fewer if the SPRT decides first) and write one row per game to stdout.
+	 * @return the number of games played
+	 */
+	public int run(int numGames)
+        throws InterruptedException, ExecutionException
+	{
+		CompletionService<String> games = new ExecutorCompletionService<String>(this.getThreadPool());
+		for(int gameIdx = 0; gameIdx < numGames; ++gameIdx)
+		{
+			final int finalGameIdx = gameIdx;
+			games.submit(() -> this.playGame(finalGameIdx));
+		}
+
+		System.out.println(TournamentRunner.HEADER);
+		int numPlayed = 0;
+		while(numPlayed < numGames)
+		{
+			System.out.println(games.take().get());
+			numPlayed += 1;
+			if(this.getStatistics().isDecided())
+			{
+				this.getThreadPool().shutdownNow(); // drop the games not started yet, the others finish unseen
+				break;
+			}
+		}
+		return numPlayed;
+	}
+
+	/**
+	 * Play game gameIdx: opening gameIdx / 2, engine A has white in even games.
+	 * @return the game's CSV row
+	 */
+	private String playGame(int gameIdx)
+	{
+		Position opening = this.getOpenings().get((gameIdx / 2) % this.getOpenings().size());
+		boolean isAWhite = gameIdx % 2 == 0;
+		EngineSpec white = isAWhite ? this.getEngineA() : this.getEngineB();
+		EngineSpec black = isAWhite ? this.getEngineB() : this.getEngineA();
+
+		GameContext context = TournamentRunner.play(opening, white.newSearcher(), black.newSearcher(), this.getMaxPlies());
+		double whiteScore = context.getWhiteScore();
+		this.getStatistics().add(isAWhite ? whiteScore : 1.0 - whiteScore);
+
+		String result = context.getResult() == GameContext.WHITE_WINS ? "1-0"
+            : context.getResult() == GameContext.BLACK_WINS ? "0-1" : "1/2-1/2";
+		return gameIdx + ",\"" + white.getName() + "\",\"" + black.getName() + "\"," + result + "," +
+            context.getTermination() + "," + context.getNumPlies();
+	}
+
+	public void shutdown()
+	{
+		this.getThreadPool().shutdown();
+	}
+
+	public static List<Position> readOpenings(String source)
+        throws IOException
+	{
+		List<Position> openings = new ArrayList<Position>();
+		if(source.equals("startpos"))
+		{
+			openings.add(Fen.parse(Fen.START_POSITION));
+			return openings;
+		}
+		try(BufferedReader reader = new BufferedReader(source.equals("-") ? new InputStreamReader(System.in) : new FileReader(source)))
+		{
+			String line = null;
+			while((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if(!line.isEmpty() && !line.startsWith("#"))
+				{
+					openings.add(Epd.parse(line).getPosition());
+				}
+			}
+		}
+		return openings;
+	}
+
+	public static void main(String[] args)
+        throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 3)
+		{
+			System.err.println("TournamentRunner.main [ERROR]: must specify an openings file (- for stdin, startpos for the " +
+                "start position) and two engines (e.g. depth=3,quiescence), optionally followed by the number of games, " +
+                "the number of threads and the SPRT's elo0 and elo1");
+			System.exit(-1);
+		}
+
+		List<Position> openings = TournamentRunner.readOpenings(args[0]);
+		if(openings.isEmpty())
+		{
+			System.err.println("TournamentRunner.main [ERROR]: no openings in " + args[0]);
+			System.exit(-1);
+		}
+		EngineSpec engineA = EngineSpec.parse(args[1]);
+		EngineSpec engineB = EngineSpec.parse(args[2]);
+		int numGames = args.length >= 4 ? Integer.parseInt(args[3]) : 2 * openings.size();
+		int numThreads = args.length >= 5 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		double elo0 = args.length >= 6 ? Double.parseDouble(args[5]) : TournamentRunner.DEFAULT_ELO0;
+		double elo1 = args.length >= 7 ? Double.parseDouble(args[6]) : TournamentRunner.DEFAULT_ELO1;
+
+		MatchStatistics statistics = new MatchStatistics(elo0, elo1, TournamentRunner.DEFAULT_ALPHA, TournamentRunner.DEFAULT_BETA);
+		TournamentRunner runner = new TournamentRunner(engineA, engineB, openings, numThreads, statistics);
+		long startTime = System.nanoTime();
+		int numPlayed = 0;
+		try
+		{
+			numPlayed = runner.run(numGames);
+		} finally
+		{
+			runner.shutdown();
+		}
+		long runtimeInMS = (System.nanoTime() - startTime) / 1000000;
+		System.err.println("TournamentRunner.main [INFO]: " + engineA.getName() + " vs " + engineB.getName() + ": " + statistics);
+		System.err.println("TournamentRunner.main [INFO]: played " + numPlayed + " games in " + runtimeInMS + "ms");
+	}
+
+}
@@ -0,0 +1,510 @@
+package src.pas.chess.tools;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.engine.PositionHistory;
+import src.pas.chess.engine.PositionSearcher;
+import src.pas.chess.engine.TimeManager;
+import src.pas.chess.engine.TranspositionTable;
+import src.pas.chess.heuristics.Scores;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * A UCI (Universal Chess Interface) front-end for PositionSearcher, so the engine can play in GUIs and tournament
+ * managers (cutechess-cli, fastchess, ...) against other engines, outside of SEPIA.
+ *
+ * Supported commands: uci, isready, ucinewgame, setoption (Hash in MB, Threads), position (startpos or fen, then
+ * moves), go (wtime, btime, winc, binc, movestogo, movetime, depth, infinite, ponder), stop, ponderhit and quit.
+ *
+ * Commands are read on the main thread and every go runs on a search thread of its own, so stop and ponderhit are
+ * heard while searching. With Threads > 1 that many searchers search the same root on one shared transposition
+ * table (the helpers only fill the table for the main searcher, whose result is played). Each completed iteration of
+ * the main searcher prints an info line, with the principal variation read back from the transposition table. The main
+ * searcher also keeps time, with a TimeManager made from the clock (wtime/btime, winc/binc, movestogo) or movetime.
+ *
+ * usage: java src.pas.chess.tools.UciEngine
+ */
+public class UciEngine
+    extends Object
+{
+
+	public static final String NAME = "pas.chess AlphaBeta";
+	public static final String AUTHOR = "pas.chess";
+	public static final int DEFAULT_HASH_IN_MB = 16;
+	public static final int MAX_HASH_IN_MB = 65536;
+	public static final int MAX_THREADS = 256;
+	public static final int MAX_DEPTH = 64;
+
+	private final PrintStream out;
+	private int hashInMB;
+	private int numThreads;
+	private TranspositionTable transpositionTable;
+	private Position position;
+	private PositionHistory history; // the positions before position
+	private Thread searchThread;     // null if no go was sent yet
+	private PositionSearcher[] searchers; // of the last go, [0] is the main searcher
+	private boolean isWaitingForStop;     // infinite or ponder: bestmove waits for stop or ponderhit (guarded by this)
+	private boolean isInfinite;
+	private TimeManager timeManager;      // of the last go, null if it had no time limit
+
+	public UciEngine(PrintStream out)
+	{
+		this.out = out;
+		this.hashInMB = DEFAULT_HASH_IN_MB;
+		this.numThreads = 1;
+		this.transpositionTable = new TranspositionTable(DEFAULT_HASH_IN_MB);
+		this.position = Fen.parse(Fen.START_POSITION);
+		this.history = new PositionHistory();
+		this.searchThread = null;
+		this.searchers = new PositionSearcher[0];
+		this.isWaitingForStop = false;
+		this.isInfinite = false;
+		this.timeManager = null;
+	}
+
+	public int getHashInMB() { return this.hashInMB; }
+	public int getNumThreads() { return this.numThreads; }
+	public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+	public Position getPosition() { return this.position; }
+	public PositionHistory getHistory() { return this.history; }
+
+	private synchronized void send(String line)
+	{
+		this.out.println(line);
+		this.out.flush();
+	}
+
+	/**
+	 * Handle one command line.
+	 * @return false once the engine should quit
+	 */
+	public boolean handle(String line)
+        throws InterruptedException
+	{
+		String[] tokens = line.trim().split("\\s+");
+		switch(tokens[0])
+		{
+		case "uci":
+			this.send("id name " + NAME);
+			this.send("id author " + AUTHOR);
+			this.send("option name Hash type spin default " + DEFAULT_HASH_IN_MB + " min 1 max " + MAX_HASH_IN_MB);
+			this.send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+			this.send("option name Ponder type check default false");
+			this.send("uciok");
+			break;
+		case "isready":
+			this.send("readyok");
+			break;
+		case "ucinewgame":
+			this.waitForSearch();
+			this.getTranspositionTable().clear();
+			break;
+		case "setoption":
+			this.waitForSearch();
+			this.setOption(tokens);
+			break;
+		case "position":
+			this.waitForSearch();
+			this.setPosition(tokens);
+			break;
+		case "go":
+			this.waitForSearch();
+			this.go(tokens);
+			break;
+		case "stop":
+			this.stop();
+			break;
+		case "ponderhit":
+			this.ponderHit();
+			break;
+		case "quit":
+			this.stop();
+			this.waitForSearch();
+			return false;
+		default:
+			break; // unknown commands (and empty lines) are ignored, as UCI asks
+		}
+		return true;
+	}
+
+	/**
+	 * setoption name <id> [value <x>]
+	 */
+	private void setOption(String[] tokens)
+	{
+		String name = UciEngine.getArgument(tokens, "name", "value");
+		String value = UciEngine.getArgument(tokens, "value", null);
+		if(name == null)
+		{
+			return;
+		}
+		if(name.equalsIgnoreCase("Hash") && value != null)
+		{
+			int hashInMB = Math.max(1, Math.min(MAX_HASH_IN_MB, Integer.parseInt(value)));
+			if(hashInMB != this.hashInMB)
+			{
+				this.hashInMB = hashInMB;
+				this.transpositionTable = null; // let the old table go before allocating the new one
+				this.transpositionTable = new TranspositionTable(hashInMB);
+			}
+		} else if(name.equalsIgnoreCase("Threads") && value != null)
+		{
+			this.numThreads = Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value)));
+		}
+	}
+
+	/**
+	 * position (startpos | fen <fen>) [moves <move>...]
+	 */
+	private void setPosition(String[] tokens)
+	{
+		Position position = null;
+		int tokenIdx = 1;
+		if(tokens.length > 1 && tokens[1].equals("startpos"))
+		{
+			position = Fen.parse(Fen.START_POSITION);
+			tokenIdx = 2;
+		} else if(tokens.length > 1 && tokens[1].equals("fen"))
+		{
+			StringBuilder fen = new StringBuilder();
+			for(tokenIdx = 2; tokenIdx < tokens.length && !tokens[tokenIdx].equals("moves"); ++tokenIdx)
+			{
+				fen.append(tokens[tokenIdx]).append(' ');
+			}
+			try
+			{
+				position = Fen.parse(fen.toString().trim());
+			} catch(IllegalArgumentException e)
+			{
+				System.err.println("UciEngine.setPosition [ERROR]: " + e.getMessage());
+				return;
+			}
+		} else
+		{
+			System.err.println("UciEngine.setPosition [ERROR]: expected startpos or fen in " + String.join(" ", tokens));
+			return;
+		}
+
+		PositionHistory history = new PositionHistory();
+		if(tokenIdx < tokens.length && tokens[tokenIdx].equals("moves"))
+		{
+			for(tokenIdx += 1; tokenIdx < tokens.length; ++tokenIdx)
+			{
+				int move = UciEngine.parseMove(position, tokens[tokenIdx]);
+				if(move == Moves.NO_MOVE)
+				{
+					System.err.println("UciEngine.setPosition [ERROR]: illegal move " + tokens[tokenIdx]);
+					break;
+				}
+				history.push(position);
+				position.applyMove(move);
+			}
+		}
+		this.position = position;
+		this.history = history;
+	}
+
+	/**
+	 * go [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <n>] [movetime <ms>] [depth <n>] [infinite] [ponder]
+	 */
+	private void go(String[] tokens)
+	{
+		long[] timeLeftInMS = new long[] {-1, -1}; // [color]
+		long[] incrementInMS = new long[] {0, 0};
+		int movesToGo = -1;
+		long moveTimeInMS = -1;
+		int maxDepth = MAX_DEPTH;
+		boolean isInfinite = false;
+		boolean isPondering = false;
+		for(int tokenIdx = 1; tokenIdx < tokens.length; ++tokenIdx)
+		{
+			switch(tokens[tokenIdx])
+			{
+			case "wtime":
+				timeLeftInMS[Position.WHITE] = Long.parseLong(tokens[++tokenIdx]);
+				break;
+			case "btime":
+				timeLeftInMS[Position.BLACK] = Long.parseLong(tokens[++tokenIdx]);
+				break;
+			case "winc":
+				incrementInMS[Position.WHITE] = Long.parseLong(tokens[++tokenIdx]);
+				break;
+			case "binc":
+				incrementInMS[Position.BLACK] = Long.parseLong(tokens[++tokenIdx]);
+				break;
+			case "movestogo":
+				movesToGo = Integer.parseInt(tokens[++tokenIdx]);
+				break;
+			case "movetime":
+				moveTimeInMS = Long.parseLong(tokens[++tokenIdx]);
+				break;
+			case "depth":
+				maxDepth = Math.max(1, Math.min(MAX_DEPTH, Integer.parseInt(tokens[++tokenIdx])));
+				break;
+			case "infinite":
+				isInfinite = true;
+				break;
+			case "ponder":
+				isPondering = true;
+				break;
+			default:
+				break; // nodes, mate, searchmoves: not supported, searched as if absent
+			}
+		}
+
+		int color = this.getPosition().getSideToMove();
+		TimeManager timeManager = null;
+		if(moveTimeInMS >= 0)
+		{
+			timeManager = TimeManager.forMoveTime(moveTimeInMS);
+		} else if(timeLeftInMS[color] >= 0 && !isInfinite)
+		{
+			timeManager = TimeManager.forClock(timeLeftInMS[color], incrementInMS[color], movesToGo,
+                this.getPosition().getFullmoveNumber());
+		}
+
+		// only the main searcher keeps time, it stops the helpers when it is done
+		PositionSearcher[] searchers = new PositionSearcher[this.getNumThreads()];
+		for(int searcherIdx = 0; searcherIdx < searchers.length; ++searcherIdx)
+		{
+			searchers[searcherIdx] = new PositionSearcher(maxDepth);
+			searchers[searcherIdx].setTranspositionTable(this.getTranspositionTable());
+			searchers[searcherIdx].setHistory(this.getHistory());
+		}
+		Position root = this.getPosition().copy();
+		searchers[0].setIterationListener(result -> this.send(this.getInfo(root, result)));
+		searchers[0].setTimeManager(timeManager);
+		if(timeManager != null && !isPondering)
+		{
+			timeManager.start();
+		}
+
+		synchronized(this)
+		{
+			this.searchers = searchers;
+			this.isInfinite = isInfinite;
+			this.isWaitingForStop = isInfinite || isPondering;
+			this.timeManager = timeManager;
+		}
+		this.getTranspositionTable().newSearch();
+		this.searchThread = new Thread(() -> this.search(root, searchers), "uci-search");
+		this.searchThread.start();
+	}
+
+	/**
+	 * Run one go: the main searcher on this thread and the helpers on their own, then report the main searcher's move.
+	 */
+	private void search(Position root, PositionSearcher[] searchers)
+	{
+		Thread[] helpers = new Thread[searchers.length - 1];
+		for(int helperIdx = 0; helperIdx < helpers.length; ++helperIdx)
+		{
+			PositionSearcher helper = searchers[helperIdx + 1];
+			Position helperRoot = root.copy();
+			helpers[helperIdx] = new Thread(() -> helper.search(helperRoot, false), "uci-helper-" + helperIdx);
+			helpers[helperIdx].start();
+		}
+
+		PositionSearcher.SearchResult result = searchers[0].search(root.copy(), false);
+
+		for(int helperIdx = 0; helperIdx < helpers.length; ++helperIdx)
+		{
+			searchers[helperIdx + 1].stop();
+		}
+		try
+		{
+			for(Thread helper : helpers)
+			{
+				helper.join();
+			}
+			synchronized(this)
+			{
+				while(this.isWaitingForStop)
+				{
+					this.wait();
+				}
+			}
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		int[] pv = this.getPrincipalVariation(root, result.getBestMove(), 2);
+		this.send("bestmove " + Moves.toString(result.getBestMove()) + (pv.length > 1 ? " ponder " + Moves.toString(pv[1]) : ""));
+	}
+
+	/**
+	 * Stop the running search: bestmove follows as soon as the current iteration is abandoned.
+	 */
+	private synchronized void stop()
+	{
+		this.isWaitingForStop = false;
+		for(PositionSearcher searcher : this.searchers)
+		{
+			searcher.stop();
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * The opponent played the move we pondered on: keep searching, now on the clock of the original go.
+	 */
+	private synchronized void ponderHit()
+	{
+		this.isWaitingForStop = this.isInfinite;
+		if(this.timeManager != null && !this.timeManager.isStarted())
+		{
+			this.timeManager.start();
+			this.searchers[0].setDeadline(this.timeManager.getHardDeadlineInNS());
+		}
+		this.notifyAll();
+	}
+
+	private void waitForSearch()
+        throws InterruptedException
+	{
+		if(this.searchThread != null)
+		{
+			this.searchThread.join();
+			this.searchThread = null;
+		}
+	}
+
+	private String getInfo(Position root, PositionSearcher.SearchResult result)
+	{
+		StringBuilder info = new StringBuilder("info depth ").append(result.getDepth());
+		if(Scores.isMate(result.getScore()))
+		{
+			int numMoves = (Scores.getMatePlies(result.getScore()) + 1) / 2;
+			info.append(" score mate ").append(result.getScore() > 0 ? numMoves : -numMoves);
+		} else
+		{
+			info.append(" score cp ").append(result.getScore());
+		}
+		long runtimeInMS = result.getRuntimeInMS();
+		info.append(" nodes ").append(result.getNumNodes())
+            .append(" nps ").append(result.getNumNodes() * 1000 / Math.max(1, runtimeInMS))
+            .append(" time ").append(runtimeInMS)
+            .append(" hashfull ").append(this.getTranspositionTable().getHashfull())
+            .append(" pv");
+		for(int move : this.getPrincipalVariation(root, result.getBestMove(), result.getDepth()))
+		{
+			info.append(' ').append(Moves.toString(move));
+		}
+		return info.toString();
+	}
+
+	/**
+	 * bestMove followed by the hash moves of the positions it leads to, as long as they are legal and do not repeat.
+	 */
+	private int[] getPrincipalVariation(Position root, int bestMove, int maxLength)
+	{
+		int[] pv = new int[maxLength];
+		long[] hashes = new long[maxLength + 1];
+		int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+		Position position = root.copy();
+		hashes[0] = position.getHash();
+		int length = 0;
+		int move = bestMove;
+		while(length < maxLength && UciEngine.isLegal(position, move, legalMoves))
+		{
+			pv[length++] = move;
+			position.applyMove(move);
+			hashes[length] = position.getHash();
+			for(int hashIdx = 0; hashIdx < length; ++hashIdx)
+			{
+				if(hashes[hashIdx] == hashes[length])
+				{
+					return Arrays.copyOf(pv, length);
+				}
+			}
+			long data = this.getTranspositionTable().probe(position.getHash());
+			move = data != TranspositionTable.NO_ENTRY ? TranspositionTable.getMove(data) : Moves.NO_MOVE;
+		}
+		return Arrays.copyOf(pv, length);
+	}
+
+	private static boolean isLegal(Position position, int move, int[] legalMoves)
+	{
+		if(move == Moves.NO_MOVE)
+		{
+			return false;
+		}
+		int numLegalMoves = MoveGenerator.generateLegalMoves(position, legalMoves);
+		for(int moveIdx = 0; moveIdx < numLegalMoves; ++moveIdx)
+		{
+			if(legalMoves[moveIdx] == move)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The legal move of position written in long algebraic notation (e.g. e2e4, e7e8q, e1g1).
+	 * @return the move, or Moves.NO_MOVE if no legal move matches
+	 */
+	public static int parseMove(Position position, String uciMove)
+	{
+		int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+		int numLegalMoves = MoveGenerator.generateLegalMoves(position, legalMoves);
+		for(int moveIdx = 0; moveIdx < numLegalMoves; ++moveIdx)
+		{
+			if(Moves.toString(legalMoves[moveIdx]).equals(uciMove))
+			{
+				return legalMoves[moveIdx];
+			}
+		}
+		return Moves.NO_MOVE;
+	}
+
+	/**
+	 * The words of tokens after key, up to (not including) the word end or the end of the line.
+	 * @return the words joined by spaces, or null if key is missing or has no words after it
+	 */
+	private static String getArgument(String[] tokens, String key, String end)
+	{
+		StringBuilder argument = null;
+		for(int tokenIdx = 0; tokenIdx < tokens.length; ++tokenIdx)
+		{
+			if(argument == null && tokens[tokenIdx].equals(key))
+			{
+				argument = new StringBuilder();
+			} else if(argument != null && tokens[tokenIdx].equals(end))
+			{
+				break;
+			} else if(argument != null)
+			{
+				argument.append(argument.length() > 0 ? " " : "").append(tokens[tokenIdx]);
+			}
+		}
+		return argument != null && argument.length() > 0 ? argument.toString() : null;
+	}
+
+	public static void main(String[] args)
+        throws IOException, InterruptedException
+	{
+		UciEngine engine = new UciEngine(System.out);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+		String line = null;
+		while((line = reader.readLine()) != null && engine.handle(line))
+		{
+		}
+		engine.stop();
+		engine.waitForSearch();
+	}
+
+}